@@ -53,7 +53,7 @@ if errorlevel 1 (
 echo Compilation succeeded.
 echo Launching application...
 
-"%JAVA%" --module-path "%JAVAFX_LIB%" --add-modules javafx.controls,javafx.fxml --enable-native-access=javafx.graphics -cp "out;%MYSQL_JAR%" Main
+"%JAVA%" --module-path "%JAVAFX_LIB%" --add-modules javafx.controls,javafx.fxml --enable-native-access=javafx.graphics -cp "out;resources;%MYSQL_JAR%" Main
 set RC=%ERRORLEVEL%
 echo Application exited with code %RC%
 pause
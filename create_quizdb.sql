@@ -1,5 +1,7 @@
 -- File: sql/create_quizdb.sql
 -- Create database and schema for Online Quiz Management System
+-- The latest schema in one script. Existing databases are upgraded by the application at
+-- startup from sql/migrations (database.MigrationRunner); add schema changes there too.
 CREATE DATABASE IF NOT EXISTS quizdb CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
 USE quizdb;
 
@@ -27,10 +29,26 @@ CREATE TABLE IF NOT EXISTS quizzes (
   time_limit INT, -- in minutes
   target_stream VARCHAR(100), -- comma-separated streams or 'ALL'
   target_divisions VARCHAR(20), -- comma-separated divisions or 'ALL'
+  draw_count INT NULL, -- questions drawn per student; NULL = the whole pool
+  pool_tag VARCHAR(50) NULL, -- draw only questions with this tag; NULL = all of the quiz's questions
   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_quizzes_created (created_at), -- newest-first paging of assigned quizzes
+  INDEX idx_quizzes_teacher_created (teacher_id, created_at), -- a teacher's quizzes, newest first
+  FULLTEXT INDEX ft_quizzes_search (title, description, course_name), -- dashboard search on large catalogs
   FOREIGN KEY (teacher_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Quiz targeting, normalized: one row per (stream, division) a quiz is assigned to.
+-- '*' stands for ALL. Kept in sync with quizzes.target_stream/target_divisions by QuizDAO.
+CREATE TABLE IF NOT EXISTS quiz_targets (
+  quiz_id INT NOT NULL,
+  stream VARCHAR(100) NOT NULL,
+  division VARCHAR(20) NOT NULL,
+  PRIMARY KEY (quiz_id, stream, division),
+  INDEX idx_quiz_targets_student (stream, division, quiz_id),
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
+);
+
 -- Questions table
 CREATE TABLE IF NOT EXISTS questions (
   id INT AUTO_INCREMENT PRIMARY KEY,
@@ -41,6 +59,7 @@ CREATE TABLE IF NOT EXISTS questions (
   option_c VARCHAR(255) NOT NULL,
   option_d VARCHAR(255) NOT NULL,
   correct_option CHAR(1) NOT NULL,
+  tag VARCHAR(50) NULL, -- question bank pool (quizzes.pool_tag)
   FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
 );
 
@@ -53,11 +72,81 @@ CREATE TABLE IF NOT EXISTS results (
   total_questions INT NOT NULL,
   taken_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   answers TEXT,
+  answers_packed VARBINARY(8192), -- models.AnswerSheet binary form of answers
+  attempt_no INT NULL, -- set for results submitted through attempts; NULL for older rows
+  UNIQUE KEY uq_results_attempt (student_id, quiz_id, attempt_no),
+  -- keyset paging of results tables (InnoDB appends id to each index)
+  INDEX idx_results_quiz_taken (quiz_id, taken_at),
+  INDEX idx_results_quiz_score (quiz_id, score),
+  INDEX idx_results_student_taken (student_id, taken_at),
+  INDEX idx_results_quiz_id (quiz_id, id), -- a quiz's results in id order (analytics)
   FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE,
   FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
 );
 
--- Seed sample users (demo only - plain text passwords)
+-- One row per answered question of a result, for per-question statistics.
+-- choice: 0 = unanswered, 1-4 = A-D.
+CREATE TABLE IF NOT EXISTS results_answers (
+  result_id INT NOT NULL,
+  question_id INT NOT NULL,
+  choice TINYINT NOT NULL,
+  PRIMARY KEY (result_id, question_id),
+  INDEX idx_results_answers_question (question_id, choice),
+  FOREIGN KEY (result_id) REFERENCES results(id) ON DELETE CASCADE,
+  FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE
+);
+
+-- Attempts in progress, autosaved from the client's attempt journal (dao.AttemptJournal).
+-- attempt_no counts a student's attempts at a quiz; submitted_at/result_id are set on submit.
+CREATE TABLE IF NOT EXISTS attempts (
+  id INT AUTO_INCREMENT PRIMARY KEY,
+  student_id INT NOT NULL,
+  quiz_id INT NOT NULL,
+  attempt_no INT NOT NULL,
+  started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  submitted_at TIMESTAMP NULL,
+  result_id INT NULL,
+  UNIQUE KEY uq_attempts_student_quiz (student_id, quiz_id, attempt_no),
+  FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE,
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE,
+  FOREIGN KEY (result_id) REFERENCES results(id) ON DELETE SET NULL
+);
+
+-- Latest choice per question of an attempt; seq is the journal sequence of the change.
+CREATE TABLE IF NOT EXISTS attempt_answers (
+  attempt_id INT NOT NULL,
+  question_id INT NOT NULL,
+  choice TINYINT NOT NULL,
+  seq BIGINT NOT NULL,
+  PRIMARY KEY (attempt_id, question_id),
+  FOREIGN KEY (attempt_id) REFERENCES attempts(id) ON DELETE CASCADE
+);
+
+-- Score aggregates per quiz and per student, updated with every stored result (dao.StatsDAO).
+-- database.StatsRebuild recomputes them from results.
+CREATE TABLE IF NOT EXISTS quiz_stats (
+  quiz_id INT PRIMARY KEY,
+  result_count INT NOT NULL,
+  score_sum DOUBLE NOT NULL,
+  score_sq_sum DOUBLE NOT NULL,
+  score_min DOUBLE NOT NULL,
+  score_max DOUBLE NOT NULL,
+  last_taken_at TIMESTAMP NULL,
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS student_stats (
+  student_id INT PRIMARY KEY,
+  result_count INT NOT NULL,
+  score_sum DOUBLE NOT NULL,
+  score_sq_sum DOUBLE NOT NULL,
+  score_min DOUBLE NOT NULL,
+  score_max DOUBLE NOT NULL,
+  last_taken_at TIMESTAMP NULL,
+  FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Seed sample users (demo only - plain text passwords, hashed on first login)
 INSERT INTO users (username, password, full_name, role) VALUES
 ('teacher1', 'pass123', 'Alice Teacher', 'TEACHER'),
 ('student1', 'pass123', 'Bob Student', 'STUDENT');
@@ -0,0 +1,13 @@
+-- Roll number, stream and division of students.
+ALTER TABLE users ADD COLUMN roll_number VARCHAR(20);
+ALTER TABLE users ADD COLUMN stream ENUM('Computer Engg', 'Mech Engg', 'Comp Sci Engg', 'ECS');
+ALTER TABLE users ADD COLUMN division CHAR(1);
+
+-- Databases from before these columns kept the division in student_class: copy it over.
+SET @copy_class = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+    AND table_name = 'users' AND column_name = 'student_class') > 0,
+  'UPDATE users SET division = LEFT(student_class, 1) WHERE division IS NULL AND student_class IS NOT NULL',
+  'DO 0');
+PREPARE copy_class FROM @copy_class;
+EXECUTE copy_class;
+DEALLOCATE PREPARE copy_class;
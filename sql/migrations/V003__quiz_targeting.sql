@@ -0,0 +1,19 @@
+-- Course, deadline, time limit and targeting of quizzes, and dashboard search.
+ALTER TABLE quizzes ADD COLUMN course_name VARCHAR(100);
+ALTER TABLE quizzes ADD COLUMN deadline TIMESTAMP NULL;
+ALTER TABLE quizzes ADD COLUMN time_limit INT; -- in minutes
+ALTER TABLE quizzes ADD COLUMN target_stream VARCHAR(100); -- comma-separated streams or 'ALL'
+ALTER TABLE quizzes ADD COLUMN target_divisions VARCHAR(20); -- comma-separated divisions or 'ALL'
+CREATE INDEX idx_quizzes_created ON quizzes (created_at); -- newest-first paging of assigned quizzes
+CREATE FULLTEXT INDEX ft_quizzes_search ON quizzes (title, description, course_name);
+
+-- Quiz targeting, normalized: one row per (stream, division) a quiz is assigned to.
+-- '*' stands for ALL. Existing quizzes get their rows from the migration's Java step.
+CREATE TABLE IF NOT EXISTS quiz_targets (
+  quiz_id INT NOT NULL,
+  stream VARCHAR(100) NOT NULL,
+  division VARCHAR(20) NOT NULL,
+  PRIMARY KEY (quiz_id, stream, division),
+  INDEX idx_quiz_targets_student (stream, division, quiz_id),
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
+);
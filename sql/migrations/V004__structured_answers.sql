@@ -0,0 +1,13 @@
+-- Packed answers per result and one row per answered question, for per-question statistics.
+-- choice: 0 = unanswered, 1-4 = A-D. Existing results are converted by the migration's Java step.
+ALTER TABLE results ADD COLUMN answers_packed VARBINARY(8192); -- models.AnswerSheet binary form of answers
+
+CREATE TABLE IF NOT EXISTS results_answers (
+  result_id INT NOT NULL,
+  question_id INT NOT NULL,
+  choice TINYINT NOT NULL,
+  PRIMARY KEY (result_id, question_id),
+  INDEX idx_results_answers_question (question_id, choice),
+  FOREIGN KEY (result_id) REFERENCES results(id) ON DELETE CASCADE,
+  FOREIGN KEY (question_id) REFERENCES questions(id) ON DELETE CASCADE
+);
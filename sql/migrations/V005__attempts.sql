@@ -0,0 +1,29 @@
+-- Attempts in progress, autosaved from the client's attempt journal (dao.AttemptJournal).
+-- attempt_no counts a student's attempts at a quiz; submitted_at/result_id are set on submit.
+CREATE TABLE IF NOT EXISTS attempts (
+  id INT AUTO_INCREMENT PRIMARY KEY,
+  student_id INT NOT NULL,
+  quiz_id INT NOT NULL,
+  attempt_no INT NOT NULL,
+  started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  submitted_at TIMESTAMP NULL,
+  result_id INT NULL,
+  UNIQUE KEY uq_attempts_student_quiz (student_id, quiz_id, attempt_no),
+  FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE,
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE,
+  FOREIGN KEY (result_id) REFERENCES results(id) ON DELETE SET NULL
+);
+
+-- Latest choice per question of an attempt; seq is the journal sequence of the change.
+CREATE TABLE IF NOT EXISTS attempt_answers (
+  attempt_id INT NOT NULL,
+  question_id INT NOT NULL,
+  choice TINYINT NOT NULL,
+  seq BIGINT NOT NULL,
+  PRIMARY KEY (attempt_id, question_id),
+  FOREIGN KEY (attempt_id) REFERENCES attempts(id) ON DELETE CASCADE
+);
+
+-- set for results submitted through attempts; NULL for older rows
+ALTER TABLE results ADD COLUMN attempt_no INT NULL;
+CREATE UNIQUE INDEX uq_results_attempt ON results (student_id, quiz_id, attempt_no);
@@ -0,0 +1,4 @@
+-- Keyset paging of results tables (InnoDB appends id to each index).
+CREATE INDEX idx_results_quiz_taken ON results (quiz_id, taken_at);
+CREATE INDEX idx_results_quiz_score ON results (quiz_id, score);
+CREATE INDEX idx_results_student_taken ON results (student_id, taken_at);
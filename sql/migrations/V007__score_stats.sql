@@ -0,0 +1,33 @@
+-- Score aggregates per quiz and per student, updated with every stored result (dao.StatsDAO).
+CREATE TABLE IF NOT EXISTS quiz_stats (
+  quiz_id INT PRIMARY KEY,
+  result_count INT NOT NULL,
+  score_sum DOUBLE NOT NULL,
+  score_sq_sum DOUBLE NOT NULL,
+  score_min DOUBLE NOT NULL,
+  score_max DOUBLE NOT NULL,
+  last_taken_at TIMESTAMP NULL,
+  FOREIGN KEY (quiz_id) REFERENCES quizzes(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS student_stats (
+  student_id INT PRIMARY KEY,
+  result_count INT NOT NULL,
+  score_sum DOUBLE NOT NULL,
+  score_sq_sum DOUBLE NOT NULL,
+  score_min DOUBLE NOT NULL,
+  score_max DOUBLE NOT NULL,
+  last_taken_at TIMESTAMP NULL,
+  FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Fill them from the results already stored.
+INSERT INTO quiz_stats (quiz_id, result_count, score_sum, score_sq_sum, score_min, score_max, last_taken_at)
+SELECT quiz_id, COUNT(*), SUM(score), SUM(score * score), MIN(score), MAX(score), MAX(taken_at) FROM results GROUP BY quiz_id
+ON DUPLICATE KEY UPDATE result_count = VALUES(result_count), score_sum = VALUES(score_sum), score_sq_sum = VALUES(score_sq_sum),
+  score_min = VALUES(score_min), score_max = VALUES(score_max), last_taken_at = VALUES(last_taken_at);
+
+INSERT INTO student_stats (student_id, result_count, score_sum, score_sq_sum, score_min, score_max, last_taken_at)
+SELECT student_id, COUNT(*), SUM(score), SUM(score * score), MIN(score), MAX(score), MAX(taken_at) FROM results GROUP BY student_id
+ON DUPLICATE KEY UPDATE result_count = VALUES(result_count), score_sum = VALUES(score_sum), score_sq_sum = VALUES(score_sq_sum),
+  score_min = VALUES(score_min), score_max = VALUES(score_max), last_taken_at = VALUES(last_taken_at);
@@ -0,0 +1,4 @@
+-- A teacher's quizzes, newest first (QuizDAO.listQuizzesByTeacher): no filesort.
+CREATE INDEX idx_quizzes_teacher_created ON quizzes (teacher_id, created_at);
+-- A quiz's results in id order (AnalyticsDAO streams them by id): no filesort.
+CREATE INDEX idx_results_quiz_id ON results (quiz_id, id);
@@ -0,0 +1,5 @@
+-- Question bank: a quiz draws draw_count of its questions (those tagged pool_tag, or all
+-- when NULL) for each student; NULL draw_count means every question of the pool.
+ALTER TABLE quizzes ADD COLUMN draw_count INT NULL;
+ALTER TABLE quizzes ADD COLUMN pool_tag VARCHAR(50) NULL;
+ALTER TABLE questions ADD COLUMN tag VARCHAR(50) NULL;
@@ -1,31 +1,59 @@
 import javafx.application.Application;
-
-
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
-
-import java.io.File;
+import ui.ViewRegistry;
 
 public class Main extends Application {
 
+    @Override
+    public void init() {
+        // a client of a quiz server leaves the schema to the server
+        if (dao.RemoteBackend.isEnabled()) {
+            System.out.println("Using the quiz server at " + dao.RemoteBackend.baseUrl());
+            return;
+        }
+        // bring the schema up to date before any DAO runs; without a database the login screen reports the error
+        try {
+            database.MigrationRunner.migrate();
+        } catch (Exception ex) {
+            System.err.println("Schema migration failed: " + ex.getMessage());
+        }
+    }
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        File fxml = new File("resources/Login.fxml");
-        Parent root = FXMLLoader.load(fxml.toURI().toURL());
+        ViewRegistry.Loaded<?> login = ViewRegistry.load(ViewRegistry.View.LOGIN);
         primaryStage.setTitle("Online Quiz Management System - Login");
-        Scene scene = new Scene(root, 480, 380);
-        // apply global stylesheet if present in resources/
-        File css = new File("resources/catppuccin-mocha.css");
-        if (css.exists()) {
-            scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
-        }
-        primaryStage.setScene(scene);
+        primaryStage.setScene(login.scene(480, 380));
         primaryStage.show();
+        // a dashboard follows the login
+        ViewRegistry.warmUp(ViewRegistry.View.TEACHER_DASHBOARD, ViewRegistry.View.STUDENT_DASHBOARD);
+        // upload submissions a previous run journalled but could not store
+        Thread recover = new Thread(() -> {
+            try {
+                dao.AttemptJournal.recoverPending();
+            } catch (Exception ex) {
+                System.err.println("Journal recovery failed: " + ex.getMessage());
+            }
+        }, "journal-recovery");
+        recover.setDaemon(true);
+        recover.start();
+    }
+
+    @Override
+    public void stop() {
+        // stop pending background DAO calls, flush the attempt journal, then release pooled database connections
+        dao.AsyncDao.shutdown();
+        dao.AttemptSessionService.shutdown();
+        dao.AttemptJournal.shutdown();
+        database.DatabaseConnection.shutdown();
     }
 
-    public static void main(String[] args) {
+    /** Starts the desktop client, or with --server [port] the headless quiz server (see server.QuizServer). */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            server.QuizServer.start(args.length > 1 ? Integer.parseInt(args[1]) : server.QuizServer.DEFAULT_PORT);
+            return;
+        }
         launch(args);
     }
 }
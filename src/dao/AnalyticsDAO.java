@@ -0,0 +1,88 @@
+package dao;
+
+import database.DatabaseConnection;
+import models.AnswerSheet;
+import models.Question;
+import models.QuizAnalytics;
+import models.Result;
+
+import java.sql.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item analysis per quiz. The first request for a quiz streams its results once into a
+ * {@link QuizAnalytics} accumulator; afterwards ResultDAO.addResult folds each new result
+ * in, so reopening analytics for a large quiz costs no query at all.
+ */
+public class AnalyticsDAO {
+
+    private static final String SELECT_RESULTS = "SELECT id, score, answers, answers_packed FROM results WHERE quiz_id = ? ORDER BY id";
+
+    private static final DaoCache<Integer, QuizAnalytics> ANALYTICS = new DaoCache<>("quizAnalytics", 200, 30, TimeUnit.MINUTES);
+
+    private final QuestionDAO questionDAO = new QuestionDAO();
+
+    /** A snapshot of the quiz's item analysis. */
+    public QuizAnalytics getQuizAnalytics(int quizId) throws SQLException {
+        return ANALYTICS.get(quizId, () -> build(quizId)).snapshot();
+    }
+
+    private QuizAnalytics build(int quizId) throws SQLException {
+        List<Question> questions = questionDAO.listQuestionsByQuiz(quizId);
+        int[] ids = new int[questions.size()];
+        char[] correct = new char[questions.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = questions.get(i).getId();
+            correct[i] = questions.get(i).getCorrectOption();
+        }
+        QuizAnalytics analytics = new QuizAnalytics(quizId, ids, correct);
+        long start = System.nanoTime();
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_RESULTS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams rows one by one instead of buffering the whole result
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setInt(1, quizId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    analytics.add(rs.getInt(1), rs.getDouble(2), answersOf(rs));
+                }
+            }
+        }
+        System.out.println("AnalyticsDAO: quiz " + quizId + " analysed " + analytics.getCount() + " results in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return analytics;
+    }
+
+    private static AnswerSheet answersOf(ResultSet rs) throws SQLException {
+        byte[] bytes = rs.getBytes(4);
+        if (bytes != null) {
+            try {
+                return AnswerSheet.decode(bytes);
+            } catch (IllegalArgumentException ex) {
+                // unreadable packed form: fall back to the text column
+            }
+        }
+        return AnswerSheet.parse(rs.getString(3));
+    }
+
+    /** Fold a committed result into its quiz's accumulator, if one is loaded. */
+    static void recordResult(int resultId, Result r) {
+        QuizAnalytics analytics = ANALYTICS.getIfPresent(r.getQuizId());
+        if (analytics != null) {
+            analytics.add(resultId, r.getScore(), r.getAnswerSheet());
+        } else {
+            // a build in flight may have missed this result; don't let it be cached
+            ANALYTICS.invalidate(r.getQuizId());
+        }
+    }
+
+    static void invalidateQuiz(int quizId) {
+        ANALYTICS.invalidate(quizId);
+    }
+
+    static void invalidateAll() {
+        ANALYTICS.invalidateAll();
+    }
+}
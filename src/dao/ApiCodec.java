@@ -0,0 +1,361 @@
+package dao;
+
+import models.Attempt;
+import models.Question;
+import models.Quiz;
+import models.Result;
+import models.ScoreStats;
+import models.StudentResult;
+import models.User;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * JSON form of the models for the quiz server API (see Json): each model is an object with
+ * one key per field, dates in ISO-8601. Used by the server for its replies and by
+ * RemoteBackend to read them back; missing keys decode to the field's default.
+ */
+public final class ApiCodec {
+
+    private ApiCodec() {}
+
+    // --- users
+
+    /** A user; the password is only included when it is being sent to be stored. */
+    public static Map<String, Object> user(User u, boolean withPassword) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", u.getId());
+        m.put("username", u.getUsername());
+        if (withPassword) m.put("password", u.getPassword());
+        m.put("fullName", u.getFullName());
+        m.put("role", u.getRole());
+        m.put("rollNumber", u.getRollNumber());
+        m.put("stream", u.getStream());
+        m.put("division", u.getDivision());
+        m.put("studentClass", u.getStudentClass());
+        m.put("createdAt", date(u.getCreatedAt()));
+        return m;
+    }
+
+    public static User toUser(Object o) {
+        Map<String, Object> m = map(o);
+        User u = new User();
+        u.setId(intOf(m, "id"));
+        u.setUsername(str(m, "username"));
+        u.setPassword(str(m, "password"));
+        u.setFullName(str(m, "fullName"));
+        u.setRole(str(m, "role"));
+        u.setRollNumber(str(m, "rollNumber"));
+        u.setStream(str(m, "stream"));
+        u.setDivision(str(m, "division"));
+        u.setStudentClass(str(m, "studentClass"));
+        u.setCreatedAt(dateOf(m, "createdAt"));
+        return u;
+    }
+
+    // --- quizzes and questions
+
+    public static Map<String, Object> quiz(Quiz q) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", q.getId());
+        m.put("title", q.getTitle());
+        m.put("description", q.getDescription());
+        m.put("teacherId", q.getTeacherId());
+        m.put("courseName", q.getCourseName());
+        m.put("deadline", date(q.getDeadline()));
+        m.put("timeLimit", q.getTimeLimit());
+        m.put("targetStream", q.getTargetStream());
+        m.put("targetDivisions", q.getTargetDivisions());
+        m.put("drawCount", q.getDrawCount());
+        m.put("poolTag", q.getPoolTag());
+        m.put("createdAt", date(q.getCreatedAt()));
+        return m;
+    }
+
+    public static Quiz toQuiz(Object o) {
+        Map<String, Object> m = map(o);
+        Quiz q = new Quiz(intOf(m, "id"), str(m, "title"), str(m, "description"), intOf(m, "teacherId"));
+        q.setCourseName(str(m, "courseName"));
+        q.setDeadline(dateOf(m, "deadline"));
+        q.setTimeLimit(optInt(m, "timeLimit"));
+        q.setTargetStream(str(m, "targetStream"));
+        q.setTargetDivisions(str(m, "targetDivisions"));
+        q.setDrawCount(optInt(m, "drawCount"));
+        q.setPoolTag(str(m, "poolTag"));
+        q.setCreatedAt(dateOf(m, "createdAt"));
+        return q;
+    }
+
+    public static Map<String, Object> question(Question q) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", q.getId());
+        m.put("quizId", q.getQuizId());
+        m.put("questionText", q.getQuestionText());
+        m.put("optionA", q.getOptionA());
+        m.put("optionB", q.getOptionB());
+        m.put("optionC", q.getOptionC());
+        m.put("optionD", q.getOptionD());
+        m.put("correctOption", String.valueOf(q.getCorrectOption()));
+        m.put("tag", q.getTag());
+        m.put("optionOrder", q.getOptionOrder());
+        return m;
+    }
+
+    /** A question as a student sees it: without its correct option. */
+    public static Map<String, Object> questionForStudent(Question q) {
+        Map<String, Object> m = question(q);
+        m.remove("correctOption");
+        return m;
+    }
+
+    /** A question without a correctOption (a student's) gets '\0', which matches no choice. */
+    public static Question toQuestion(Object o) {
+        Map<String, Object> m = map(o);
+        String correct = str(m, "correctOption");
+        Question q = new Question(intOf(m, "id"), intOf(m, "quizId"), str(m, "questionText"),
+                str(m, "optionA"), str(m, "optionB"), str(m, "optionC"), str(m, "optionD"),
+                correct == null || correct.isEmpty() ? '\0' : correct.charAt(0));
+        q.setTag(str(m, "tag"));
+        String order = str(m, "optionOrder");
+        if (order != null && order.length() == 4) q.setOptionOrder(order);
+        return q;
+    }
+
+    // --- results, attempts and statistics
+
+    public static Map<String, Object> result(Result r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", r.getId());
+        m.put("studentId", r.getStudentId());
+        m.put("quizId", r.getQuizId());
+        m.put("attemptNo", r.getAttemptNo());
+        m.put("score", r.getScore());
+        m.put("totalQuestions", r.getTotalQuestions());
+        m.put("answers", r.getAnswers());
+        m.put("takenAt", date(r.getTakenAt()));
+        if (r instanceof StudentResult) {
+            StudentResult s = (StudentResult) r;
+            m.put("studentName", s.getStudentName());
+            m.put("rollNumber", s.getRollNumber());
+            m.put("stream", s.getStream());
+            m.put("division", s.getDivision());
+            m.put("studentClass", s.getStudentClass());
+        }
+        return m;
+    }
+
+    public static Result toResult(Object o) {
+        Result r = new Result();
+        readResult(map(o), r);
+        return r;
+    }
+
+    public static StudentResult toStudentResult(Object o) {
+        Map<String, Object> m = map(o);
+        StudentResult r = new StudentResult();
+        readResult(m, r);
+        r.setStudentName(str(m, "studentName"));
+        r.setRollNumber(str(m, "rollNumber"));
+        r.setStream(str(m, "stream"));
+        r.setDivision(str(m, "division"));
+        r.setStudentClass(str(m, "studentClass"));
+        return r;
+    }
+
+    private static void readResult(Map<String, Object> m, Result r) {
+        r.setId(intOf(m, "id"));
+        r.setStudentId(intOf(m, "studentId"));
+        r.setQuizId(intOf(m, "quizId"));
+        r.setAttemptNo(intOf(m, "attemptNo"));
+        r.setScore(doubleOf(m, "score"));
+        r.setTotalQuestions(intOf(m, "totalQuestions"));
+        r.setAnswers(str(m, "answers"));
+        r.setTakenAt(dateOf(m, "takenAt"));
+    }
+
+    public static Map<String, Object> attempt(Attempt a) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", a.getId());
+        m.put("studentId", a.getStudentId());
+        m.put("quizId", a.getQuizId());
+        m.put("attemptNo", a.getAttemptNo());
+        m.put("startedAt", date(a.getStartedAt()));
+        m.put("submittedAt", date(a.getSubmittedAt()));
+        m.put("resultId", a.getResultId());
+        return m;
+    }
+
+    public static Attempt toAttempt(Object o) {
+        Map<String, Object> m = map(o);
+        Attempt a = new Attempt();
+        a.setId(intOf(m, "id"));
+        a.setStudentId(intOf(m, "studentId"));
+        a.setQuizId(intOf(m, "quizId"));
+        a.setAttemptNo(intOf(m, "attemptNo"));
+        a.setStartedAt(dateOf(m, "startedAt"));
+        a.setSubmittedAt(dateOf(m, "submittedAt"));
+        a.setResultId(intOf(m, "resultId"));
+        return a;
+    }
+
+    public static Map<String, Object> answerChange(AttemptDAO.AnswerChange ch) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("attemptId", ch.attemptId);
+        m.put("questionId", ch.questionId);
+        m.put("choice", ch.choice);
+        m.put("seq", ch.seq);
+        return m;
+    }
+
+    public static AttemptDAO.AnswerChange toAnswerChange(Object o) {
+        Map<String, Object> m = map(o);
+        return new AttemptDAO.AnswerChange(intOf(m, "attemptId"), intOf(m, "questionId"),
+                (byte) intOf(m, "choice"), longOf(m, "seq"));
+    }
+
+    public static Map<String, Object> stats(ScoreStats s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", s.getCount());
+        m.put("sum", s.getSum());
+        m.put("sumSq", s.getSumOfSquares());
+        m.put("min", s.getMin());
+        m.put("max", s.getMax());
+        m.put("lastTakenAt", date(s.getLastTakenAt()));
+        return m;
+    }
+
+    public static ScoreStats toStats(Object o) {
+        Map<String, Object> m = map(o);
+        return new ScoreStats(longOf(m, "count"), doubleOf(m, "sum"), doubleOf(m, "sumSq"),
+                doubleOf(m, "min"), doubleOf(m, "max"), dateOf(m, "lastTakenAt"));
+    }
+
+    /** Stats keyed by id; JSON object keys are strings. */
+    public static Map<String, Object> statsById(Map<Integer, ScoreStats> stats) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (Map.Entry<Integer, ScoreStats> e : stats.entrySet()) m.put(String.valueOf(e.getKey()), stats(e.getValue()));
+        return m;
+    }
+
+    public static Map<Integer, ScoreStats> toStatsById(Object o) {
+        Map<Integer, ScoreStats> stats = new HashMap<>();
+        for (Map.Entry<String, Object> e : map(o).entrySet()) stats.put(Integer.parseInt(e.getKey()), toStats(e.getValue()));
+        return stats;
+    }
+
+    public static Map<String, Object> query(ResultDAO.ResultQuery q) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put(q.isByQuiz() ? "quizId" : "studentId", q.getParam());
+        m.put("filter", q.getFilter());
+        m.put("sort", q.getSort().name());
+        return m;
+    }
+
+    public static ResultDAO.ResultQuery toQuery(Object o) {
+        Map<String, Object> m = map(o);
+        ResultDAO.ResultQuery q = m.containsKey("quizId")
+                ? ResultDAO.ResultQuery.byQuiz(intOf(m, "quizId"))
+                : ResultDAO.ResultQuery.byStudent(intOf(m, "studentId"));
+        String sort = str(m, "sort");
+        try {
+            if (sort != null) q = q.sortedBy(ResultDAO.ResultSort.valueOf(sort));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+        return q.withFilter(str(m, "filter"));
+    }
+
+    // --- lists
+
+    /** Encode each element, e.g. list(quizzes, ApiCodec::quiz). */
+    public static <T> List<Object> list(Collection<T> items, Function<T, ?> encoder) {
+        List<Object> out = new ArrayList<>(items.size());
+        for (T item : items) out.add(encoder.apply(item));
+        return out;
+    }
+
+    /** Decode each element of a JSON array. */
+    public static <T> List<T> toList(Object o, Function<Object, T> decoder) {
+        if (o == null) return new ArrayList<>();
+        if (!(o instanceof List)) throw new IllegalArgumentException("Expected a JSON array");
+        List<?> in = (List<?>) o;
+        List<T> out = new ArrayList<>(in.size());
+        for (Object item : in) out.add(decoder.apply(item));
+        return out;
+    }
+
+    // --- field access
+
+    public static int toInt(Object o) {
+        if (!(o instanceof Number)) throw new IllegalArgumentException("Expected a number");
+        return ((Number) o).intValue();
+    }
+
+    public static long toLong(Object o) {
+        if (!(o instanceof Number)) throw new IllegalArgumentException("Expected a number");
+        return ((Number) o).longValue();
+    }
+
+    public static boolean toBoolean(Object o) {
+        if (!(o instanceof Boolean)) throw new IllegalArgumentException("Expected true or false");
+        return (Boolean) o;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> map(Object o) {
+        if (!(o instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) o;
+    }
+
+    public static String str(Map<String, Object> m, String key) {
+        Object v = m.get(key);
+        return v == null ? null : v.toString();
+    }
+
+    public static int intOf(Map<String, Object> m, String key) {
+        Integer v = optInt(m, key);
+        return v == null ? 0 : v;
+    }
+
+    public static Integer optInt(Map<String, Object> m, String key) {
+        Object v = m.get(key);
+        if (v == null) return null;
+        if (!(v instanceof Number)) throw new IllegalArgumentException("'" + key + "' is not a number");
+        return ((Number) v).intValue();
+    }
+
+    public static long longOf(Map<String, Object> m, String key) {
+        Object v = m.get(key);
+        if (v == null) return 0;
+        if (!(v instanceof Number)) throw new IllegalArgumentException("'" + key + "' is not a number");
+        return ((Number) v).longValue();
+    }
+
+    public static double doubleOf(Map<String, Object> m, String key) {
+        Object v = m.get(key);
+        if (v == null) return 0;
+        if (!(v instanceof Number)) throw new IllegalArgumentException("'" + key + "' is not a number");
+        return ((Number) v).doubleValue();
+    }
+
+    private static String date(LocalDateTime t) {
+        return t == null ? null : t.toString();
+    }
+
+    private static LocalDateTime dateOf(Map<String, Object> m, String key) {
+        String s = str(m, key);
+        try {
+            return s == null ? null : LocalDateTime.parse(s);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("'" + key + "' is not a date: " + s);
+        }
+    }
+}
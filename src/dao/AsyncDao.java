@@ -0,0 +1,120 @@
+package dao;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DAO calls off the JavaFX application thread.
+ * Calls execute on virtual threads when the JVM has them (JDK 21+), otherwise on a small
+ * daemon thread pool; either way at most MAX_CONCURRENT calls run at once, matching the
+ * connection pool size. Every future times out, and cancelling it interrupts the call.
+ */
+public class AsyncDao {
+
+    /** A DAO call; may throw any of the DAO exceptions. */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    public static final long DEFAULT_TIMEOUT_MS = 15_000;
+
+    private static final int MAX_CONCURRENT = 20;
+    private static final int MAX_QUEUED = 1_000;
+
+    // bounds concurrency when running on (unbounded) virtual threads
+    private static final Semaphore PERMITS = new Semaphore(MAX_CONCURRENT);
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private AsyncDao() {}
+
+    public static <T> CompletableFuture<T> supply(Call<T> call) {
+        return supply(call, DEFAULT_TIMEOUT_MS);
+    }
+
+    public static <T> CompletableFuture<T> supply(Call<T> call, long timeoutMs) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = EXECUTOR.submit(() -> run(call, result));
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        // stop the worker when the caller gives up (cancel or timeout)
+        result.whenComplete((value, error) -> {
+            if (error != null) task.cancel(true);
+        });
+        return result;
+    }
+
+    private static <T> void run(Call<T> call, CompletableFuture<T> result) {
+        if (result.isDone()) return; // cancelled or timed out while queued
+        try {
+            PERMITS.acquire();
+        } catch (InterruptedException ie) {
+            result.completeExceptionally(new CancellationException("Cancelled while waiting to run."));
+            return;
+        }
+        try {
+            if (!result.isDone()) result.complete(call.call());
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            PERMITS.release();
+        }
+    }
+
+    public static void shutdown() {
+        EXECUTOR.shutdownNow();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // JDK 21+: Executors.newVirtualThreadPerTaskExecutor(); looked up reflectively to stay source-compatible with 17
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger n = new AtomicInteger();
+            return new ThreadPoolExecutor(MAX_CONCURRENT, MAX_CONCURRENT, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+                        Thread t = new Thread(r, "dao-async-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+    }
+
+    /**
+     * Holds the latest request of one kind (e.g. a search). Submitting a new request cancels
+     * the previous one, so stale results never overwrite newer ones.
+     */
+    public static class Latest<T> {
+        private CompletableFuture<T> current;
+
+        public synchronized CompletableFuture<T> submit(Call<T> call) {
+            cancel();
+            current = supply(call);
+            return current;
+        }
+
+        public synchronized void cancel() {
+            if (current != null) current.cancel(true);
+            current = null;
+        }
+
+        /** Whether the given future is still the latest request (i.e. its result should be shown). */
+        public synchronized boolean isCurrent(CompletableFuture<T> f) {
+            return f == current;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package dao;
+
+import database.DatabaseConnection;
+import exceptions.QuizNotFoundException;
+import models.AnswerSheet;
+import models.Attempt;
+import models.Question;
+import models.Result;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AttemptDAO {
+
+    /** SQLState of a submission refused because its attempt ran out; retrying it cannot succeed. */
+    public static final String ATTEMPT_CLOSED = "45000";
+
+    // how late a submission may reach the database: the client's own grace, the journal's sync
+    // interval and the submission queue's retries
+    private static final long SUBMIT_GRACE_SECONDS = Long.getLong("quiz.submit.graceSeconds", 120);
+
+    private static final String ATTEMPT_COLUMNS = "id, student_id, quiz_id, attempt_no, started_at, submitted_at, result_id";
+    private static final String SELECT_OPEN = "SELECT " + ATTEMPT_COLUMNS + " FROM attempts"
+            + " WHERE student_id = ? AND quiz_id = ? AND submitted_at IS NULL ORDER BY attempt_no DESC LIMIT 1";
+    private static final String SELECT_BY_ID = "SELECT " + ATTEMPT_COLUMNS + " FROM attempts WHERE id = ?";
+    private static final String INSERT_NEXT = "INSERT INTO attempts (student_id, quiz_id, attempt_no)"
+            + " SELECT ?, ?, COALESCE(MAX(attempt_no), 0) + 1 FROM attempts WHERE student_id = ? AND quiz_id = ?";
+    // a change only wins over the stored one if it is newer (journal sequence), so replays are harmless
+    private static final String UPSERT_ANSWER = "INSERT INTO attempt_answers (attempt_id, question_id, choice, seq) VALUES (?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE choice = IF(VALUES(seq) > seq, VALUES(choice), choice), seq = GREATEST(seq, VALUES(seq))";
+    // the time limit is taken on the database clock, which also set started_at; the deadline was written by
+    // Java through the connector's time zone conversion, so it is compared with a bound now, as in QuizDAO.
+    // params: now, attempt id
+    private static final String SELECT_REMAINING = "SELECT q.time_limit * 60 - TIMESTAMPDIFF(SECOND, a.started_at, CURRENT_TIMESTAMP),"
+            + " TIMESTAMPDIFF(SECOND, ?, q.deadline) FROM attempts a JOIN quizzes q ON q.id = a.quiz_id WHERE a.id = ?";
+    // attempts not submitted yet that ran out more than the grace period ago; params: grace, grace, now, then the ids
+    private static final String SELECT_LATE = "SELECT a.id FROM attempts a JOIN quizzes q ON q.id = a.quiz_id WHERE a.submitted_at IS NULL"
+            + " AND (a.started_at + INTERVAL q.time_limit MINUTE + INTERVAL ? SECOND < CURRENT_TIMESTAMP"
+            + " OR q.deadline + INTERVAL ? SECOND < ?) AND a.id IN (";
+    // the final answers of a submission win over any journalled change that arrives later
+    private static final long FINAL_SEQ = Long.MAX_VALUE;
+    private static final String SELECT_GRADED_ANSWERS = "SELECT aa.attempt_id, aa.question_id, aa.choice, q.correct_option"
+            + " FROM attempt_answers aa JOIN questions q ON q.id = aa.question_id WHERE aa.attempt_id IN (";
+    private static final String MARK_SUBMITTED = "UPDATE attempts SET submitted_at = CURRENT_TIMESTAMP, result_id = ? WHERE id = ? AND submitted_at IS NULL";
+
+    /** One answer change of an attempt, as recorded in the attempt journal. */
+    public static class AnswerChange {
+        final int attemptId;
+        final int questionId;
+        final byte choice;
+        final long seq;
+
+        public AnswerChange(int attemptId, int questionId, byte choice, long seq) {
+            this.attemptId = attemptId;
+            this.questionId = questionId;
+            this.choice = choice;
+            this.seq = seq;
+        }
+
+        public int getAttemptId() { return attemptId; }
+    }
+
+    /**
+     * The student's open (not submitted) attempt at the quiz, or a new one numbered after
+     * their previous attempts.
+     */
+    public Attempt openAttempt(int studentId, int quizId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toAttempt(RemoteBackend.call("attempts/open", "studentId", studentId, "quizId", quizId));
+        try (Connection c = DatabaseConnection.getConnection()) {
+            for (int tries = 0; ; tries++) {
+                Attempt open = findOpen(c, studentId, quizId);
+                if (open != null) return open;
+                try (PreparedStatement ps = c.prepareStatement(INSERT_NEXT, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, studentId);
+                    ps.setInt(2, quizId);
+                    ps.setInt(3, studentId);
+                    ps.setInt(4, quizId);
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (rs.next()) return getById(c, rs.getInt(1));
+                    }
+                    throw new SQLException("No id generated for new attempt.");
+                } catch (SQLIntegrityConstraintViolationException ex) {
+                    // another window started the same attempt number first: pick that one up
+                    if (tries >= 2) throw ex;
+                }
+            }
+        }
+    }
+
+    public Attempt getById(int attemptId) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            return getById(c, attemptId);
+        }
+    }
+
+    /**
+     * Seconds left in an attempt: its quiz's time limit counted from started_at, capped by
+     * the quiz deadline. Long.MAX_VALUE if the quiz has neither.
+     */
+    public long secondsRemaining(int attemptId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toLong(RemoteBackend.call("attempts/remaining", "attemptId", attemptId));
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_REMAINING)) {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setInt(2, attemptId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Attempt " + attemptId + " not found.");
+                long remaining = Long.MAX_VALUE;
+                long byLimit = rs.getLong(1);
+                if (!rs.wasNull()) remaining = byLimit;
+                long byDeadline = rs.getLong(2);
+                if (!rs.wasNull()) remaining = Math.min(remaining, byDeadline);
+                return remaining;
+            }
+        }
+    }
+
+    /** Write journalled answer changes of any number of attempts as one batch. */
+    public void saveAnswers(List<AnswerChange> changes) throws SQLException {
+        if (changes.isEmpty()) return;
+        if (RemoteBackend.isEnabled()) {
+            RemoteBackend.call("attempts/saveAnswers", "changes", ApiCodec.list(changes, ApiCodec::answerChange));
+            return;
+        }
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(UPSERT_ANSWER)) {
+            for (AnswerChange ch : changes) {
+                ps.setInt(1, ch.attemptId);
+                ps.setInt(2, ch.questionId);
+                ps.setByte(3, ch.choice);
+                ps.setLong(4, ch.seq);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Store the results of finished attempts and mark the attempts submitted, as one
+     * transaction with batched statements. results.get(i) belongs to attemptIds.get(i).
+     * Idempotent: an attempt whose result is already stored gets the stored id and nothing
+     * is written for it. Sets the id of every result.
+     *
+     * Only the answers of a result are taken from the caller. They are stored as the
+     * attempt's final answers, and the result is graded again from attempt_answers against
+     * questions.correct_option over the student's drawn questions. Its student, quiz and
+     * attempt number come from the attempt row, and its score and answers are overwritten.
+     * The time limit and deadline are enforced here, whatever the client did: if an attempt
+     * not submitted yet ran out more than quiz.submit.graceSeconds (default 120) ago, nothing
+     * is written and the SQLException has SQLState ATTEMPT_CLOSED.
+     */
+    public void finalizeAttempts(List<Integer> attemptIds, List<Result> results) throws SQLException {
+        if (results.isEmpty()) return;
+        if (RemoteBackend.isEnabled()) {
+            // the server replies with the results as it graded and stored them, in order
+            List<Result> stored = ApiCodec.toList(RemoteBackend.call("attempts/finalize", "attemptIds", attemptIds,
+                    "results", ApiCodec.list(results, ApiCodec::result)), ApiCodec::toResult);
+            for (int i = 0; i < results.size() && i < stored.size(); i++) {
+                Result r = results.get(i);
+                r.setId(stored.get(i).getId());
+                r.setScore(stored.get(i).getScore());
+                r.setTotalQuestions(stored.get(i).getTotalQuestions());
+            }
+            return;
+        }
+        // looked up before the transaction, so no second connection is borrowed while it holds one
+        List<Attempt> attempts = new ArrayList<>(attemptIds.size());
+        Map<Integer, List<Question>> papers = new HashMap<>();
+        try (Connection c = DatabaseConnection.getConnection()) {
+            for (int id : attemptIds) {
+                Attempt a = getById(c, id);
+                if (a == null) throw new SQLException("Attempt " + id + " not found.");
+                attempts.add(a);
+            }
+        }
+        QuizDAO quizDAO = new QuizDAO();
+        QuestionDAO questionDAO = new QuestionDAO();
+        for (Attempt a : attempts) {
+            if (papers.containsKey(a.getId())) continue;
+            try {
+                papers.put(a.getId(), questionDAO.drawQuestions(quizDAO.getQuizById(a.getQuizId()), a.getStudentId()));
+            } catch (QuizNotFoundException ex) {
+                throw new SQLException("Attempt " + a.getId() + ": " + ex.getMessage(), ex);
+            }
+        }
+        List<Result> added;
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                rejectLate(c, attemptIds);
+                storeFinalAnswers(c, attempts, papers, results);
+                grade(c, attempts, papers, results);
+                added = new ResultDAO().addAttemptResults(c, results);
+                try (PreparedStatement ps = c.prepareStatement(MARK_SUBMITTED)) {
+                    for (int i = 0; i < results.size(); i++) {
+                        ps.setInt(1, results.get(i).getId());
+                        ps.setInt(2, attemptIds.get(i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+        }
+        for (Result r : added) AnalyticsDAO.recordResult(r.getId(), r);
+    }
+
+    // only answers to questions on the student's paper are taken, a choice other than 1-4 as no answer
+    private static void storeFinalAnswers(Connection c, List<Attempt> attempts, Map<Integer, List<Question>> papers,
+                                          List<Result> results) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT_ANSWER)) {
+            for (int i = 0; i < results.size(); i++) {
+                AnswerSheet sheet = results.get(i).getAnswerSheet();
+                if (sheet == null) continue;
+                Attempt a = attempts.get(i);
+                for (Question q : papers.get(a.getId())) {
+                    byte choice = sheet.choiceFor(q.getId());
+                    ps.setInt(1, a.getId());
+                    ps.setInt(2, q.getId());
+                    ps.setByte(3, choice >= 1 && choice <= 4 ? choice : AnswerSheet.NO_ANSWER);
+                    ps.setLong(4, FINAL_SEQ);
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // score each result from the stored answers to the questions its student was given
+    private static void grade(Connection c, List<Attempt> attempts, Map<Integer, List<Question>> papers,
+                              List<Result> results) throws SQLException {
+        Map<Integer, Map<Integer, Byte>> chosen = new HashMap<>();
+        Map<Integer, Set<Integer>> right = new HashMap<>();
+        StringBuilder sql = new StringBuilder(SELECT_GRADED_ANSWERS);
+        for (int i = 0; i < attempts.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+        try (PreparedStatement ps = c.prepareStatement(sql.append(')').toString())) {
+            for (int i = 0; i < attempts.size(); i++) ps.setInt(i + 1, attempts.get(i).getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int attemptId = rs.getInt(1);
+                    int questionId = rs.getInt(2);
+                    byte choice = rs.getByte(3);
+                    String correct = rs.getString(4);
+                    chosen.computeIfAbsent(attemptId, k -> new HashMap<>()).put(questionId, choice);
+                    if (choice != AnswerSheet.NO_ANSWER && correct != null && !correct.isEmpty()
+                            && choice == AnswerSheet.choiceOf(correct.charAt(0))) {
+                        right.computeIfAbsent(attemptId, k -> new HashSet<>()).add(questionId);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < attempts.size(); i++) {
+            Attempt a = attempts.get(i);
+            List<Question> paper = papers.get(a.getId());
+            Map<Integer, Byte> choices = chosen.getOrDefault(a.getId(), Collections.emptyMap());
+            Set<Integer> correctIds = right.getOrDefault(a.getId(), Collections.emptySet());
+            AnswerSheet sheet = new AnswerSheet(paper.size());
+            int correct = 0;
+            for (Question q : paper) {
+                sheet.add(q.getId(), choices.getOrDefault(q.getId(), AnswerSheet.NO_ANSWER));
+                if (correctIds.contains(q.getId())) correct++;
+            }
+            Result r = results.get(i);
+            r.setStudentId(a.getStudentId());
+            r.setQuizId(a.getQuizId());
+            r.setAttemptNo(a.getAttemptNo());
+            r.setTotalQuestions(paper.size());
+            r.setScore(paper.isEmpty() ? 0 : (double) correct / paper.size() * 100.0);
+            r.setAnswers(sheet.toText());
+            r.setAnswerSheet(sheet);
+        }
+    }
+
+    private static void rejectLate(Connection c, List<Integer> attemptIds) throws SQLException {
+        StringBuilder sql = new StringBuilder(SELECT_LATE);
+        for (int i = 0; i < attemptIds.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+        try (PreparedStatement ps = c.prepareStatement(sql.append(')').toString())) {
+            int p = 1;
+            ps.setLong(p++, SUBMIT_GRACE_SECONDS);
+            ps.setLong(p++, SUBMIT_GRACE_SECONDS);
+            ps.setTimestamp(p++, Timestamp.valueOf(LocalDateTime.now()));
+            for (int id : attemptIds) ps.setInt(p++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    throw new SQLException("Attempt " + rs.getInt(1) + " was submitted after its time limit or deadline.", ATTEMPT_CLOSED);
+                }
+            }
+        }
+    }
+
+    private static Attempt findOpen(Connection c, int studentId, int quizId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SELECT_OPEN)) {
+            ps.setInt(1, studentId);
+            ps.setInt(2, quizId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapAttempt(rs) : null;
+            }
+        }
+    }
+
+    private static Attempt getById(Connection c, int attemptId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SELECT_BY_ID)) {
+            ps.setInt(1, attemptId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapAttempt(rs) : null;
+            }
+        }
+    }
+
+    private static Attempt mapAttempt(ResultSet rs) throws SQLException {
+        Attempt a = new Attempt();
+        a.setId(rs.getInt(1));
+        a.setStudentId(rs.getInt(2));
+        a.setQuizId(rs.getInt(3));
+        a.setAttemptNo(rs.getInt(4));
+        Timestamp started = rs.getTimestamp(5);
+        if (started != null) a.setStartedAt(started.toLocalDateTime());
+        Timestamp submitted = rs.getTimestamp(6);
+        if (submitted != null) a.setSubmittedAt(submitted.toLocalDateTime());
+        a.setResultId(rs.getInt(7));
+        return a;
+    }
+}
@@ -0,0 +1,495 @@
+package dao;
+
+import models.AnswerSheet;
+import models.Attempt;
+import models.Question;
+import models.Result;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead journal of one in-progress attempt, so answers survive a crash or a
+ * database outage. Every answer change is appended to
+ * journal/attempt-s&lt;student&gt;-q&lt;quiz&gt;-a&lt;attempt number&gt;.wal; a single writer thread
+ * appends the queued records of all journals and fsyncs each touched file once per batch
+ * (group commit). A background task pushes new answer changes of all open journals to
+ * attempt_answers in one batch every few seconds, and hands finished attempts to the
+ * SubmissionQueue, deleting their journal once the result is stored.
+ *
+ * At startup only finished journals are loaded, to upload them. An unfinished journal stays
+ * on disk until the student reopens the quiz and gets the same attempt back; one left
+ * untouched for longer than quiz.journal.maxAgeHours (default a week) is deleted. Through a
+ * quiz server, only the journals of the signed-in student are synced and uploaded; another
+ * student's wait on disk until that student logs in on this machine again.
+ *
+ * Record layout: type (1 byte), payload length (int), payload, CRC32 of the preceding
+ * bytes (int). Replay stops at the first torn or corrupt record.
+ */
+public class AttemptJournal {
+
+    private static final Logger LOG = Logger.getLogger(AttemptJournal.class.getName());
+
+    private static final byte REC_START = 1;    // studentId, quizId, startedAt millis
+    private static final byte REC_ATTEMPT = 2;  // attempt id and number in the database
+    private static final byte REC_ANSWER = 3;   // seq, questionId, choice
+    private static final byte REC_FINAL = 4;    // score, total, answers text length + UTF-8, packed sheet length + bytes
+
+    private static final Path DIR = Paths.get(System.getProperty("quiz.journal.dir", "journal"));
+    private static final long SYNC_INTERVAL_MS = 2_000;
+    private static final int MAX_BATCH = 1_024;
+    private static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(Long.getLong("quiz.journal.maxAgeHours", 7 * 24));
+    // older journals have no attempt number in their name
+    private static final Pattern FILE_NAME = Pattern.compile("attempt-(s(\\d+)-q(\\d+)(?:-a\\d+)?)\\.wal");
+
+    private static final BlockingQueue<Append> APPENDS = new LinkedBlockingQueue<>();
+    private static final Append STOP = new Append(null, null);
+    private static final Map<String, AttemptJournal> OPEN = new ConcurrentHashMap<>();
+    private static final AttemptDAO ATTEMPT_DAO = new AttemptDAO();
+    private static Thread writer;
+    private static ScheduledExecutorService syncer;
+
+    private final int studentId;
+    private final int quizId;
+    private final String key;
+    private final Path file;
+    private final FileChannel channel;
+    private long startedAtMillis;
+    private int attemptId;
+    private int attemptNo;
+    private final Map<Integer, Answer> answers = new LinkedHashMap<>();
+    private long lastSeq;
+    private long syncedSeq;
+    private boolean resumed;
+    private Result finalResult; // set once the final record is durable
+    private CompletableFuture<Integer> upload; // finalResult is in the SubmissionQueue
+
+    private AttemptJournal(int studentId, int quizId, String key) throws IOException {
+        this.studentId = studentId;
+        this.quizId = quizId;
+        this.key = key;
+        this.file = DIR.resolve("attempt-" + key + ".wal");
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * The journal of an attempt: replayed from disk if one exists (a resumed or not yet
+     * uploaded attempt), otherwise a new one. Each attempt has its own journal, so a retake
+     * does not find the previous attempt's.
+     */
+    public static synchronized AttemptJournal open(Attempt attempt) throws IOException {
+        ensureStarted();
+        String key = key(attempt.getStudentId(), attempt.getQuizId(), attempt.getAttemptNo());
+        AttemptJournal j = OPEN.get(key);
+        if (j == null) {
+            Files.createDirectories(DIR);
+            j = new AttemptJournal(attempt.getStudentId(), attempt.getQuizId(), key);
+            j.replay();
+            if (!j.resumed) {
+                j.startedAtMillis = System.currentTimeMillis();
+                j.append(REC_START, ByteBuffer.allocate(16).putInt(j.studentId).putInt(j.quizId).putLong(j.startedAtMillis));
+            }
+            OPEN.put(key, j);
+        }
+        j.attach(attempt);
+        return j;
+    }
+
+    /**
+     * Load the finished journals left by earlier runs so they get uploaded, and delete
+     * abandoned ones past the maximum age. Call once at startup.
+     */
+    public static void recoverPending() {
+        if (!Files.isDirectory(DIR)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIR, "attempt-s*-q*.wal")) {
+            for (Path f : files) {
+                try {
+                    recover(f);
+                } catch (IOException | RuntimeException ex) {
+                    LOG.warning("Could not recover " + f.getFileName() + ": " + ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warning("Recovery failed: " + ex.getMessage());
+        }
+    }
+
+    private static synchronized void recover(Path f) throws IOException {
+        Matcher m = FILE_NAME.matcher(f.getFileName().toString());
+        if (!m.matches() || OPEN.containsKey(m.group(1))) return;
+        AttemptJournal j = new AttemptJournal(Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), m.group(1));
+        j.replay();
+        if (j.finalResult != null && j.attemptId != 0) {
+            ensureStarted();
+            OPEN.put(j.key, j);
+            System.out.println("AttemptJournal: recovered unsent submission " + f.getFileName());
+            return;
+        }
+        // unfinished: left for the student to resume, not opened (that would start nothing on the server)
+        j.channel.close();
+        if (System.currentTimeMillis() - Files.getLastModifiedTime(f).toMillis() > MAX_AGE_MS) {
+            Files.deleteIfExists(f);
+            System.out.println("AttemptJournal: deleted abandoned journal " + f.getFileName());
+        }
+    }
+
+    public synchronized boolean isResumed() { return resumed; }
+    public synchronized boolean isFinished() { return finalResult != null; }
+
+    public synchronized LocalDateTime getStartedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(startedAtMillis), ZoneId.systemDefault());
+    }
+
+    /** The journalled choice for a question, or AnswerSheet.NO_ANSWER. */
+    public synchronized byte choiceFor(int questionId) {
+        Answer a = answers.get(questionId);
+        return a == null ? AnswerSheet.NO_ANSWER : a.choice;
+    }
+
+    public synchronized boolean hasAnswers() { return !answers.isEmpty(); }
+
+    /** The journalled answers to the given questions, in their order. */
+    public synchronized AnswerSheet answersFor(List<Question> questions) {
+        AnswerSheet sheet = new AnswerSheet(questions.size());
+        for (Question q : questions) {
+            Answer a = answers.get(q.getId());
+            sheet.add(q.getId(), a == null ? AnswerSheet.NO_ANSWER : a.choice);
+        }
+        return sheet;
+    }
+
+    /** Journal an answer change; the future completes once it is on disk. */
+    public synchronized CompletableFuture<Void> recordAnswer(int questionId, byte choice) {
+        if (finalResult != null) return CompletableFuture.completedFuture(null);
+        long seq = ++lastSeq;
+        answers.put(questionId, new Answer(choice, seq));
+        return append(REC_ANSWER, ByteBuffer.allocate(13).putLong(seq).putInt(questionId).put(choice));
+    }
+
+    /**
+     * Journal the final result. Once the future completes the submission is safe on disk;
+     * it is uploaded in the background (retried until the database accepts it).
+     */
+    public CompletableFuture<Void> finish(Result r) {
+        byte[] text = (r.getAnswers() == null ? "" : r.getAnswers()).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] packed = r.getAnswerSheet().encode();
+        ByteBuffer payload = ByteBuffer.allocate(8 + 4 + 4 + text.length + 4 + packed.length)
+                .putDouble(r.getScore()).putInt(r.getTotalQuestions())
+                .putInt(text.length).put(text).putInt(packed.length).put(packed);
+        CompletableFuture<Void> durable;
+        synchronized (this) {
+            durable = append(REC_FINAL, payload);
+        }
+        return durable.thenRun(() -> {
+            synchronized (this) {
+                finalResult = r;
+            }
+            // no immediate sync: the next periodic round uploads it, which spreads the uploads
+            // of a class whose timers all expire at the same moment over the sync interval
+        });
+    }
+
+    private synchronized void attach(Attempt a) {
+        if (attemptId == a.getId()) return;
+        attemptId = a.getId();
+        attemptNo = a.getAttemptNo();
+        append(REC_ATTEMPT, ByteBuffer.allocate(8).putInt(attemptId).putInt(attemptNo));
+    }
+
+    // --- file format ---
+
+    private CompletableFuture<Void> append(byte type, ByteBuffer payload) {
+        byte[] body = payload.array();
+        ByteBuffer rec = ByteBuffer.allocate(1 + 4 + body.length + 4);
+        rec.put(type).putInt(body.length).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(rec.array(), 0, 5 + body.length);
+        rec.putInt((int) crc.getValue());
+        Append a = new Append(this, rec.array());
+        APPENDS.add(a);
+        return a.done;
+    }
+
+    private synchronized void replay() throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int valid = 0;
+        while (buf.remaining() >= 9) {
+            int start = buf.position();
+            byte type = buf.get();
+            int len = buf.getInt();
+            if (len < 0 || len + 4 > buf.remaining()) break;
+            CRC32 crc = new CRC32();
+            crc.update(data, start, 5 + len);
+            buf.position(start + 5 + len);
+            if (buf.getInt() != (int) crc.getValue()) break;
+            ByteBuffer p = ByteBuffer.wrap(data, start + 5, len);
+            switch (type) {
+                case REC_START:
+                    p.getInt();
+                    p.getInt();
+                    startedAtMillis = p.getLong();
+                    resumed = true;
+                    break;
+                case REC_ATTEMPT:
+                    attemptId = p.getInt();
+                    attemptNo = p.getInt();
+                    break;
+                case REC_ANSWER:
+                    long seq = p.getLong();
+                    answers.put(p.getInt(), new Answer(p.get(), seq));
+                    lastSeq = Math.max(lastSeq, seq);
+                    break;
+                case REC_FINAL:
+                    finalResult = readFinal(p);
+                    break;
+                default:
+                    break;
+            }
+            valid = buf.position();
+        }
+        if (valid < data.length) {
+            // drop a torn tail so new records follow the last good one
+            channel.truncate(valid);
+            LOG.warning("Truncated " + (data.length - valid) + " bad bytes from " + file.getFileName());
+        }
+        channel.position(valid);
+    }
+
+    private Result readFinal(ByteBuffer p) {
+        Result r = new Result();
+        r.setStudentId(studentId);
+        r.setQuizId(quizId);
+        r.setScore(p.getDouble());
+        r.setTotalQuestions(p.getInt());
+        byte[] text = new byte[p.getInt()];
+        p.get(text);
+        byte[] packed = new byte[p.getInt()];
+        p.get(packed);
+        r.setAnswers(new String(text, java.nio.charset.StandardCharsets.UTF_8));
+        r.setAnswerSheet(AnswerSheet.decode(packed));
+        return r;
+    }
+
+    // --- group commit writer ---
+
+    private static synchronized void ensureStarted() {
+        if (writer != null) return;
+        writer = new Thread(AttemptJournal::writeLoop, "attempt-journal");
+        writer.setDaemon(true);
+        writer.start();
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attempt-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(AttemptJournal::syncAll, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void writeLoop() {
+        List<Append> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(APPENDS.take());
+            } catch (InterruptedException ie) {
+                return;
+            }
+            APPENDS.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.remove(STOP);
+            Map<AttemptJournal, List<Append>> byJournal = new LinkedHashMap<>();
+            for (Append a : batch) byJournal.computeIfAbsent(a.journal, k -> new ArrayList<>()).add(a);
+            for (Map.Entry<AttemptJournal, List<Append>> e : byJournal.entrySet()) {
+                try {
+                    FileChannel ch = e.getKey().channel;
+                    for (Append a : e.getValue()) {
+                        ByteBuffer b = ByteBuffer.wrap(a.bytes);
+                        while (b.hasRemaining()) ch.write(b);
+                    }
+                    ch.force(false); // one fsync for all of this journal's records in the batch
+                    for (Append a : e.getValue()) a.done.complete(null);
+                } catch (IOException ex) {
+                    for (Append a : e.getValue()) a.done.completeExceptionally(ex);
+                }
+            }
+            batch.clear();
+            if (stop) return;
+        }
+    }
+
+    // --- background sync ---
+
+    private static void syncAll() {
+        if (OPEN.isEmpty()) return;
+        try {
+            pushAnswers();
+        } catch (SQLException | RuntimeException ex) {
+            // the database is unreachable: everything stays journalled, retry next round
+            LOG.warning("Sync deferred: " + ex.getMessage());
+            return;
+        }
+        for (AttemptJournal j : OPEN.values()) {
+            if (!j.syncable()) continue;
+            try {
+                j.upload();
+            } catch (RuntimeException ex) {
+                LOG.warning("Upload of " + j.file.getFileName() + " deferred: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue the finished attempt in the SubmissionQueue unless it already is; completes with
+     * the stored result id, after which the journal is deleted. Null if not finished.
+     */
+    synchronized CompletableFuture<Integer> upload() {
+        if (finalResult == null || attemptId == 0) return null;
+        if (upload != null) return upload;
+        finalResult.setAttemptNo(attemptNo);
+        CompletableFuture<Integer> queued = SubmissionQueue.submit(attemptId, finalResult);
+        upload = queued;
+        queued.whenComplete((id, error) -> {
+            if (error == null) {
+                uploaded();
+                return;
+            }
+            if (error instanceof SQLException && AttemptDAO.ATTEMPT_CLOSED.equals(((SQLException) error).getSQLState())) {
+                // refused for good (the attempt ran out before this reached the database): stop retrying
+                delete();
+                LOG.warning("Submission of student " + studentId + " for quiz " + quizId + " refused: " + error.getMessage());
+                return;
+            }
+            synchronized (this) {
+                upload = null; // still journalled; the next round queues it again
+            }
+            LOG.warning("Upload deferred: " + error.getMessage());
+        });
+        return queued;
+    }
+
+    // one batch with the new answer changes of every open journal; if the database rejects
+    // it, each journal's changes are written on their own so one bad journal holds up no other
+    private static void pushAnswers() throws SQLException {
+        Map<AttemptJournal, List<AttemptDAO.AnswerChange>> pending = new LinkedHashMap<>();
+        Map<AttemptJournal, Long> upTo = new LinkedHashMap<>();
+        for (AttemptJournal j : OPEN.values()) {
+            synchronized (j) {
+                if (j.attemptId == 0 || j.lastSeq == j.syncedSeq || !j.syncable()) continue;
+                List<AttemptDAO.AnswerChange> changes = new ArrayList<>();
+                for (Map.Entry<Integer, Answer> e : j.answers.entrySet()) {
+                    Answer a = e.getValue();
+                    if (a.seq > j.syncedSeq) changes.add(new AttemptDAO.AnswerChange(j.attemptId, e.getKey(), a.choice, a.seq));
+                }
+                pending.put(j, changes);
+                upTo.put(j, j.lastSeq);
+            }
+        }
+        if (pending.isEmpty()) return;
+        List<AttemptDAO.AnswerChange> all = new ArrayList<>();
+        for (List<AttemptDAO.AnswerChange> changes : pending.values()) all.addAll(changes);
+        try {
+            ATTEMPT_DAO.saveAnswers(all);
+        } catch (SQLException ex) {
+            if (pending.size() == 1 || SubmissionQueue.isTransient(ex)) throw ex;
+            for (Map.Entry<AttemptJournal, List<AttemptDAO.AnswerChange>> e : pending.entrySet()) {
+                try {
+                    ATTEMPT_DAO.saveAnswers(e.getValue());
+                } catch (SQLException one) {
+                    upTo.remove(e.getKey());
+                    LOG.warning("Answers of " + e.getKey().file.getFileName() + " not synced: " + one.getMessage());
+                }
+            }
+        }
+        for (Map.Entry<AttemptJournal, Long> e : upTo.entrySet()) {
+            synchronized (e.getKey()) {
+                e.getKey().syncedSeq = Math.max(e.getKey().syncedSeq, e.getValue());
+            }
+        }
+    }
+
+    // the quiz server accepts a student's answers only with that student's token
+    private boolean syncable() {
+        return !RemoteBackend.isEnabled() || RemoteBackend.signedInUserId() == studentId;
+    }
+
+    private void uploaded() {
+        delete();
+        System.out.println("AttemptJournal: uploaded submission of student " + studentId + " for quiz " + quizId);
+    }
+
+    private void delete() {
+        OPEN.remove(key, this);
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOG.warning("Could not delete " + file + ": " + ex.getMessage());
+        }
+    }
+
+    /** Flush queued records and stop the background threads (application exit). */
+    public static void shutdown() {
+        Thread w;
+        synchronized (AttemptJournal.class) {
+            w = writer;
+            if (w == null) return;
+            syncer.shutdownNow();
+        }
+        APPENDS.add(STOP);
+        try {
+            w.join(2_000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String key(int studentId, int quizId, int attemptNo) {
+        return "s" + studentId + "-q" + quizId + "-a" + attemptNo;
+    }
+
+    private static class Answer {
+        final byte choice;
+        final long seq;
+
+        Answer(byte choice, long seq) {
+            this.choice = choice;
+            this.seq = seq;
+        }
+    }
+
+    private static class Append {
+        final AttemptJournal journal;
+        final byte[] bytes;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Append(AttemptJournal journal, byte[] bytes) {
+            this.journal = journal;
+            this.bytes = bytes;
+        }
+    }
+}
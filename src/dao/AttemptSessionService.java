@@ -0,0 +1,298 @@
+package dao;
+
+import exceptions.AttemptClosedException;
+import models.AnswerSheet;
+import models.Attempt;
+import models.Question;
+import models.Quiz;
+import models.Result;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times quiz attempts and enforces their deadlines. The remaining time of an attempt comes
+ * from the database (attempts.started_at and the quiz time limit on the database clock, the
+ * quiz deadline) and is converted to a local monotonic deadline once, so neither the client
+ * clock nor reopening the window resets it.
+ *
+ * One daemon thread ticks every open session once a second, reporting the countdown to its
+ * listener; when an attempt runs out, the service submits the journalled answers itself,
+ * whether or not the window is still open, and tries again on later ticks if that fails.
+ * Submissions arriving more than GRACE_MS after the deadline are refused here; the database
+ * side check in AttemptDAO.finalizeAttempts holds even for a client that never submits.
+ */
+public class AttemptSessionService {
+
+    private static final Logger LOG = Logger.getLogger(AttemptSessionService.class.getName());
+
+    /** Callbacks of a session, run on the executor given to start(). */
+    public interface Listener {
+        void onTick(long remainingSeconds);
+
+        /**
+         * The attempt ran out. submitted is the automatic submission of the journalled
+         * answers, or null if there is no journal and the window has to submit itself.
+         */
+        void onExpired(CompletableFuture<Result> submitted);
+    }
+
+    // allowance for the auto-submit path and a slow click at 00:00
+    private static final long GRACE_MS = 15_000;
+
+    private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+    private static final AttemptDAO ATTEMPT_DAO = new AttemptDAO();
+    private static ScheduledExecutorService timer;
+
+    private AttemptSessionService() {}
+
+    /**
+     * Start (or rejoin) the student's attempt at the quiz, resuming its journal if one is on
+     * disk. A previous attempt that is submitted but not stored yet is stored first, so the
+     * new one is a retake. Blocking: call off the FX thread. Throws AttemptClosedException if
+     * the attempt cannot be started any more.
+     */
+    public static Session start(int studentId, Quiz quiz, List<Question> questions,
+                                Listener listener, Executor callbacks) throws SQLException, AttemptClosedException {
+        String key = studentId + ":" + quiz.getId();
+        Session existing = SESSIONS.get(key);
+        if (existing != null && !existing.submitted) {
+            existing.listen(listener, callbacks);
+            return existing;
+        }
+        Attempt attempt = ATTEMPT_DAO.openAttempt(studentId, quiz.getId());
+        AttemptJournal journal = openJournal(attempt);
+        if (journal != null && journal.isFinished()) {
+            storePending(journal);
+            attempt = ATTEMPT_DAO.openAttempt(studentId, quiz.getId());
+            journal = openJournal(attempt);
+        }
+        long remainingSeconds = ATTEMPT_DAO.secondsRemaining(attempt.getId());
+        boolean started = journal != null && journal.hasAnswers();
+        if (remainingSeconds <= 0 && !started) {
+            throw new AttemptClosedException("This quiz has passed its deadline or time limit and cannot be attempted.");
+        }
+        long endsAt = remainingSeconds == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : System.nanoTime() + TimeUnit.SECONDS.toNanos(remainingSeconds);
+        Session s = new Session(key, attempt, questions, journal, endsAt);
+        s.listen(listener, callbacks);
+        SESSIONS.put(key, s);
+        ensureStarted();
+        return s;
+    }
+
+    // a journal that cannot be opened only costs the autosave
+    private static AttemptJournal openJournal(Attempt attempt) {
+        try {
+            return AttemptJournal.open(attempt);
+        } catch (IOException ex) {
+            LOG.warning("Attempt journal unavailable: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void storePending(AttemptJournal journal) throws SQLException {
+        try {
+            journal.upload().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+            throw new SQLException("Your previous submission of this quiz is saved but could not be stored yet: "
+                    + ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /** Score an answer sheet against the questions it answers. */
+    public static Result grade(int studentId, int quizId, List<Question> questions, AnswerSheet answers) {
+        int correct = 0;
+        for (Question q : questions) {
+            byte chosen = answers.choiceFor(q.getId());
+            if (chosen != AnswerSheet.NO_ANSWER && chosen == AnswerSheet.choiceOf(q.getCorrectOption())) correct++;
+        }
+        Result r = new Result();
+        r.setStudentId(studentId);
+        r.setQuizId(quizId);
+        r.setScore(questions.isEmpty() ? 0 : (double) correct / questions.size() * 100.0);
+        r.setTotalQuestions(questions.size());
+        r.setAnswers(answers.toText());
+        r.setAnswerSheet(answers);
+        return r;
+    }
+
+    private static synchronized void ensureStarted() {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "attempt-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(AttemptSessionService::tick, 0, 1, TimeUnit.SECONDS);
+    }
+
+    // one pass over every open session per second, instead of a timer per window
+    private static void tick() {
+        long now = System.nanoTime();
+        for (Session s : SESSIONS.values()) {
+            try {
+                s.tick(now);
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "Tick failed", ex);
+            }
+        }
+    }
+
+    /** Stop the timer thread (application exit). */
+    public static synchronized void shutdown() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** A running attempt. */
+    public static class Session {
+        private final String key;
+        private final int studentId;
+        private final int quizId;
+        private final int attemptId;
+        private final int attemptNo;
+        private final List<Question> questions;
+        private final AttemptJournal journal;
+        private final long endsAtNanos;
+        private volatile Listener listener;
+        private volatile Executor callbacks;
+        private volatile boolean expired;
+        private volatile boolean submitted;
+        private volatile boolean retryAutoSubmit;
+
+        private Session(String key, Attempt attempt, List<Question> questions, AttemptJournal journal, long endsAtNanos) {
+            this.key = key;
+            this.studentId = attempt.getStudentId();
+            this.quizId = attempt.getQuizId();
+            this.attemptId = attempt.getId();
+            this.attemptNo = attempt.getAttemptNo();
+            this.questions = questions;
+            this.journal = journal;
+            this.endsAtNanos = endsAtNanos;
+        }
+
+        public boolean isTimed() { return endsAtNanos != Long.MAX_VALUE; }
+
+        public List<Question> getQuestions() { return questions; }
+
+        /**
+         * False when the questions came without their correct options (a student's, from a
+         * quiz server): the score of a submission is then only known once the server stored it.
+         */
+        public boolean hasAnswerKey() {
+            for (Question q : questions) {
+                if (AnswerSheet.choiceOf(q.getCorrectOption()) == AnswerSheet.NO_ANSWER) return false;
+            }
+            return true;
+        }
+
+        public AttemptJournal getJournal() { return journal; }
+
+        public long remainingSeconds() {
+            if (!isTimed()) return Long.MAX_VALUE;
+            return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(endsAtNanos - System.nanoTime() + 999_999_999L));
+        }
+
+        /**
+         * Grade and store the answers. The future completes once the submission is safe
+         * (journalled, or stored when there is no journal); it fails with
+         * AttemptClosedException after the deadline or if the attempt was already submitted.
+         * Either way the result is stored through AttemptDAO.finalizeAttempts, which refuses
+         * it if it reaches the database too late.
+         */
+        public synchronized CompletableFuture<Result> submit(AnswerSheet answers) {
+            if (submitted) {
+                return CompletableFuture.failedFuture(new AttemptClosedException("This attempt has already been submitted."));
+            }
+            if (isTimed() && System.nanoTime() - endsAtNanos > TimeUnit.MILLISECONDS.toNanos(GRACE_MS)) {
+                return CompletableFuture.failedFuture(new AttemptClosedException("Time limit for this quiz has been exceeded. Submission blocked."));
+            }
+            Result r = grade(studentId, quizId, questions, answers);
+            r.setAttemptNo(attemptNo);
+            submitted = true;
+            SESSIONS.remove(key, this);
+            CompletableFuture<?> saved = journal != null
+                    ? journal.finish(r)
+                    : SubmissionQueue.submit(attemptId, r);
+            return saved.handle((v, error) -> {
+                if (error == null) return r;
+                Throwable cause = cause(error);
+                if (cause instanceof SQLException && AttemptDAO.ATTEMPT_CLOSED.equals(((SQLException) cause).getSQLState())) {
+                    throw new CompletionException(new AttemptClosedException("Time limit for this quiz has been exceeded. Submission blocked."));
+                }
+                synchronized (this) {
+                    submitted = false; // let the student try again
+                    SESSIONS.putIfAbsent(key, this);
+                }
+                throw new CompletionException(error);
+            });
+        }
+
+        /** The window was closed: keep timing (and auto-submit) without reporting. */
+        public void detach() {
+            listener = null;
+        }
+
+        private void listen(Listener l, Executor e) {
+            callbacks = e;
+            listener = l;
+        }
+
+        private void tick(long now) {
+            if (!isTimed() || submitted) return;
+            Listener l = listener;
+            Executor e = callbacks;
+            if (now - endsAtNanos < 0) {
+                long remaining = remainingSeconds();
+                if (l != null) e.execute(() -> l.onTick(remaining));
+                return;
+            }
+            if (expired) {
+                if (retryAutoSubmit) {
+                    retryAutoSubmit = false;
+                    autoSubmit();
+                }
+                return;
+            }
+            expired = true;
+            CompletableFuture<Result> auto = autoSubmit();
+            if (l != null) e.execute(() -> l.onExpired(auto));
+            else if (auto == null) SESSIONS.remove(key, this); // nobody left to submit it
+        }
+
+        // submit the journalled answers; if that fails, again on a later tick until the grace period is over
+        private CompletableFuture<Result> autoSubmit() {
+            if (journal == null) return null;
+            CompletableFuture<Result> auto = submit(journal.answersFor(questions));
+            auto.whenComplete((r, error) -> {
+                if (error == null) return;
+                Throwable cause = cause(error);
+                if (cause instanceof AttemptClosedException) {
+                    LOG.warning("Auto-submit gave up: " + cause.getMessage());
+                    SESSIONS.remove(key, this);
+                } else {
+                    LOG.warning("Auto-submit failed, retrying: " + cause.getMessage());
+                    retryAutoSubmit = true;
+                }
+            });
+            return auto;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded LRU cache with a time-to-live, used by the DAOs for read-through caching.
+ * Concurrent misses on the same key share a single load, so a whole class opening the same
+ * quiz at once costs one query. Writes go through the DAOs, which invalidate affected keys.
+ */
+public class DaoCache<K, V> {
+
+    /** Loads a value from the database on a cache miss. */
+    public interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    private static final List<DaoCache<?, ?>> ALL = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> map;
+    // loads in flight; invalidation unregisters them so they don't store stale values
+    private final Map<K, FutureTask<V>> loading = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public DaoCache(String name, int maxSize, long ttl, TimeUnit unit) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > DaoCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        ALL.add(this);
+    }
+
+    /**
+     * Return the cached value for the key, or load it with the loader and cache it.
+     * Null values are cached as well.
+     */
+    public V get(K key, Loader<V> loader) throws SQLException {
+        FutureTask<V> task;
+        boolean owner = false;
+        synchronized (this) {
+            Entry<V> e = map.get(key);
+            if (e != null) {
+                if (System.nanoTime() - e.loadedAt < ttlNanos) {
+                    hits++;
+                    return e.value;
+                }
+                map.remove(key);
+                expirations++;
+            }
+            misses++;
+            task = loading.get(key);
+            if (task == null) {
+                task = new FutureTask<>(loader::load);
+                loading.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+            synchronized (this) {
+                if (loading.remove(key, task)) {
+                    try {
+                        map.put(key, new Entry<>(task.get()));
+                    } catch (ExecutionException | InterruptedException ignored) {
+                        // failed loads are not cached; the caller sees the failure below
+                    }
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for " + name + " to load.", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SQLException(cause);
+        }
+    }
+
+    /** The cached value if present and fresh, without loading or counting a hit/miss. */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> e = map.get(key);
+        return e != null && System.nanoTime() - e.loadedAt < ttlNanos ? e.value : null;
+    }
+
+    /** Store a value computed elsewhere, replacing any cached or loading one. */
+    public synchronized void put(K key, V value) {
+        loading.remove(key);
+        map.put(key, new Entry<>(value));
+    }
+
+    public synchronized void invalidate(K key) {
+        map.remove(key);
+        loading.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        map.clear();
+        loading.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, map.size(), maxSize, hits, misses, evictions, expirations);
+    }
+
+    /** Snapshot of every DAO cache's counters. */
+    public static List<Stats> allStats() {
+        List<Stats> list = new ArrayList<>();
+        for (DaoCache<?, ?> c : ALL) list.add(c.getStats());
+        return list;
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long loadedAt = System.nanoTime();
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    /** Point-in-time cache counters. */
+    public static class Stats {
+        private final String name;
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        Stats(String name, int size, int maxSize, long hits, long misses, long evictions, long expirations) {
+            this.name = name;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public String getName() { return name; }
+        public int getSize() { return size; }
+        public int getMaxSize() { return maxSize; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: size=%d/%d hits=%d misses=%d evictions=%d expirations=%d hitRatio=%.2f",
+                    name, size, maxSize, hits, misses, evictions, expirations, getHitRatio());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package dao;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password hashing with PBKDF2-HMAC-SHA256, stored as pbkdf2$iterations$salt$hash (Base64).
+ * The cost is the iteration count: -Dquiz.hash.iterations, default DEFAULT_ITERATIONS.
+ *
+ * Hashing runs on a small bounded pool of THREADS daemon threads, one core fewer than the
+ * machine has, so a whole class logging in at once queues up there instead of taking every
+ * core from the UI and database threads. A full queue rejects the call
+ * (RejectedExecutionException) rather than letting logins pile up without limit. Bulk
+ * hashing (hashAll) keeps at most THREADS passwords queued and waits for room instead, so an
+ * import neither fails on a full queue nor takes the queue from logins.
+ *
+ * Fast path: after a successful check, an HMAC of the password under a per-process random
+ * key is remembered for the stored hash for a few minutes, so logging in again with the same
+ * password (a student signing back in on a shared machine) skips PBKDF2. Nothing of it ever
+ * leaves memory, and a changed password has a different stored hash.
+ */
+public class PasswordHasher {
+
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int MAX_QUEUED = 1_000;
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final SecretKeySpec FAST_PATH_KEY = new SecretKeySpec(randomBytes(32), "HmacSHA256");
+    private static final DaoCache<String, byte[]> VERIFIED = new DaoCache<>("verifiedPasswords", 2000, 10, TimeUnit.MINUTES);
+
+    /** The hasher used for stored passwords, at the configured cost. */
+    public static final PasswordHasher DEFAULT =
+            new PasswordHasher(Integer.getInteger("quiz.hash.iterations", DEFAULT_ITERATIONS));
+
+    private final int iterations;
+    // checked against for unknown users, so they take as long as a wrong password
+    private String dummy;
+
+    public PasswordHasher(int iterations) {
+        if (iterations < MIN_ITERATIONS) {
+            throw new IllegalArgumentException("At least " + MIN_ITERATIONS + " iterations are required.");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** Whether a stored password is in the hashed format (otherwise it is legacy plaintext). */
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /** Hash a password on the hashing pool. */
+    public CompletableFuture<String> hashAsync(String password) {
+        return CompletableFuture.supplyAsync(() -> hashNow(password), POOL);
+    }
+
+    /** Hash a password, waiting for the hashing pool. */
+    public String hash(String password) {
+        return await(hashAsync(password));
+    }
+
+    /**
+     * Hash many passwords in order, THREADS at a time, waiting while the pool is full.
+     * Throws CancellationException if interrupted.
+     */
+    public List<String> hashAll(List<String> passwords) {
+        List<String> hashes = new ArrayList<>(passwords.size());
+        List<CompletableFuture<String>> chunk = new ArrayList<>(THREADS);
+        for (int from = 0; from < passwords.size(); from += THREADS) {
+            int to = Math.min(passwords.size(), from + THREADS);
+            for (int i = from; i < to; i++) chunk.add(hashWhenQueued(passwords.get(i)));
+            for (CompletableFuture<String> f : chunk) hashes.add(await(f));
+            chunk.clear();
+        }
+        return hashes;
+    }
+
+    // logins fill the queue only briefly: back off until there is room
+    private CompletableFuture<String> hashWhenQueued(String password) {
+        long backoffMs = 10;
+        while (true) {
+            try {
+                return hashAsync(password);
+            } catch (RejectedExecutionException full) {
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while hashing.");
+                }
+                backoffMs = Math.min(backoffMs * 2, 500);
+            }
+        }
+    }
+
+    /**
+     * Check a password against its stored form, which may be a hash or legacy plaintext.
+     * A null stored value (unknown user) costs a full check and fails.
+     */
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        if (stored == null) {
+            return CompletableFuture.supplyAsync(() -> {
+                checkHash(password, dummyHash());
+                return false;
+            }, POOL);
+        }
+        if (!isHash(stored)) {
+            return CompletableFuture.completedFuture(MessageDigest.isEqual(
+                    password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8)));
+        }
+        byte[] seen = VERIFIED.getIfPresent(stored);
+        if (seen != null && MessageDigest.isEqual(seen, fastPathMac(password))) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            boolean ok = checkHash(password, stored);
+            if (ok) VERIFIED.put(stored, fastPathMac(password));
+            return ok;
+        }, POOL);
+    }
+
+    /** Check a password, waiting for the hashing pool. */
+    public boolean verify(String password, String stored) {
+        return await(verifyAsync(password, stored));
+    }
+
+    /** Whether a correct password's stored form should be replaced: plaintext, or hashed at a lower cost. */
+    public boolean needsRehash(String stored) {
+        if (!isHash(stored)) return true;
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    private synchronized String dummyHash() {
+        if (dummy == null) dummy = hashNow("");
+        return dummy;
+    }
+
+    private String hashNow(String password) {
+        byte[] salt = randomBytes(SALT_BYTES);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(pbkdf2(password, salt, iterations, HASH_BITS));
+    }
+
+    private static boolean checkHash(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int iter = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iter, expected.length * 8));
+        } catch (IllegalArgumentException ex) {
+            return false; // malformed stored value
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available.", ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] b = new byte[n];
+        RANDOM.nextBytes(b);
+        return b;
+    }
+
+    private static byte[] fastPathMac(String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(FAST_PATH_KEY);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available.", ex);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException ie) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while hashing.");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ThreadPoolExecutor createPool() {
+        AtomicInteger n = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED), r -> {
+                    Thread t = new Thread(r, "password-hash-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    // below the UI and database threads
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+    }
+}
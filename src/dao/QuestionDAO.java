@@ -2,25 +2,32 @@ package dao;
 
 import database.DatabaseConnection;
 import models.Question;
+import models.QuestionDraw;
+import models.Quiz;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class QuestionDAO {
 
+    private static final String INSERT_SQL = "INSERT INTO questions (quiz_id, question_text, option_a, option_b, option_c, option_d, correct_option, tag) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE questions SET question_text=?, option_a=?, option_b=?, option_c=?, option_d=?, correct_option=?, tag=? WHERE id=?";
+    private static final String DELETE_SQL = "DELETE FROM questions WHERE id = ?";
+
+    // Read-through cache of each quiz's questions; invalidated by every write in this class and QuizDAO
+    private static final DaoCache<Integer, List<Question>> QUESTIONS_BY_QUIZ = new DaoCache<>("questionsByQuiz", 500, 5, TimeUnit.MINUTES);
+
     public int addQuestion(Question q) throws SQLException {
-        String sql = "INSERT INTO questions (quiz_id, question_text, option_a, option_b, option_c, option_d, correct_option) VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, q.getQuizId());
-            ps.setString(2, q.getQuestionText());
-            ps.setString(3, q.getOptionA());
-            ps.setString(4, q.getOptionB());
-            ps.setString(5, q.getOptionC());
-            ps.setString(6, q.getOptionD());
-            ps.setString(7, String.valueOf(q.getCorrectOption()));
+             PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(ps, q);
             ps.executeUpdate();
+            invalidateQuiz(q.getQuizId());
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) return rs.getInt(1);
             }
@@ -28,33 +35,148 @@ public class QuestionDAO {
         return -1;
     }
 
+    /**
+     * Insert all questions as one JDBC batch in a single transaction.
+     * Generated ids are stored on the questions and returned in list order.
+     */
+    public int[] addQuestions(List<Question> questions) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                int[] ids = addQuestions(c, questions);
+                c.commit();
+                for (Question q : questions) invalidateQuiz(q.getQuizId());
+                return ids;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /** Batch insert on the caller's connection (and transaction). */
+    int[] addQuestions(Connection c, List<Question> questions) throws SQLException {
+        int[] ids = new int[questions.size()];
+        if (questions.isEmpty()) return ids;
+        try (PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (Question q : questions) {
+                bindInsert(ps, q);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                for (int i = 0; i < ids.length && rs.next(); i++) {
+                    ids[i] = rs.getInt(1);
+                    questions.get(i).setId(ids[i]);
+                }
+            }
+        }
+        return ids;
+    }
+
     public boolean updateQuestion(Question q) throws SQLException {
-        String sql = "UPDATE questions SET question_text=?, option_a=?, option_b=?, option_c=?, option_d=?, correct_option=? WHERE id=?";
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, q.getQuestionText());
-            ps.setString(2, q.getOptionA());
-            ps.setString(3, q.getOptionB());
-            ps.setString(4, q.getOptionC());
-            ps.setString(5, q.getOptionD());
-            ps.setString(6, String.valueOf(q.getCorrectOption()));
-            ps.setInt(7, q.getId());
-            return ps.executeUpdate() > 0;
+             PreparedStatement ps = c.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(ps, q);
+            boolean updated = ps.executeUpdate() > 0;
+            if (q.getQuizId() > 0) invalidateQuiz(q.getQuizId());
+            else invalidateAll();
+            return updated;
         }
     }
 
     public boolean deleteQuestion(int id) throws SQLException {
-        String sql = "DELETE FROM questions WHERE id = ?";
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(DELETE_SQL)) {
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            // the owning quiz isn't known here
+            invalidateAll();
+            return deleted;
+        }
+    }
+
+    /**
+     * Make the stored questions of a quiz match the given list, on the caller's connection:
+     * new questions (id <= 0) are inserted, existing ones updated and the ones no longer
+     * in the list deleted, each as a single batch.
+     */
+    void saveQuestions(Connection c, int quizId, List<Question> questions) throws SQLException {
+        Set<Integer> existing = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT id FROM questions WHERE quiz_id = ?")) {
+            ps.setInt(1, quizId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) existing.add(rs.getInt(1));
+            }
+        }
+        List<Question> inserts = new ArrayList<>();
+        List<Question> updates = new ArrayList<>();
+        for (Question q : questions) {
+            q.setQuizId(quizId);
+            if (q.getId() > 0 && existing.remove(q.getId())) updates.add(q);
+            else inserts.add(q);
+        }
+        // whatever is left in 'existing' was removed in the editor
+        deleteQuestions(c, existing);
+        if (!updates.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_SQL)) {
+                for (Question q : updates) {
+                    bindUpdate(ps, q);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        addQuestions(c, inserts);
+    }
+
+    private void deleteQuestions(Connection c, Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        try (PreparedStatement ps = c.prepareStatement(DELETE_SQL)) {
+            for (int id : ids) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
     }
 
     public List<Question> listQuestionsByQuiz(int quizId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toList(RemoteBackend.call("questions/byQuiz", "quizId", quizId), ApiCodec::toQuestion);
+        List<Question> cached = QUESTIONS_BY_QUIZ.get(quizId, () -> loadQuestionsByQuiz(quizId));
+        List<Question> list = new ArrayList<>(cached.size());
+        for (Question q : cached) list.add(new Question(q));
+        return list;
+    }
+
+    /**
+     * The student's paper for a quiz (see QuestionDraw): drawn from the cached question
+     * list, copying only the drawn questions, so many students starting at once cost one
+     * query between them.
+     */
+    public List<Question> drawQuestions(Quiz quiz, int studentId) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("questions/draw", "quizId", quiz.getId(), "studentId", studentId), ApiCodec::toQuestion);
+        }
+        int quizId = quiz.getId();
+        return QuestionDraw.draw(QUESTIONS_BY_QUIZ.get(quizId, () -> loadQuestionsByQuiz(quizId)), quiz, studentId);
+    }
+
+    // question changes also invalidate the quiz's item analysis
+    static void invalidateQuiz(int quizId) {
+        QUESTIONS_BY_QUIZ.invalidate(quizId);
+        AnalyticsDAO.invalidateQuiz(quizId);
+    }
+
+    private static void invalidateAll() {
+        QUESTIONS_BY_QUIZ.invalidateAll();
+        AnalyticsDAO.invalidateAll();
+    }
+
+    private List<Question> loadQuestionsByQuiz(int quizId) throws SQLException {
         List<Question> list = new ArrayList<>();
-        String sql = "SELECT id, quiz_id, question_text, option_a, option_b, option_c, option_d, correct_option FROM questions WHERE quiz_id = ?";
+        // id order: QuestionDraw needs a stable pool order
+        String sql = "SELECT id, quiz_id, question_text, option_a, option_b, option_c, option_d, correct_option, tag FROM questions WHERE quiz_id = ? ORDER BY id";
         try (Connection c = DatabaseConnection.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, quizId);
@@ -69,10 +191,33 @@ public class QuestionDAO {
                     q.setOptionC(rs.getString("option_c"));
                     q.setOptionD(rs.getString("option_d"));
                     q.setCorrectOption(rs.getString("correct_option").charAt(0));
+                    q.setTag(rs.getString("tag"));
                     list.add(q);
                 }
             }
         }
         return list;
     }
+
+    private static void bindInsert(PreparedStatement ps, Question q) throws SQLException {
+        ps.setInt(1, q.getQuizId());
+        ps.setString(2, q.getQuestionText());
+        ps.setString(3, q.getOptionA());
+        ps.setString(4, q.getOptionB());
+        ps.setString(5, q.getOptionC());
+        ps.setString(6, q.getOptionD());
+        ps.setString(7, String.valueOf(q.getCorrectOption()));
+        ps.setString(8, q.getTag());
+    }
+
+    private static void bindUpdate(PreparedStatement ps, Question q) throws SQLException {
+        ps.setString(1, q.getQuestionText());
+        ps.setString(2, q.getOptionA());
+        ps.setString(3, q.getOptionB());
+        ps.setString(4, q.getOptionC());
+        ps.setString(5, q.getOptionD());
+        ps.setString(6, String.valueOf(q.getCorrectOption()));
+        ps.setString(7, q.getTag());
+        ps.setInt(8, q.getId());
+    }
 }
@@ -1,49 +1,92 @@
 package dao;
 
 import database.DatabaseConnection;
+import models.Question;
 import models.Quiz;
 import exceptions.QuizNotFoundException;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 
 public class QuizDAO {
 
+    private static final String COLUMNS = "id, title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions, created_at, draw_count, pool_tag";
+
+    private static final String INSERT = "INSERT INTO quizzes (title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions, draw_count, pool_tag) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE quizzes SET title = ?, description = ?, course_name = ?, deadline = ?, time_limit = ?, target_stream = ?, target_divisions = ?, draw_count = ?, pool_tag = ? WHERE id = ?";
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM quizzes WHERE id = ?";
+    // idx_quizzes_created / idx_quizzes_teacher_created: both read in index order
+    private static final String SELECT_ALL = "SELECT " + COLUMNS + " FROM quizzes ORDER BY created_at DESC";
+    private static final String SELECT_BY_TEACHER = "SELECT " + COLUMNS + " FROM quizzes WHERE teacher_id = ? ORDER BY created_at DESC";
+
+    // Normalized targeting (quiz_targets); '*' is stored for ALL
+    private static final String TARGET_ALL = "*";
+    private static final String DELETE_TARGETS = "DELETE FROM quiz_targets WHERE quiz_id = ?";
+    private static final String INSERT_TARGET = "INSERT INTO quiz_targets (quiz_id, stream, division) VALUES (?, ?, ?)";
+    // params: now, stream, division
+    private static final String ASSIGNED_WHERE = "(q.deadline IS NULL OR q.deadline > ?)"
+            + " AND EXISTS (SELECT 1 FROM quiz_targets t WHERE t.quiz_id = q.id AND t.stream IN (?, '*') AND t.division IN (?, '*'))";
+    private static final String SELECT_ASSIGNED = "SELECT " + COLUMNS + " FROM quizzes q WHERE " + ASSIGNED_WHERE
+            + " ORDER BY q.created_at DESC, q.id DESC LIMIT ? OFFSET ?";
+
+    // Read-through caches; every write below invalidates the affected entries
+    private static final DaoCache<Integer, Quiz> QUIZ_BY_ID = new DaoCache<>("quizById", 1000, 60, TimeUnit.SECONDS);
+    private static final DaoCache<String, List<Quiz>> QUIZ_LISTS = new DaoCache<>("quizLists", 200, 30, TimeUnit.SECONDS);
+
+    // Search: catalogs up to this size are indexed in memory, larger ones are searched on the server
+    private static final int SEARCH_INDEX_MAX_QUIZZES = 20_000;
+    // rebuilt this often to pick up quizzes written by other clients
+    private static final long SEARCH_INDEX_REFRESH_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final String SEARCH_MATCH = "MATCH(q.title, q.description, q.course_name) AGAINST (? IN BOOLEAN MODE)";
+    private static final QuizSearchIndex SEARCH_INDEX = new QuizSearchIndex();
+    private static boolean searchIndexBuilt = false; // guarded by SEARCH_INDEX
+    private static long searchIndexBuiltAt = 0;
+    private static volatile boolean searchIndexTooLarge = false;
+
     public int addQuiz(Quiz quiz) throws SQLException {
-        // try insert with extended quiz fields; fall back to legacy if needed
-        try {
-            String sql = "INSERT INTO quizzes (title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setString(1, quiz.getTitle());
-                ps.setString(2, quiz.getDescription());
-                ps.setInt(3, quiz.getTeacherId());
-                ps.setString(4, quiz.getCourseName());
-                if (quiz.getDeadline() != null) ps.setTimestamp(5, Timestamp.valueOf(quiz.getDeadline()));
-                else ps.setNull(5, Types.TIMESTAMP);
-                if (quiz.getTimeLimit() != null) ps.setInt(6, quiz.getTimeLimit());
-                else ps.setNull(6, Types.INTEGER);
-                ps.setString(7, quiz.getTargetStream());
-                ps.setString(8, quiz.getTargetDivisions());
-                ps.executeUpdate();
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) return rs.getInt(1);
-                }
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                int id = addQuiz(c, quiz);
+                c.commit();
+                invalidate(id);
+                reindex(quiz, id);
+                return id;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
             }
-        } catch (SQLException ex) {
-            // fallback to legacy insert
-            String sql = "INSERT INTO quizzes (title, description, teacher_id) VALUES (?, ?, ?)";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setString(1, quiz.getTitle());
-                ps.setString(2, quiz.getDescription());
-                ps.setInt(3, quiz.getTeacherId());
-                ps.executeUpdate();
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    if (rs.next()) return rs.getInt(1);
+        }
+    }
+
+    int addQuiz(Connection c, Quiz quiz) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, quiz.getTitle());
+            ps.setString(2, quiz.getDescription());
+            ps.setInt(3, quiz.getTeacherId());
+            ps.setString(4, quiz.getCourseName());
+            if (quiz.getDeadline() != null) ps.setTimestamp(5, Timestamp.valueOf(quiz.getDeadline()));
+            else ps.setNull(5, Types.TIMESTAMP);
+            if (quiz.getTimeLimit() != null) ps.setInt(6, quiz.getTimeLimit());
+            else ps.setNull(6, Types.INTEGER);
+            ps.setString(7, quiz.getTargetStream());
+            ps.setString(8, quiz.getTargetDivisions());
+            if (quiz.getDrawCount() != null) ps.setInt(9, quiz.getDrawCount());
+            else ps.setNull(9, Types.INTEGER);
+            ps.setString(10, quiz.getPoolTag());
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    replaceTargets(c, id, quiz);
+                    return id;
                 }
             }
         }
@@ -51,203 +94,366 @@ public class QuizDAO {
     }
 
     public boolean updateQuiz(Quiz quiz) throws SQLException {
-        // try update with extended fields
-        try {
-            String sql = "UPDATE quizzes SET title = ?, description = ?, course_name = ?, deadline = ?, time_limit = ?, target_stream = ?, target_divisions = ? WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, quiz.getTitle());
-                ps.setString(2, quiz.getDescription());
-                ps.setString(3, quiz.getCourseName());
-                if (quiz.getDeadline() != null) ps.setTimestamp(4, Timestamp.valueOf(quiz.getDeadline()));
-                else ps.setNull(4, Types.TIMESTAMP);
-                if (quiz.getTimeLimit() != null) ps.setInt(5, quiz.getTimeLimit());
-                else ps.setNull(5, Types.INTEGER);
-                ps.setString(6, quiz.getTargetStream());
-                ps.setString(7, quiz.getTargetDivisions());
-                ps.setInt(8, quiz.getId());
-                return ps.executeUpdate() > 0;
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                boolean updated = updateQuiz(c, quiz);
+                c.commit();
+                invalidate(quiz.getId());
+                if (updated) reindex(quiz, quiz.getId());
+                return updated;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
             }
-        } catch (SQLException ex) {
-            String sql = "UPDATE quizzes SET title = ?, description = ? WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, quiz.getTitle());
-                ps.setString(2, quiz.getDescription());
-                ps.setInt(3, quiz.getId());
-                return ps.executeUpdate() > 0;
+        }
+    }
+
+    boolean updateQuiz(Connection c, Quiz quiz) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+            ps.setString(1, quiz.getTitle());
+            ps.setString(2, quiz.getDescription());
+            ps.setString(3, quiz.getCourseName());
+            if (quiz.getDeadline() != null) ps.setTimestamp(4, Timestamp.valueOf(quiz.getDeadline()));
+            else ps.setNull(4, Types.TIMESTAMP);
+            if (quiz.getTimeLimit() != null) ps.setInt(5, quiz.getTimeLimit());
+            else ps.setNull(5, Types.INTEGER);
+            ps.setString(6, quiz.getTargetStream());
+            ps.setString(7, quiz.getTargetDivisions());
+            if (quiz.getDrawCount() != null) ps.setInt(8, quiz.getDrawCount());
+            else ps.setNull(8, Types.INTEGER);
+            ps.setString(9, quiz.getPoolTag());
+            ps.setInt(10, quiz.getId());
+            boolean updated = ps.executeUpdate() > 0;
+            if (updated) replaceTargets(c, quiz.getId(), quiz);
+            return updated;
+        }
+    }
+
+    /**
+     * Insert (id <= 0) or update the quiz and bring its questions in line with the given list,
+     * all in one transaction. Questions are written as batched inserts/updates/deletes.
+     * Returns the quiz id; ids of newly inserted questions are set on the question objects.
+     */
+    public int saveQuizWithQuestions(Quiz quiz, List<Question> questions) throws SQLException {
+        if (RemoteBackend.isEnabled()) return saveRemotely(quiz, questions);
+        QuestionDAO questionDAO = new QuestionDAO();
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                int quizId;
+                if (quiz.getId() > 0) {
+                    updateQuiz(c, quiz);
+                    quizId = quiz.getId();
+                } else {
+                    quizId = addQuiz(c, quiz);
+                    if (quizId <= 0) throw new SQLException("No id generated for new quiz.");
+                }
+                questionDAO.saveQuestions(c, quizId, questions);
+                c.commit();
+                invalidate(quizId);
+                QuestionDAO.invalidateQuiz(quizId);
+                quiz.setId(quizId);
+                reindex(quiz, quizId);
+                return quizId;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
             }
         }
     }
 
+    // the server replies with the quiz id and the ids of the questions, in order
+    private static int saveRemotely(Quiz quiz, List<Question> questions) throws SQLException {
+        Map<String, Object> reply = ApiCodec.map(RemoteBackend.call("quizzes/save", "quiz", ApiCodec.quiz(quiz),
+                "questions", ApiCodec.list(questions, ApiCodec::question)));
+        int quizId = ApiCodec.intOf(reply, "quizId");
+        List<Integer> ids = ApiCodec.toList(reply.get("questionIds"), ApiCodec::toInt);
+        for (int i = 0; i < questions.size() && i < ids.size(); i++) {
+            questions.get(i).setId(ids.get(i));
+            questions.get(i).setQuizId(quizId);
+        }
+        quiz.setId(quizId);
+        return quizId;
+    }
+
+    // the quiz's results go with it, so its students' score aggregates are redone in the same transaction
     public boolean deleteQuiz(int id) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toBoolean(RemoteBackend.call("quizzes/delete", "id", id));
         String sql = "DELETE FROM quizzes WHERE id = ?";
-        try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                StatsDAO.Affected affected = StatsDAO.affectedByQuizDelete(c, id);
+                ps.setInt(1, id);
+                boolean deleted = ps.executeUpdate() > 0;
+                StatsDAO.refresh(c, affected);
+                c.commit();
+                invalidate(id);
+                QuestionDAO.invalidateQuiz(id);
+                SEARCH_INDEX.remove(id);
+                return deleted;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
         }
     }
 
     public Quiz getQuizById(int id) throws SQLException, QuizNotFoundException {
-        // try select with extended fields
-        try {
-            String sql = "SELECT id, title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions, created_at FROM quizzes WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        Quiz q = new Quiz();
-                        q.setId(rs.getInt("id"));
-                        q.setTitle(rs.getString("title"));
-                        q.setDescription(rs.getString("description"));
-                        q.setTeacherId(rs.getInt("teacher_id"));
-                        q.setCourseName(rs.getString("course_name"));
-                        Timestamp t = rs.getTimestamp("deadline");
-                        if (t != null) q.setDeadline(t.toLocalDateTime());
-                        int tl = rs.getInt("time_limit");
-                        if (!rs.wasNull()) q.setTimeLimit(tl);
-                        q.setTargetStream(rs.getString("target_stream"));
-                        q.setTargetDivisions(rs.getString("target_divisions"));
-                        return q;
-                    } else {
-                        throw new QuizNotFoundException("Quiz with id " + id + " not found.");
-                    }
+        if (RemoteBackend.isEnabled()) {
+            Object reply = RemoteBackend.call("quizzes/get", "id", id);
+            if (reply == null) throw new QuizNotFoundException("Quiz with id " + id + " not found.");
+            return ApiCodec.toQuiz(reply);
+        }
+        Quiz q = QUIZ_BY_ID.get(id, () -> loadQuizById(id));
+        if (q == null) throw new QuizNotFoundException("Quiz with id " + id + " not found.");
+        return new Quiz(q);
+    }
+
+    public List<Quiz> listQuizzes() throws SQLException {
+        return copyOf(QUIZ_LISTS.get("all", this::loadQuizzes));
+    }
+
+    public List<Quiz> listQuizzesByTeacher(int teacherId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toList(RemoteBackend.call("quizzes/byTeacher", "teacherId", teacherId), ApiCodec::toQuiz);
+        return copyOf(QUIZ_LISTS.get("teacher:" + teacherId, () -> loadQuizzesByTeacher(teacherId)));
+    }
+
+    /**
+     * One page of the quizzes assigned to a student of the given stream/division whose deadline
+     * has not passed, newest first, served from the indexed quiz_targets table.
+     */
+    public List<Quiz> listAssignedQuizzes(String stream, String division, int offset, int limit) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("quizzes/assigned", "stream", stream, "division", division,
+                    "offset", offset, "limit", limit), ApiCodec::toQuiz);
+        }
+        List<Quiz> list = new ArrayList<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_ASSIGNED)) {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setString(2, stream == null ? "" : stream.trim());
+            ps.setString(3, division == null ? "" : division.trim());
+            ps.setInt(4, limit);
+            ps.setInt(5, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapQuiz(rs));
                 }
             }
-        } catch (SQLException ex) {
-            // fallback to legacy
-            String sql = "SELECT id, title, description, teacher_id, created_at FROM quizzes WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        Quiz q = new Quiz();
-                        q.setId(rs.getInt("id"));
-                        q.setTitle(rs.getString("title"));
-                        q.setDescription(rs.getString("description"));
-                        q.setTeacherId(rs.getInt("teacher_id"));
-                        return q;
-                    } else {
-                        throw new QuizNotFoundException("Quiz with id " + id + " not found.");
-                    }
-                }
+        }
+        return list;
+    }
+
+    /** Quizzes of one teacher matching the search query, best match first. */
+    public List<Quiz> searchTeacherQuizzes(int teacherId, String query, int limit) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("quizzes/searchTeacher", "teacherId", teacherId, "query", query,
+                    "limit", limit), ApiCodec::toQuiz);
+        }
+        if (useSearchIndex()) {
+            return SEARCH_INDEX.search(query, q -> q.getTeacherId() == teacherId, limit);
+        }
+        List<Object> params = new ArrayList<>();
+        params.add(teacherId);
+        return searchOnServer("q.teacher_id = ?", params, query, limit);
+    }
+
+    /**
+     * Quizzes assigned to a student of the given stream/division and still open that match
+     * the search query, best match first.
+     */
+    public List<Quiz> searchAssignedQuizzes(String stream, String division, String query, int limit) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("quizzes/searchAssigned", "stream", stream, "division", division,
+                    "query", query, "limit", limit), ApiCodec::toQuiz);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (useSearchIndex()) {
+            return SEARCH_INDEX.search(query,
+                    q -> q.isTargetedTo(stream, division) && (q.getDeadline() == null || now.isBefore(q.getDeadline())),
+                    limit);
+        }
+        List<Object> params = new ArrayList<>();
+        params.add(Timestamp.valueOf(now));
+        params.add(stream == null ? "" : stream.trim());
+        params.add(division == null ? "" : division.trim());
+        return searchOnServer(ASSIGNED_WHERE, params, query, limit);
+    }
+
+    // Whether searches can be answered from the in-memory index, (re)building it when due
+    private boolean useSearchIndex() throws SQLException {
+        synchronized (SEARCH_INDEX) {
+            long now = System.nanoTime();
+            if (searchIndexBuilt && now - searchIndexBuiltAt < SEARCH_INDEX_REFRESH_NANOS) {
+                return !searchIndexTooLarge;
+            }
+            if (countQuizzes() > SEARCH_INDEX_MAX_QUIZZES) {
+                searchIndexTooLarge = true;
+                SEARCH_INDEX.clear();
+            } else {
+                searchIndexTooLarge = false;
+                SEARCH_INDEX.replaceAll(QUIZ_LISTS.get("all", this::loadQuizzes));
             }
+            searchIndexBuilt = true;
+            searchIndexBuiltAt = now;
+            return !searchIndexTooLarge;
         }
     }
 
-    public List<Quiz> listQuizzes() throws SQLException {
+    // FULLTEXT search, prefix match on every token
+    private List<Quiz> searchOnServer(String scope, List<Object> params, String query, int limit) throws SQLException {
+        List<String> tokens = QuizSearchIndex.tokenize(query);
         List<Quiz> list = new ArrayList<>();
-        // try extended select first; fall back to legacy select if the schema doesn't have new columns
-        String extended = "SELECT id, title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions, created_at FROM quizzes ORDER BY created_at DESC";
+        if (tokens.isEmpty()) return list;
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS)
+                .append(" FROM quizzes q WHERE ").append(scope);
+        List<Object> all = new ArrayList<>(params);
+        // tokens are letters/digits only, so they cannot carry boolean-mode operators
+        StringBuilder against = new StringBuilder();
+        for (String t : tokens) against.append(against.length() == 0 ? "+" : " +").append(t).append('*');
+        sql.append(" AND ").append(SEARCH_MATCH)
+                .append(" ORDER BY ").append(SEARCH_MATCH).append(" DESC, q.created_at DESC, q.id DESC LIMIT ?");
+        all.add(against.toString());
+        all.add(against.toString());
+        all.add(limit);
         try (Connection c = DatabaseConnection.getConnection();
-             Statement s = c.createStatement();
-             ResultSet rs = s.executeQuery(extended)) {
-            System.out.println("QuizDAO: using extended SELECT for quizzes");
-            java.sql.ResultSetMetaData meta = rs.getMetaData();
-            while (rs.next()) {
-                Quiz q = new Quiz();
-                q.setId(rs.getInt("id"));
-                q.setTitle(rs.getString("title"));
-                q.setDescription(rs.getString("description"));
-                q.setTeacherId(rs.getInt("teacher_id"));
-                // safe column reads: check metadata before accessing
-                try {
-                    boolean hasCourse = false;
-                    boolean hasDeadline = false;
-                    boolean hasTimeLimit = false;
-                    boolean hasTargetStream = false;
-                    boolean hasTargetDiv = false;
-                    for (int i = 1; i <= meta.getColumnCount(); i++) {
-                        String col = meta.getColumnLabel(i);
-                        if ("course_name".equalsIgnoreCase(col)) hasCourse = true;
-                        if ("deadline".equalsIgnoreCase(col)) hasDeadline = true;
-                        if ("time_limit".equalsIgnoreCase(col)) hasTimeLimit = true;
-                        if ("target_stream".equalsIgnoreCase(col)) hasTargetStream = true;
-                        if ("target_divisions".equalsIgnoreCase(col)) hasTargetDiv = true;
-                    }
-                    if (hasCourse) q.setCourseName(rs.getString("course_name"));
-                    if (hasDeadline) {
-                        Timestamp t = rs.getTimestamp("deadline");
-                        if (t != null) q.setDeadline(t.toLocalDateTime());
-                    }
-                    if (hasTimeLimit) {
-                        int tl = rs.getInt("time_limit");
-                        if (!rs.wasNull()) q.setTimeLimit(tl);
-                    }
-                    if (hasTargetStream) q.setTargetStream(rs.getString("target_stream"));
-                    if (hasTargetDiv) q.setTargetDivisions(rs.getString("target_divisions"));
-                } catch (SQLException ignored) {
-                    // be forgiving: if any column access fails, continue with default/nulls
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < all.size(); i++) ps.setObject(i + 1, all.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapQuiz(rs));
                 }
-                list.add(q);
             }
-            return list;
-        } catch (SQLException ex) {
-            System.out.println("QuizDAO: extended SELECT failed, falling back to legacy SELECT: " + ex.getMessage());
-            // fallback to legacy select without the new columns
-            String legacy = "SELECT id, title, description, teacher_id, created_at FROM quizzes ORDER BY created_at DESC";
-            try (Connection c = DatabaseConnection.getConnection();
-                 Statement s = c.createStatement();
-                 ResultSet rs = s.executeQuery(legacy)) {
-                while (rs.next()) {
-                    Quiz q = new Quiz();
-                    q.setId(rs.getInt("id"));
-                    q.setTitle(rs.getString("title"));
-                    q.setDescription(rs.getString("description"));
-                    q.setTeacherId(rs.getInt("teacher_id"));
-                    list.add(q);
+        }
+        return list;
+    }
+
+    private static int countQuizzes() throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM quizzes");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Keep the in-memory search index in step with a committed write
+    private static void reindex(Quiz quiz, int quizId) {
+        if (quizId <= 0 || searchIndexTooLarge) return;
+        Quiz q = new Quiz(quiz);
+        q.setId(quizId);
+        SEARCH_INDEX.put(q);
+    }
+
+    // Rewrite the quiz_targets rows of a quiz from its comma-separated target fields
+    private void replaceTargets(Connection c, int quizId, Quiz quiz) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(DELETE_TARGETS)) {
+            ps.setInt(1, quizId);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement(INSERT_TARGET)) {
+            addTargetBatch(ps, quizId, quiz.getTargetStream(), quiz.getTargetDivisions());
+            ps.executeBatch();
+        }
+    }
+
+    private static void addTargetBatch(PreparedStatement ps, int quizId, String streams, String divisions) throws SQLException {
+        for (String stream : targetValues(streams)) {
+            for (String division : targetValues(divisions)) {
+                ps.setInt(1, quizId);
+                ps.setString(2, stream);
+                ps.setString(3, division);
+                ps.addBatch();
+            }
+        }
+    }
+
+    // Split a comma-separated target field; empty or containing ALL collapses to '*'
+    private static Set<String> targetValues(String csv) {
+        Set<String> values = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        if (csv != null) {
+            for (String part : csv.split(",")) {
+                String p = part.trim();
+                if (p.equalsIgnoreCase("ALL")) {
+                    values.clear();
+                    break;
                 }
-                return list;
+                if (!p.isEmpty()) values.add(p);
             }
+        }
+        if (values.isEmpty()) values.add(TARGET_ALL);
+        return values;
     }
+
+    /** Drop cached entries for a quiz and every cached quiz list. */
+    static void invalidate(int quizId) {
+        QUIZ_BY_ID.invalidate(quizId);
+        QUIZ_LISTS.invalidateAll();
     }
 
-    public List<Quiz> listQuizzesByTeacher(int teacherId) throws SQLException {
+    // callers may edit the quizzes they get back, so never hand out the cached instances
+    private static List<Quiz> copyOf(List<Quiz> cached) {
+        List<Quiz> list = new ArrayList<>(cached.size());
+        for (Quiz q : cached) list.add(new Quiz(q));
+        return list;
+    }
+
+    private Quiz loadQuizById(int id) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_ID)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapQuiz(rs) : null;
+            }
+        }
+    }
+
+    private List<Quiz> loadQuizzes() throws SQLException {
         List<Quiz> list = new ArrayList<>();
-        // try extended select
-        try {
-            String sql = "SELECT id, title, description, teacher_id, course_name, deadline, time_limit, target_stream, target_divisions FROM quizzes WHERE teacher_id = ? ORDER BY created_at DESC";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, teacherId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        Quiz q = new Quiz();
-                        q.setId(rs.getInt("id"));
-                        q.setTitle(rs.getString("title"));
-                        q.setDescription(rs.getString("description"));
-                        q.setTeacherId(rs.getInt("teacher_id"));
-                        q.setCourseName(rs.getString("course_name"));
-                        Timestamp t = rs.getTimestamp("deadline");
-                        if (t != null) q.setDeadline(t.toLocalDateTime());
-                        int tl = rs.getInt("time_limit");
-                        if (!rs.wasNull()) q.setTimeLimit(tl);
-                        q.setTargetStream(rs.getString("target_stream"));
-                        q.setTargetDivisions(rs.getString("target_divisions"));
-                        list.add(q);
-                    }
-                }
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_ALL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(mapQuiz(rs));
             }
-        } catch (SQLException ex) {
-            String sql = "SELECT id, title, description, teacher_id FROM quizzes WHERE teacher_id = ? ORDER BY created_at DESC";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, teacherId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        Quiz q = new Quiz();
-                        q.setId(rs.getInt("id"));
-                        q.setTitle(rs.getString("title"));
-                        q.setDescription(rs.getString("description"));
-                        q.setTeacherId(rs.getInt("teacher_id"));
-                        list.add(q);
-                    }
+        }
+        return list;
+    }
+
+    private List<Quiz> loadQuizzesByTeacher(int teacherId) throws SQLException {
+        List<Quiz> list = new ArrayList<>();
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(SELECT_BY_TEACHER)) {
+            ps.setInt(1, teacherId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapQuiz(rs));
                 }
             }
         }
         return list;
     }
+
+    // Map the current row; columns are read by position in COLUMNS order
+    private static Quiz mapQuiz(ResultSet rs) throws SQLException {
+        Quiz q = new Quiz();
+        q.setId(rs.getInt(1));
+        q.setTitle(rs.getString(2));
+        q.setDescription(rs.getString(3));
+        q.setTeacherId(rs.getInt(4));
+        q.setCourseName(rs.getString(5));
+        Timestamp t = rs.getTimestamp(6);
+        if (t != null) q.setDeadline(t.toLocalDateTime());
+        int tl = rs.getInt(7);
+        if (!rs.wasNull()) q.setTimeLimit(tl);
+        q.setTargetStream(rs.getString(8));
+        q.setTargetDivisions(rs.getString(9));
+        Timestamp created = rs.getTimestamp(10);
+        if (created != null) q.setCreatedAt(created.toLocalDateTime());
+        int draw = rs.getInt(11);
+        if (!rs.wasNull()) q.setDrawCount(draw);
+        q.setPoolTag(rs.getString(12));
+        return q;
+    }
 }
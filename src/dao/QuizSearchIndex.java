@@ -0,0 +1,190 @@
+package dao;
+
+import models.Quiz;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory inverted index over quiz titles, course names and descriptions.
+ * Each term maps to the quizzes containing it with a field weight (title 3, course 2,
+ * description 1; summed when a term occurs in several fields). Query tokens match indexed
+ * terms by prefix; every token has to match, exact matches count double, and results are
+ * ranked by total score, then newest first. QuizDAO keeps the index current on writes.
+ */
+public class QuizSearchIndex {
+
+    static final int TITLE_WEIGHT = 3;
+    static final int COURSE_WEIGHT = 2;
+    static final int DESCRIPTION_WEIGHT = 1;
+
+    // term -> (quiz id -> weight); sorted so a prefix is a contiguous range
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<Integer, Quiz> quizzes = new HashMap<>();
+    private final Map<Integer, Set<String>> termsByQuiz = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Add or re-index a quiz (a copy is stored). */
+    public void put(Quiz quiz) {
+        lock.writeLock().lock();
+        try {
+            putLocked(new Quiz(quiz));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int quizId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(quizId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Rebuild the index from the given catalog. */
+    public void replaceAll(Collection<Quiz> all) {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+            for (Quiz q : all) putLocked(new Quiz(q));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return quizzes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Quizzes matching every token of the query and accepted by the filter, best first.
+     * Returns copies; an empty query matches nothing.
+     */
+    public List<Quiz> search(String query, Predicate<Quiz> filter, int limit) {
+        List<String> tokens = tokenize(query);
+        List<Quiz> found = new ArrayList<>();
+        if (tokens.isEmpty()) return found;
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> scores = null;
+            for (String token : tokens) {
+                Map<Integer, Integer> tokenScores = new HashMap<>();
+                for (Map.Entry<String, Map<Integer, Integer>> term
+                        : postings.subMap(token, true, token + Character.MAX_VALUE, true).entrySet()) {
+                    boolean exact = term.getKey().length() == token.length();
+                    for (Map.Entry<Integer, Integer> p : term.getValue().entrySet()) {
+                        int weight = exact ? p.getValue() * 2 : p.getValue();
+                        tokenScores.merge(p.getKey(), weight, Math::max);
+                    }
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) return found;
+            }
+            Map<Integer, Integer> ranked = scores;
+            List<Integer> ids = new ArrayList<>(ranked.keySet());
+            ids.sort(Comparator.<Integer>comparingInt(ranked::get).reversed()
+                    .thenComparing(id -> quizzes.get(id).getCreatedAt(), Comparator.nullsFirst(Comparator.<LocalDateTime>reverseOrder()))
+                    .thenComparing(Comparator.reverseOrder()));
+            for (int id : ids) {
+                Quiz q = quizzes.get(id);
+                if (filter == null || filter.test(q)) {
+                    found.add(new Quiz(q));
+                    if (found.size() >= limit) break;
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Lower-cased runs of letters and digits. */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void putLocked(Quiz q) {
+        if (q.getCreatedAt() == null) {
+            // freshly written quizzes come without the database timestamp
+            Quiz old = quizzes.get(q.getId());
+            q.setCreatedAt(old != null ? old.getCreatedAt() : LocalDateTime.now());
+        }
+        removeLocked(q.getId());
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, q.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, q.getCourseName(), COURSE_WEIGHT);
+        addTerms(terms, q.getDescription(), DESCRIPTION_WEIGHT);
+        for (Map.Entry<String, Integer> t : terms.entrySet()) {
+            postings.computeIfAbsent(t.getKey(), k -> new HashMap<>()).put(q.getId(), t.getValue());
+        }
+        quizzes.put(q.getId(), q);
+        termsByQuiz.put(q.getId(), terms.keySet());
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        // a term repeated within one field counts once
+        for (String t : new HashSet<>(tokenize(text))) terms.merge(t, weight, Integer::sum);
+    }
+
+    private void removeLocked(int quizId) {
+        Set<String> terms = termsByQuiz.remove(quizId);
+        quizzes.remove(quizId);
+        if (terms == null) return;
+        for (String t : terms) {
+            Map<Integer, Integer> p = postings.get(t);
+            if (p == null) continue;
+            p.remove(quizId);
+            if (p.isEmpty()) postings.remove(t);
+        }
+    }
+
+    private void clearLocked() {
+        postings.clear();
+        quizzes.clear();
+        termsByQuiz.clear();
+    }
+}
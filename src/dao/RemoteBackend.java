@@ -0,0 +1,140 @@
+package dao;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client of the quiz server (server.QuizServer). When the quiz.backend system property
+ * holds the server's URL (e.g. -Dquiz.backend=http://quiz-host:8080), the DAO methods the
+ * screens use send their call to the server instead of querying MySQL, so the desktop
+ * clients need no database account and share the server's connection pool and caches.
+ *
+ * Each call is a POST of a JSON object of named arguments to /api/&lt;operation&gt;; the reply
+ * is the JSON value of the result, or an error object. Server-side SQL errors come back as
+ * SQLException with the original SQLState, and an unreachable server as SQLState 08S01
+ * (communication link failure), so callers that retry transient failures (SubmissionQueue)
+ * keep doing so.
+ *
+ * Every operation except logging in and registering needs the token the server issued at
+ * login (UserDAO.login stores it here with signIn); it is sent as a bearer token, and the
+ * server only lets the user it belongs to see and change what that user may.
+ */
+public final class RemoteBackend {
+
+    private static final String BASE = trimSlash(System.getProperty("quiz.backend", ""));
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(Long.getLong("quiz.backend.timeoutSeconds", 30));
+    private static final String COMMUNICATION_FAILURE = "08S01";
+
+    private static volatile HttpClient client;
+    private static volatile Session session;
+
+    private RemoteBackend() {}
+
+    /** True if this process talks to a quiz server rather than to the database. */
+    public static boolean isEnabled() {
+        return !BASE.isEmpty();
+    }
+
+    public static String baseUrl() {
+        return BASE;
+    }
+
+    /** Use the token the server issued at the user's login for every later call. */
+    public static void signIn(String token, int userId) {
+        session = new Session(token, userId);
+    }
+
+    /** The id of the user whose token the calls carry, 0 before anyone logged in. */
+    public static int signedInUserId() {
+        Session s = session;
+        return s == null ? 0 : s.userId;
+    }
+
+    /**
+     * Run an operation on the server. args are name, value pairs; values are encoded with
+     * Json (models must already be in their ApiCodec form). Returns the decoded reply.
+     */
+    public static Object call(String operation, Object... args) throws SQLException {
+        if (args.length % 2 != 0) throw new IllegalArgumentException("Arguments must be name, value pairs");
+        Map<String, Object> body = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) body.put((String) args[i], args[i + 1]);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(BASE + "/api/" + operation))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body), StandardCharsets.UTF_8));
+        Session s = session;
+        if (s != null) builder.header("Authorization", "Bearer " + s.token);
+        HttpRequest request = builder.build();
+        HttpResponse<String> response;
+        try {
+            response = client().send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new SQLException("Quiz server " + BASE + " unreachable: " + ex.getMessage(), COMMUNICATION_FAILURE, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for the quiz server.", COMMUNICATION_FAILURE, ex);
+        }
+        Object reply;
+        try {
+            reply = Json.parse(response.body());
+        } catch (IllegalArgumentException ex) {
+            if (response.statusCode() == 200) {
+                throw new SQLException("Bad reply from quiz server: " + ex.getMessage(), COMMUNICATION_FAILURE);
+            }
+            reply = null; // an error page of a proxy, say
+        }
+        if (response.statusCode() == 200) return reply;
+        String message = "Quiz server error (HTTP " + response.statusCode() + ")";
+        String sqlState = null;
+        if (reply instanceof Map) {
+            Map<String, Object> error = ApiCodec.map(reply);
+            if (error.get("error") != null) message = ApiCodec.str(error, "error");
+            sqlState = ApiCodec.str(error, "sqlState");
+        }
+        // overloaded or restarting: worth retrying, like a dropped connection
+        if (sqlState == null && response.statusCode() == 503) sqlState = COMMUNICATION_FAILURE;
+        throw new SQLException(message, sqlState);
+    }
+
+    private static HttpClient client() {
+        HttpClient c = client;
+        if (c == null) {
+            synchronized (RemoteBackend.class) {
+                c = client;
+                if (c == null) {
+                    c = HttpClient.newBuilder()
+                            .connectTimeout(CONNECT_TIMEOUT)
+                            .version(HttpClient.Version.HTTP_1_1)
+                            .build();
+                    client = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private static final class Session {
+        final String token;
+        final int userId;
+
+        Session(String token, int userId) {
+            this.token = token;
+            this.userId = userId;
+        }
+    }
+
+    private static String trimSlash(String url) {
+        String s = url.trim();
+        while (s.endsWith("/")) s = s.substring(0, s.length() - 1);
+        return s;
+    }
+}
@@ -1,74 +1,370 @@
 package dao;
 
 import database.DatabaseConnection;
+import models.AnswerSheet;
+import models.QuestionStats;
 import models.Result;
+import models.StudentResult;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ResultDAO {
 
+    private static final String RESULT_COLUMNS = "r.id, r.student_id, r.quiz_id, r.score, r.total_questions, r.answers, r.taken_at";
+
+    private static final String INSERT_RESULT = "INSERT INTO results (student_id, quiz_id, score, total_questions, answers, answers_packed) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RESULT_ATTEMPT = "INSERT INTO results (student_id, quiz_id, attempt_no, score, total_questions, answers, answers_packed)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_ATTEMPT_RESULTS = "SELECT id, student_id, quiz_id, attempt_no FROM results WHERE (student_id, quiz_id, attempt_no) IN ";
+    // IGNORE: an answer to a question deleted in the meantime must not fail the submission
+    private static final String INSERT_ANSWER = "INSERT IGNORE INTO results_answers (result_id, question_id, choice) VALUES (?, ?, ?)";
+    private static final String SELECT_QUESTION_STATS = "SELECT q.id, q.correct_option, a.choice, COUNT(a.result_id) FROM questions q"
+            + " LEFT JOIN results_answers a ON a.question_id = q.id WHERE q.quiz_id = ?"
+            + " GROUP BY q.id, q.correct_option, a.choice ORDER BY q.id";
+
+    /**
+     * Store a result. With the structured answer schema the answers are also written packed
+     * and as one results_answers row per question, in the same transaction, which also adds
+     * the result to the quiz and student aggregates (see StatsDAO). The result is stored as
+     * given, so this needs a direct database connection; clients store the results of their
+     * attempts through AttemptDAO.finalizeAttempts, which grades them.
+     */
     public int addResult(Result r) throws SQLException {
-        String sql = "INSERT INTO results (student_id, quiz_id, score, total_questions, answers) VALUES (?, ?, ?, ?, ?)";
-        try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                int id = addResult(c, r);
+                c.commit();
+                AnalyticsDAO.recordResult(id, r);
+                return id;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    int addResult(Connection c, Result r) throws SQLException {
+        AnswerSheet sheet = r.getAnswerSheet();
+        int id = -1;
+        try (PreparedStatement ps = c.prepareStatement(INSERT_RESULT, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, r.getStudentId());
             ps.setInt(2, r.getQuizId());
             ps.setDouble(3, r.getScore());
             ps.setInt(4, r.getTotalQuestions());
             ps.setString(5, r.getAnswers());
+            ps.setBytes(6, sheet.encode());
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
+                if (rs.next()) id = rs.getInt(1);
+            }
+        }
+        if (id > 0 && sheet.size() > 0) {
+            try (PreparedStatement ps = c.prepareStatement(INSERT_ANSWER)) {
+                for (int i = 0; i < sheet.size(); i++) {
+                    ps.setInt(1, id);
+                    ps.setInt(2, sheet.questionIdAt(i));
+                    ps.setByte(3, sheet.choiceAt(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        if (id > 0) StatsDAO.recordResults(c, Collections.singletonList(id));
+        return id;
+    }
+
+    /**
+     * Store the results of numbered attempts in one batch (a single multi-row INSERT with
+     * rewriteBatchedStatements). (student_id, quiz_id, attempt_no) is the idempotency key:
+     * a result already stored for its attempt is not written again, it just gets the stored id.
+     * Sets the id of every result and returns the ones that were new.
+     */
+    List<Result> addAttemptResults(Connection c, List<Result> results) throws SQLException {
+        Map<String, Integer> stored = new HashMap<>();
+        StringBuilder sql = new StringBuilder(SELECT_ATTEMPT_RESULTS).append('(');
+        for (int i = 0; i < results.size(); i++) sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        try (PreparedStatement ps = c.prepareStatement(sql.append(')').toString())) {
+            int p = 1;
+            for (Result r : results) {
+                ps.setInt(p++, r.getStudentId());
+                ps.setInt(p++, r.getQuizId());
+                ps.setInt(p++, r.getAttemptNo());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) stored.put(attemptKey(rs.getInt(2), rs.getInt(3), rs.getInt(4)), rs.getInt(1));
+            }
+        }
+        List<Result> added = new ArrayList<>();
+        for (Result r : results) {
+            Integer id = stored.get(attemptKey(r.getStudentId(), r.getQuizId(), r.getAttemptNo()));
+            if (id != null) r.setId(id);
+            else added.add(r);
+        }
+        if (added.isEmpty()) return added;
+        try (PreparedStatement ps = c.prepareStatement(INSERT_RESULT_ATTEMPT, Statement.RETURN_GENERATED_KEYS)) {
+            for (Result r : added) {
+                ps.setInt(1, r.getStudentId());
+                ps.setInt(2, r.getQuizId());
+                ps.setInt(3, r.getAttemptNo());
+                ps.setDouble(4, r.getScore());
+                ps.setInt(5, r.getTotalQuestions());
+                ps.setString(6, r.getAnswers());
+                ps.setBytes(7, r.getAnswerSheet().encode());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                for (Result r : added) {
+                    if (!rs.next()) throw new SQLException("Missing generated id for a batched result.");
+                    r.setId(rs.getInt(1));
+                }
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(INSERT_ANSWER)) {
+            for (Result r : added) {
+                AnswerSheet sheet = r.getAnswerSheet();
+                for (int i = 0; i < sheet.size(); i++) {
+                    ps.setInt(1, r.getId());
+                    ps.setInt(2, sheet.questionIdAt(i));
+                    ps.setByte(3, sheet.choiceAt(i));
+                    ps.addBatch();
+                }
             }
+            ps.executeBatch();
         }
-        return -1;
+        List<Integer> addedIds = new ArrayList<>(added.size());
+        for (Result r : added) addedIds.add(r.getId());
+        StatsDAO.recordResults(c, addedIds);
+        return added;
     }
 
-    public List<Result> listResultsByStudent(int studentId) throws SQLException {
-        List<Result> list = new ArrayList<>();
-        String sql = "SELECT id, student_id, quiz_id, score, total_questions, answers, taken_at FROM results WHERE student_id = ? ORDER BY taken_at DESC";
+    private static String attemptKey(int studentId, int quizId, int attemptNo) {
+        return studentId + ":" + quizId + ":" + attemptNo;
+    }
+
+    /** Per-question answer counts for a quiz, in question id order, from results_answers. */
+    public List<QuestionStats> getQuestionStats(int quizId) throws SQLException {
+        List<QuestionStats> list = new ArrayList<>();
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, studentId);
+             PreparedStatement ps = c.prepareStatement(SELECT_QUESTION_STATS)) {
+            ps.setInt(1, quizId);
             try (ResultSet rs = ps.executeQuery()) {
+                QuestionStats current = null;
                 while (rs.next()) {
-                    Result r = new Result();
-                    r.setId(rs.getInt("id"));
-                    r.setStudentId(rs.getInt("student_id"));
-                    r.setQuizId(rs.getInt("quiz_id"));
-                    r.setScore(rs.getDouble("score"));
-                    r.setTotalQuestions(rs.getInt("total_questions"));
-                    r.setAnswers(rs.getString("answers"));
-                    r.setTakenAt(rs.getTimestamp("taken_at").toLocalDateTime());
-                    list.add(r);
+                    int questionId = rs.getInt(1);
+                    if (current == null || current.getQuestionId() != questionId) {
+                        current = new QuestionStats(questionId, rs.getString(2).charAt(0));
+                        list.add(current);
+                    }
+                    int choice = rs.getInt(3);
+                    if (!rs.wasNull()) current.addChoiceCount(choice, rs.getInt(4));
                 }
             }
         }
         return list;
     }
 
-    public List<Result> listResultsByQuiz(int quizId) throws SQLException {
-        List<Result> list = new ArrayList<>();
-        String sql = "SELECT id, student_id, quiz_id, score, total_questions, answers, taken_at FROM results WHERE quiz_id = ? ORDER BY taken_at DESC";
+    /** Orders of the paged results queries. Each ends in r.id, so a row's position is unique. */
+    public enum ResultSort {
+        NEWEST("r.taken_at DESC, r.id DESC", "(r.taken_at < ? OR (r.taken_at = ? AND r.id < ?))"),
+        HIGHEST_SCORE("r.score DESC, r.id DESC", "(r.score < ? OR (r.score = ? AND r.id < ?))"),
+        LOWEST_SCORE("r.score ASC, r.id ASC", "(r.score > ? OR (r.score = ? AND r.id > ?))");
+
+        private final String orderBy;
+        // rows after a given row in this order: key, key, id
+        private final String after;
+
+        ResultSort(String orderBy, String after) {
+            this.orderBy = orderBy;
+            this.after = after;
+        }
+    }
+
+    /** Which results a paged query returns: one quiz's or one student's, optionally filtered, in a sort order. */
+    public static final class ResultQuery {
+        private final String where;
+        private final int param;
+        private final String filter;
+        private final ResultSort sort;
+
+        private ResultQuery(String where, int param, String filter, ResultSort sort) {
+            this.where = where;
+            this.param = param;
+            this.filter = filter;
+            this.sort = sort;
+        }
+
+        public static ResultQuery byQuiz(int quizId) {
+            return new ResultQuery("r.quiz_id = ?", quizId, null, ResultSort.NEWEST);
+        }
+
+        public static ResultQuery byStudent(int studentId) {
+            return new ResultQuery("r.student_id = ?", studentId, null, ResultSort.NEWEST);
+        }
+
+        /** Only students whose name contains, or roll number starts with, the text. */
+        public ResultQuery withFilter(String text) {
+            String f = text == null || text.isBlank() ? null : text.trim();
+            return new ResultQuery(where, param, f, sort);
+        }
+
+        public ResultQuery sortedBy(ResultSort s) {
+            return new ResultQuery(where, param, filter, s);
+        }
+
+        public ResultSort getSort() { return sort; }
+
+        // for ApiCodec and the quiz server's access checks
+        public boolean isByQuiz() { return where.startsWith("r.quiz_id"); }
+        /** The quiz id of a byQuiz query, the student id of a byStudent one. */
+        public int getParam() { return param; }
+        String getFilter() { return filter; }
+    }
+
+    /** Number of results the query matches. */
+    public int countResults(ResultQuery q) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toInt(RemoteBackend.call("results/count", "query", ApiCodec.query(q)));
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM results r");
+        if (q.filter != null) sql.append(" LEFT JOIN users u ON u.id = r.student_id");
+        sql.append(" WHERE ").append(whereClause(q, params));
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * The page of results following the given row in the query's order (the first page if
+     * after is null). Keyset pagination: the cost of a page does not grow with its depth.
+     */
+    public List<StudentResult> pageResults(ResultQuery q, Result after, int limit) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("results/page", "query", ApiCodec.query(q),
+                    "after", after == null ? null : ApiCodec.result(after), "limit", limit), ApiCodec::toStudentResult);
+        }
+        return pageResults(q, after, 0, limit);
+    }
+
+    /**
+     * The page at a row offset, for jumping to a position whose preceding row is not known
+     * (dragging the scroll bar); later pages can continue with pageResults from its last row.
+     */
+    public List<StudentResult> pageResultsAt(ResultQuery q, int offset, int limit) throws SQLException {
+        if (RemoteBackend.isEnabled()) {
+            return ApiCodec.toList(RemoteBackend.call("results/pageAt", "query", ApiCodec.query(q),
+                    "offset", offset, "limit", limit), ApiCodec::toStudentResult);
+        }
+        return pageResults(q, null, offset, limit);
+    }
+
+    private List<StudentResult> pageResults(ResultQuery q, Result after, int offset, int limit) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = selectStudentResults(q, params);
+        if (after != null) {
+            Object key = q.sort == ResultSort.NEWEST
+                    ? (after.getTakenAt() != null ? Timestamp.valueOf(after.getTakenAt()) : new Timestamp(0))
+                    : (Object) after.getScore();
+            sql.append(" AND ").append(q.sort.after);
+            params.add(key);
+            params.add(key);
+            params.add(after.getId());
+        }
+        sql.append(" ORDER BY ").append(q.sort.orderBy).append(" LIMIT ?");
+        params.add(limit);
+        if (offset > 0) {
+            sql.append(" OFFSET ?");
+            params.add(offset);
+        }
+        List<StudentResult> list = new ArrayList<>(limit);
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapStudentResult(rs));
+            }
+        }
+        return list;
+    }
+
+    /** Receives the rows of a streamed results query, one at a time. */
+    public interface RowHandler {
+        void row(StudentResult r) throws IOException;
+    }
+
+    /**
+     * Every result of the query, in its order, handed to the handler as it is read: the rows
+     * are streamed from the server, so memory does not grow with the number of results.
+     * Stops with InterruptedIOException when the calling thread is interrupted. Returns the
+     * number of rows.
+     */
+    public long streamResults(ResultQuery q, RowHandler handler) throws SQLException, IOException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = selectStudentResults(q, params).append(" ORDER BY ").append(q.sort.orderBy);
+        long rows = 0;
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, quizId);
+             PreparedStatement ps = c.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams rows one by one instead of buffering the whole result
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Result r = new Result();
-                    r.setId(rs.getInt("id"));
-                    r.setStudentId(rs.getInt("student_id"));
-                    r.setQuizId(rs.getInt("quiz_id"));
-                    r.setScore(rs.getDouble("score"));
-                    r.setTotalQuestions(rs.getInt("total_questions"));
-                    r.setAnswers(rs.getString("answers"));
-                    r.setTakenAt(rs.getTimestamp("taken_at").toLocalDateTime());
-                    list.add(r);
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Export cancelled.");
+                    handler.row(mapStudentResult(rs));
+                    rows++;
                 }
             }
         }
-        return list;
+        return rows;
+    }
+
+    private static StringBuilder selectStudentResults(ResultQuery q, List<Object> params) {
+        return new StringBuilder("SELECT ").append(RESULT_COLUMNS).append(", u.full_name, u.roll_number, u.stream, u.division")
+                .append(" FROM results r LEFT JOIN users u ON u.id = r.student_id WHERE ").append(whereClause(q, params));
+    }
+
+    private static StudentResult mapStudentResult(ResultSet rs) throws SQLException {
+        StudentResult r = new StudentResult();
+        mapResult(rs, r);
+        r.setStudentName(rs.getString(8));
+        r.setRollNumber(rs.getString(9));
+        r.setStream(rs.getString(10));
+        r.setDivision(rs.getString(11));
+        // keep legacy field in sync, as UserDAO does
+        r.setStudentClass(r.getDivision());
+        return r;
+    }
+
+    // scope and student filter of a paged query; the filter needs users joined as u
+    private static String whereClause(ResultQuery q, List<Object> params) {
+        params.add(q.param);
+        if (q.filter == null) return q.where;
+        String like = q.filter.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        params.add("%" + like + "%");
+        params.add(like + "%");
+        return q.where + " AND (u.full_name LIKE ? OR u.roll_number LIKE ?)";
+    }
+
+    // Map the RESULT_COLUMNS prefix of the current row
+    private static void mapResult(ResultSet rs, Result r) throws SQLException {
+        r.setId(rs.getInt(1));
+        r.setStudentId(rs.getInt(2));
+        r.setQuizId(rs.getInt(3));
+        r.setScore(rs.getDouble(4));
+        r.setTotalQuestions(rs.getInt(5));
+        r.setAnswers(rs.getString(6));
+        Timestamp t = rs.getTimestamp(7);
+        if (t != null) r.setTakenAt(t.toLocalDateTime());
     }
 }
@@ -0,0 +1,232 @@
+package dao;
+
+import models.AnswerSheet;
+import models.Question;
+import models.StudentResult;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes all results of a quiz to a CSV or XLSX file for grading systems: one row per
+ * result with the student's details, the score and the chosen letter per question. Rows are
+ * streamed from ResultDAO.streamResults straight into the file, so memory stays constant
+ * however many results there are. The file is written under a temporary name and moved in
+ * place when complete.
+ */
+public class ResultExporter {
+
+    public enum Format { CSV, XLSX }
+
+    /** Progress callback, called from the exporting thread. */
+    public interface Progress {
+        void update(long rowsDone, long rowsTotal);
+    }
+
+    private static final int PROGRESS_EVERY = 500;
+    private static final String[] FIXED_HEADERS = {
+            "Result ID", "Roll Number", "Student", "Stream", "Division", "Score (%)", "Correct", "Total Questions", "Taken At"};
+
+    private final ResultDAO resultDAO = new ResultDAO();
+    private final QuestionDAO questionDAO = new QuestionDAO();
+
+    /** Export the quiz's results, newest first. Returns the number of rows written. */
+    public long exportQuiz(int quizId, Format format, Path file, Progress progress) throws SQLException, IOException {
+        List<Question> questions = questionDAO.listQuestionsByQuiz(quizId);
+        ResultDAO.ResultQuery query = ResultDAO.ResultQuery.byQuiz(quizId);
+        long total = resultDAO.countResults(query);
+        Path tmp = file.resolveSibling(file.getFileName() + ".part");
+        long rows;
+        try (SheetWriter out = format == Format.XLSX ? new XlsxWriter(tmp) : new CsvWriter(tmp)) {
+            out.startRow();
+            for (String h : FIXED_HEADERS) out.text(h);
+            for (int i = 0; i < questions.size(); i++) out.text("Q" + (i + 1));
+            out.endRow();
+            long[] done = {0};
+            rows = resultDAO.streamResults(query, r -> {
+                writeRow(out, r, questions);
+                if (++done[0] % PROGRESS_EVERY == 0) progress.update(done[0], total);
+            });
+        } catch (SQLException | IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        progress.update(rows, Math.max(rows, total));
+        return rows;
+    }
+
+    private static void writeRow(SheetWriter out, StudentResult r, List<Question> questions) throws IOException {
+        out.startRow();
+        out.number(r.getId());
+        out.text(r.getRollNumber());
+        out.text(r.getStudentName());
+        out.text(r.getStream());
+        out.text(r.getDivision() != null ? r.getDivision() : r.getStudentClass());
+        out.number(Math.round(r.getScore() * 100) / 100.0);
+        out.number(Math.round(r.getScore() * r.getTotalQuestions() / 100.0));
+        out.number(r.getTotalQuestions());
+        out.text(r.getTakenAt() != null ? r.getTakenAt().toString().replace('T', ' ') : null);
+        AnswerSheet answers = r.getAnswerSheet();
+        for (Question q : questions) {
+            byte choice = answers.choiceFor(q.getId());
+            out.text(choice == AnswerSheet.NO_ANSWER ? null : String.valueOf(AnswerSheet.letterOf(choice)));
+        }
+        out.endRow();
+    }
+
+    /** Row-at-a-time sheet output; null text is an empty cell. */
+    private interface SheetWriter extends Closeable {
+        void startRow() throws IOException;
+        void text(String value) throws IOException;
+        void number(double value) throws IOException;
+        void endRow() throws IOException;
+    }
+
+    private static class CsvWriter implements SheetWriter {
+        private final Writer w;
+        private boolean first;
+
+        CsvWriter(Path file) throws IOException {
+            w = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            w.write('\uFEFF'); // BOM so spreadsheet programs read the file as UTF-8
+        }
+
+        public void startRow() { first = true; }
+
+        public void text(String value) throws IOException {
+            separator();
+            if (value == null) return;
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                w.write(value);
+            } else {
+                w.write('"');
+                w.write(value.replace("\"", "\"\""));
+                w.write('"');
+            }
+        }
+
+        public void number(double value) throws IOException {
+            separator();
+            w.write(format(value));
+        }
+
+        public void endRow() throws IOException { w.write("\r\n"); }
+
+        private void separator() throws IOException {
+            if (!first) w.write(',');
+            first = false;
+        }
+
+        public void close() throws IOException { w.close(); }
+    }
+
+    /**
+     * Minimal SpreadsheetML package: one worksheet of inline strings and numbers, written
+     * straight into the zip stream (no shared strings table to hold in memory).
+     */
+    private static class XlsxWriter implements SheetWriter {
+        private final ZipOutputStream zip;
+        private final Writer w;
+        private int row;
+        private int col;
+
+        XlsxWriter(Path file) throws IOException {
+            zip = new ZipOutputStream(Files.newOutputStream(file));
+            w = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            part("[Content_Types].xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                    + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                    + "</Types>");
+            part("_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                    + "</Relationships>");
+            part("xl/workbook.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                    + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<sheets><sheet name=\"Results\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+            part("xl/_rels/workbook.xml.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                    + "</Relationships>");
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+        }
+
+        private void part(String name, String xml) throws IOException {
+            zip.putNextEntry(new ZipEntry(name));
+            w.write(xml);
+            w.flush();
+            zip.closeEntry();
+        }
+
+        public void startRow() throws IOException {
+            row++;
+            col = 0;
+            w.write("<row r=\"" + row + "\">");
+        }
+
+        public void text(String value) throws IOException {
+            col++;
+            if (value == null) return;
+            w.write("<c r=\"" + cellRef() + "\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+            escape(value);
+            w.write("</t></is></c>");
+        }
+
+        public void number(double value) throws IOException {
+            col++;
+            w.write("<c r=\"" + cellRef() + "\"><v>" + format(value) + "</v></c>");
+        }
+
+        public void endRow() throws IOException { w.write("</row>"); }
+
+        public void close() throws IOException {
+            w.write("</sheetData></worksheet>");
+            w.flush();
+            zip.closeEntry();
+            zip.close();
+        }
+
+        private String cellRef() {
+            StringBuilder letters = new StringBuilder();
+            for (int c = col; c > 0; c = (c - 1) / 26) letters.insert(0, (char) ('A' + (c - 1) % 26));
+            return letters.append(row).toString();
+        }
+
+        private void escape(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                switch (ch) {
+                    case '<': w.write("&lt;"); break;
+                    case '>': w.write("&gt;"); break;
+                    case '&': w.write("&amp;"); break;
+                    case '"': w.write("&quot;"); break;
+                    default:
+                        // XML 1.0 has no way to carry other control characters
+                        if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') w.write(ch);
+                }
+            }
+        }
+    }
+
+    private static String format(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : Double.toString(v);
+    }
+}
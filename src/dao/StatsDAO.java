@@ -0,0 +1,222 @@
+package dao;
+
+import database.DatabaseConnection;
+import models.ScoreStats;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Score aggregates per quiz (quiz_stats) and per student (student_stats): count, sum, sum
+ * of squares, min, max and last taken. They are kept up to date in the transaction that
+ * stores results, by aggregating just the new rows and adding them to the stored ones
+ * (INSERT ... SELECT ... ON DUPLICATE KEY UPDATE), so dashboards read one row instead of
+ * scanning results. Deleting a user or quiz cascades to results; the aggregates those
+ * results were part of are recomputed in the same transaction as the delete.
+ *
+ * database.StatsRebuild verifies or rebuilds the tables from scratch.
+ */
+public class StatsDAO {
+
+    private static final String AGGREGATE = "COUNT(*), SUM(score), SUM(score * score), MIN(score), MAX(score), MAX(taken_at)";
+    private static final String STATS_COLUMNS = "result_count, score_sum, score_sq_sum, score_min, score_max, last_taken_at";
+    // adds freshly aggregated rows to the stored aggregate
+    private static final String ADD_TO_STORED = " ON DUPLICATE KEY UPDATE result_count = result_count + VALUES(result_count),"
+            + " score_sum = score_sum + VALUES(score_sum), score_sq_sum = score_sq_sum + VALUES(score_sq_sum),"
+            + " score_min = LEAST(score_min, VALUES(score_min)), score_max = GREATEST(score_max, VALUES(score_max)),"
+            + " last_taken_at = GREATEST(COALESCE(last_taken_at, VALUES(last_taken_at)), COALESCE(VALUES(last_taken_at), last_taken_at))";
+
+    private static final String QUIZZES_OF_STUDENT = "SELECT DISTINCT quiz_id FROM results WHERE student_id = ?";
+    private static final String STUDENTS_OF_QUIZ = "SELECT DISTINCT student_id FROM results WHERE quiz_id = ?";
+    private static final String STUDENTS_OF_TEACHER = "SELECT DISTINCT r.student_id FROM results r"
+            + " JOIN quizzes q ON q.id = r.quiz_id WHERE q.teacher_id = ?";
+
+    /** One of the two aggregate tables, with the results column it groups by. */
+    private enum Table {
+        QUIZ("quiz_stats", "quiz_id"),
+        STUDENT("student_stats", "student_id");
+
+        final String name;
+        final String key;
+
+        Table(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+    }
+
+    /** Aggregates whose results a delete is about to remove. */
+    static final class Affected {
+        private final List<Integer> quizIds;
+        private final List<Integer> studentIds;
+
+        private Affected(List<Integer> quizIds, List<Integer> studentIds) {
+            this.quizIds = quizIds;
+            this.studentIds = studentIds;
+        }
+    }
+
+    public ScoreStats getQuizStats(int quizId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return getQuizStats(Collections.singletonList(quizId)).getOrDefault(quizId, new ScoreStats());
+        return getStats(Table.QUIZ, Collections.singletonList(quizId)).getOrDefault(quizId, new ScoreStats());
+    }
+
+    /** Aggregates of several quizzes; quizzes without results are missing from the map. */
+    public Map<Integer, ScoreStats> getQuizStats(Collection<Integer> quizIds) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toStatsById(RemoteBackend.call("stats/quizzes", "quizIds", quizIds));
+        return getStats(Table.QUIZ, quizIds);
+    }
+
+    public ScoreStats getStudentStats(int studentId) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toStats(RemoteBackend.call("stats/student", "studentId", studentId));
+        return getStats(Table.STUDENT, Collections.singletonList(studentId)).getOrDefault(studentId, new ScoreStats());
+    }
+
+    private static Map<Integer, ScoreStats> getStats(Table t, Collection<Integer> keys) throws SQLException {
+        Map<Integer, ScoreStats> stats = new HashMap<>();
+        if (keys.isEmpty()) return stats;
+        String sql = "SELECT " + t.key + ", " + STATS_COLUMNS + " FROM " + t.name + " WHERE " + t.key + " IN (" + placeholders(keys.size()) + ")";
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int p = 1;
+            for (Integer k : keys) ps.setInt(p++, k);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) stats.put(rs.getInt(1), mapStats(rs));
+            }
+        }
+        return stats;
+    }
+
+    /** Add stored results to the aggregates; runs in the caller's transaction. */
+    static void recordResults(Connection c, List<Integer> resultIds) throws SQLException {
+        if (resultIds.isEmpty()) return;
+        for (Table t : Table.values()) {
+            // ORDER BY: aggregate rows are locked in key order, so concurrent batches cannot deadlock
+            String sql = "INSERT INTO " + t.name + " (" + t.key + ", " + STATS_COLUMNS + ")"
+                    + " SELECT " + t.key + ", " + AGGREGATE + " FROM results WHERE id IN (" + placeholders(resultIds.size()) + ")"
+                    + " GROUP BY " + t.key + " ORDER BY " + t.key + ADD_TO_STORED;
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                int p = 1;
+                for (Integer id : resultIds) ps.setInt(p++, id);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /** Aggregates that deleting the user (a student's results, or a teacher's quizzes) changes. */
+    static Affected affectedByUserDelete(Connection c, int userId) throws SQLException {
+        return new Affected(ids(c, QUIZZES_OF_STUDENT, userId), ids(c, STUDENTS_OF_TEACHER, userId));
+    }
+
+    static Affected affectedByQuizDelete(Connection c, int quizId) throws SQLException {
+        return new Affected(Collections.emptyList(), ids(c, STUDENTS_OF_QUIZ, quizId));
+    }
+
+    /** Recompute the affected aggregates from the results left after the delete. */
+    static void refresh(Connection c, Affected affected) throws SQLException {
+        recompute(c, Table.QUIZ, affected.quizIds);
+        recompute(c, Table.STUDENT, affected.studentIds);
+    }
+
+    private static void recompute(Connection c, Table t, List<Integer> keys) throws SQLException {
+        if (keys.isEmpty()) return;
+        String in = " IN (" + placeholders(keys.size()) + ")";
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + t.name + " WHERE " + t.key + in)) {
+            bind(ps, keys);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + t.name + " (" + t.key + ", " + STATS_COLUMNS + ")"
+                + " SELECT " + t.key + ", " + AGGREGATE + " FROM results WHERE " + t.key + in + " GROUP BY " + t.key)) {
+            bind(ps, keys);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Compare the stored aggregates with ones computed from results. Returns one line per
+     * aggregate that differs or is missing on either side (empty when consistent).
+     */
+    public List<String> verify() throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Connection c = DatabaseConnection.getConnection()) {
+            for (Table t : Table.values()) {
+                Map<Integer, ScoreStats> stored = loadAll(c, "SELECT " + t.key + ", " + STATS_COLUMNS + " FROM " + t.name);
+                Map<Integer, ScoreStats> actual = loadAll(c, "SELECT " + t.key + ", " + AGGREGATE + " FROM results GROUP BY " + t.key);
+                Map<Integer, ScoreStats> all = new TreeMap<>(actual);
+                for (Integer k : stored.keySet()) all.putIfAbsent(k, null);
+                for (Integer k : all.keySet()) {
+                    ScoreStats s = stored.get(k);
+                    ScoreStats a = actual.get(k);
+                    if (s == null || a == null || !s.matches(a)) {
+                        problems.add(t.name + " " + t.key + "=" + k + ": stored " + s + ", actual " + a);
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Recompute both tables from results in one transaction. Submissions made meanwhile wait
+     * for it, so run it when few quizzes are being taken.
+     */
+    public void rebuild() throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                for (Table t : Table.values()) {
+                    st.executeUpdate("DELETE FROM " + t.name);
+                    st.executeUpdate("INSERT INTO " + t.name + " (" + t.key + ", " + STATS_COLUMNS + ")"
+                            + " SELECT " + t.key + ", " + AGGREGATE + " FROM results GROUP BY " + t.key);
+                }
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    private static Map<Integer, ScoreStats> loadAll(Connection c, String sql) throws SQLException {
+        Map<Integer, ScoreStats> stats = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) stats.put(rs.getInt(1), mapStats(rs));
+        }
+        return stats;
+    }
+
+    // (key, count, sum, sum of squares, min, max, last taken)
+    private static ScoreStats mapStats(ResultSet rs) throws SQLException {
+        Timestamp last = rs.getTimestamp(7);
+        return new ScoreStats(rs.getLong(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6),
+                last != null ? last.toLocalDateTime() : null);
+    }
+
+    private static List<Integer> ids(Connection c, String sql, int param) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, param);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static void bind(PreparedStatement ps, List<Integer> keys) throws SQLException {
+        for (int i = 0; i < keys.size(); i++) ps.setInt(i + 1, keys.get(i));
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ", ?");
+        return sb.toString();
+    }
+}
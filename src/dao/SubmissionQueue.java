@@ -0,0 +1,161 @@
+package dao;
+
+import models.Result;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded write-behind queue for finished attempts. When a timed quiz ends, many results
+ * arrive within the same second; instead of one transaction per result, a single drain
+ * thread collects whatever is queued (waiting a few milliseconds for more) and stores up to
+ * MAX_BATCH results with AttemptDAO.finalizeAttempts: one multi-row INSERT, one answer batch
+ * and one attempt update per transaction.
+ *
+ * The queue is not durable itself: callers keep the submission (AttemptJournal keeps its
+ * journal file) until the returned future completes. A full queue rejects new submissions
+ * right away so the caller can retry later instead of piling up memory. Transient database
+ * errors are retried with exponential backoff; a batch failing for another reason is split
+ * so one bad row does not fail the others. Results carry (student, quiz, attempt_no), so a
+ * resubmitted result is stored once.
+ */
+public class SubmissionQueue {
+
+    private static final Logger LOG = Logger.getLogger(SubmissionQueue.class.getName());
+
+    private static final int CAPACITY = 5_000;
+    private static final int MAX_BATCH = 200;
+    private static final long LINGER_MS = 20;
+    private static final int MAX_TRIES = 6;
+    private static final long MIN_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 8_000;
+
+    private static final BlockingQueue<Submission> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+    private static final AttemptDAO ATTEMPT_DAO = new AttemptDAO();
+    private static Thread drainer;
+
+    private SubmissionQueue() {}
+
+    /**
+     * Queue the result of a finished attempt. The future completes with the stored result
+     * id, or exceptionally if the queue is full or the database kept failing.
+     */
+    public static CompletableFuture<Integer> submit(int attemptId, Result r) {
+        ensureStarted();
+        Submission s = new Submission(attemptId, r);
+        if (!QUEUE.offer(s)) {
+            s.stored.completeExceptionally(new RejectedExecutionException("Submission queue is full."));
+        }
+        return s.stored;
+    }
+
+    /** Number of submissions waiting to be written. */
+    public static int pending() {
+        return QUEUE.size();
+    }
+
+    // also replaces a writer thread that died, so submissions never wait on a dead one
+    private static synchronized void ensureStarted() {
+        if (drainer != null && drainer.isAlive()) return;
+        drainer = new Thread(SubmissionQueue::drainLoop, "submission-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    private static void drainLoop() {
+        List<Submission> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+                // give a burst a moment to accumulate so it goes out as one batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MS);
+                while (batch.size() < MAX_BATCH) {
+                    QUEUE.drainTo(batch, MAX_BATCH - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= MAX_BATCH || wait <= 0) break;
+                    Submission next = QUEUE.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException ie) {
+                // nothing stops the writer: fail what was collected and keep draining
+                for (Submission s : batch) s.stored.completeExceptionally(ie);
+                batch.clear();
+                continue;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private static void write(List<Submission> batch) {
+        List<Integer> attemptIds = new ArrayList<>(batch.size());
+        List<Result> results = new ArrayList<>(batch.size());
+        for (Submission s : batch) {
+            attemptIds.add(s.attemptId);
+            results.add(s.result);
+        }
+        long backoff = MIN_BACKOFF_MS;
+        for (int tries = 1; ; tries++) {
+            try {
+                ATTEMPT_DAO.finalizeAttempts(attemptIds, results);
+                for (Submission s : batch) s.stored.complete(s.result.getId());
+                return;
+            } catch (SQLException ex) {
+                if (!isTransient(ex) && batch.size() > 1) {
+                    // isolate the row the database rejects
+                    for (Submission s : batch) write(Collections.singletonList(s));
+                    return;
+                }
+                if (!isTransient(ex) || tries >= MAX_TRIES) {
+                    LOG.warning("Giving up on " + batch.size() + " result(s): " + ex.getMessage());
+                    for (Submission s : batch) s.stored.completeExceptionally(ex);
+                    return;
+                }
+                try {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                } catch (InterruptedException ie) {
+                    // not re-set: the flag would only make the drain loop's next take() fail
+                    for (Submission s : batch) s.stored.completeExceptionally(ie);
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } catch (RuntimeException ex) {
+                // a bug or a bad row must fail this batch, not the writer thread
+                LOG.log(Level.SEVERE, "Failed to store " + batch.size() + " result(s)", ex);
+                for (Submission s : batch) s.stored.completeExceptionally(ex);
+                return;
+            }
+        }
+    }
+
+    // connection problems, lock timeouts and deadlocks are worth another try
+    static boolean isTransient(SQLException ex) {
+        String state = ex.getSQLState();
+        return ex instanceof SQLTransientException || ex instanceof SQLRecoverableException
+                || (state != null && (state.startsWith("08") || state.startsWith("40")));
+    }
+
+    private static class Submission {
+        final int attemptId;
+        final Result result;
+        final CompletableFuture<Integer> stored = new CompletableFuture<>();
+
+        Submission(int attemptId, Result result) {
+            this.attemptId = attemptId;
+            this.result = result;
+        }
+    }
+}
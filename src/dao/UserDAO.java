@@ -6,273 +6,267 @@ import exceptions.InvalidLoginException;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 public class UserDAO {
 
+    private static final Logger LOG = Logger.getLogger(UserDAO.class.getName());
+
+    private static final String LOGIN = "SELECT id, username, password, full_name, role, roll_number, stream, division FROM users WHERE username = ?";
+    private static final String INSERT = "INSERT INTO users (username, password, full_name, role, roll_number, stream, division) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String LIST = "SELECT id, username, full_name, role, roll_number, stream, division FROM users";
+    private static final String BY_ID = LIST + " WHERE id = ?";
+
+    private static final String REHASH = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+
+    // a null password keeps the stored one
+    private static final String UPDATE = "UPDATE users SET password = COALESCE(?, password), full_name = ?, role = ?, roll_number = ?, stream = ?, division = ? WHERE id = ?";
+
+    // Read-through cache for profile lookups; updateUser/deleteUser/addUser invalidate it
+    private static final DaoCache<Integer, User> USER_BY_ID = new DaoCache<>("userById", 2000, 5, TimeUnit.MINUTES);
+
+    /**
+     * Look the user up by name, then check the password on the hashing pool with no
+     * connection held. Plaintext (legacy) and cheaper hashes are replaced by a hash at the
+     * configured cost on a successful login. The returned user carries no password.
+     * Through a quiz server, the session token it issues is kept for the calls that follow.
+     */
     public User login(String username, String password) throws InvalidLoginException {
-        // Prefer new fields (roll_number, stream, division). Fall back to older student_class or simple login.
-        try {
-            return loginWithNewFields(username, password);
-        } catch (SQLException ex) {
+        if (RemoteBackend.isEnabled()) {
             try {
-                return loginWithStudentClass(username, password);
-            } catch (SQLException ex2) {
-                try {
-                    return loginWithoutStudentClass(username, password);
-                } catch (SQLException ex3) {
-                    throw new InvalidLoginException("Database error during login: " + ex3.getMessage());
-                }
+                Map<String, Object> reply = ApiCodec.map(RemoteBackend.call("users/login", "username", username, "password", password));
+                User u = ApiCodec.toUser(reply.get("user"));
+                RemoteBackend.signIn(ApiCodec.str(reply, "token"), u.getId());
+                return u;
+            } catch (SQLException ex) {
+                throw new InvalidLoginException(ex.getMessage());
             }
         }
-    }
-
-    private User loginWithStudentClass(String username, String password) throws SQLException {
-        String sql = "SELECT id, username, password, full_name, role, student_class FROM users WHERE username = ? AND password = ?";
-        try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, password);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    User u = new User();
-                    u.setId(rs.getInt("id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setPassword(rs.getString("password"));
-                    u.setFullName(rs.getString("full_name"));
-                    u.setRole(rs.getString("role"));
-                    u.setStudentClass(rs.getString("student_class"));
-                    return u;
-                } else {
-                    throw new SQLException("Invalid username or password.");
+        try {
+            User u = null;
+            String stored = null;
+            try (Connection c = DatabaseConnection.getConnection();
+                 PreparedStatement ps = c.prepareStatement(LOGIN)) {
+                ps.setString(1, username);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        // login rows also carry the password, so the student columns start at 6
+                        u = new User();
+                        u.setId(rs.getInt(1));
+                        u.setUsername(rs.getString(2));
+                        stored = rs.getString(3);
+                        u.setFullName(rs.getString(4));
+                        u.setRole(rs.getString(5));
+                        mapStudentColumns(rs, 6, u);
+                    }
                 }
             }
+            PasswordHasher hasher = PasswordHasher.DEFAULT;
+            // unknown users are checked too, so they take as long as a wrong password
+            if (!hasher.verify(password, stored) || u == null) {
+                throw new InvalidLoginException("Invalid username or password.");
+            }
+            if (hasher.needsRehash(stored)) rehash(u.getId(), stored, hasher.hash(password));
+            return u;
+        } catch (RejectedExecutionException ex) {
+            throw new InvalidLoginException("Too many logins at once. Please try again in a moment.");
+        } catch (SQLException ex) {
+            throw new InvalidLoginException("Database error during login: " + ex.getMessage());
         }
     }
 
-    private User loginWithNewFields(String username, String password) throws SQLException {
-        String sql = "SELECT id, username, password, full_name, role, roll_number, stream, division FROM users WHERE username = ? AND password = ?";
+    // best effort: the login has succeeded either way, and the next one tries again
+    private static void rehash(int id, String oldStored, String newStored) {
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, password);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    User u = new User();
-                    u.setId(rs.getInt("id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setPassword(rs.getString("password"));
-                    u.setFullName(rs.getString("full_name"));
-                    u.setRole(rs.getString("role"));
-                    u.setRollNumber(rs.getString("roll_number"));
-                    u.setStream(rs.getString("stream"));
-                    u.setDivision(rs.getString("division"));
-                    // keep legacy field in sync
-                    u.setStudentClass(rs.getString("division"));
-                    return u;
-                } else {
-                    throw new SQLException("Invalid username or password.");
-                }
-            }
+             PreparedStatement ps = c.prepareStatement(REHASH)) {
+            ps.setString(1, newStored);
+            ps.setInt(2, id);
+            ps.setString(3, oldStored);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            LOG.warning("Could not rehash password of user " + id + ": " + ex.getMessage());
         }
     }
 
-    private User loginWithoutStudentClass(String username, String password) throws SQLException {
-        String sql = "SELECT id, username, password, full_name, role FROM users WHERE username = ? AND password = ?";
+    // CRUD: Add user (teacher or student); the password is stored hashed
+    public int addUser(User user) throws SQLException {
+        if (RemoteBackend.isEnabled()) return ApiCodec.toInt(RemoteBackend.call("users/add", "user", ApiCodec.user(user, true)));
+        String hash;
+        try {
+            hash = PasswordHasher.DEFAULT.hash(user.getPassword());
+        } catch (RejectedExecutionException ex) {
+            throw new SQLTransientException("Too many password operations at once. Please try again in a moment.", ex);
+        } catch (RuntimeException ex) {
+            throw new SQLException("Could not hash the password: " + ex.getMessage(), ex);
+        }
         try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, password);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    User u = new User();
-                    u.setId(rs.getInt("id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setPassword(rs.getString("password"));
-                    u.setFullName(rs.getString("full_name"));
-                    u.setRole(rs.getString("role"));
-                    return u;
-                } else {
-                    throw new SQLException("Invalid username or password.");
+             PreparedStatement ps = c.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(ps, user, hash);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    int id = keys.getInt(1);
+                    USER_BY_ID.invalidate(id);
+                    return id;
                 }
             }
         }
+        return -1;
     }
 
-    // CRUD: Add user (teacher or student)
-    public int addUser(User user) throws SQLException {
-        // try to insert with new fields (roll_number, stream, division); fall back to older columns
+    /**
+     * Insert users as one batch in one transaction (a single multi-row INSERT, see
+     * rewriteBatchedStatements). All or nothing: if any row fails, none is inserted.
+     * The passwords are hashed on the hashing pool before a connection is taken, a few at a
+     * time (PasswordHasher.hashAll), so a large batch leaves room for logins; a hashing
+     * failure is reported as an SQLException like any other failed insert.
+     */
+    public void addUsers(List<User> users) throws SQLException {
+        if (users.isEmpty()) return;
+        List<String> passwords = new ArrayList<>(users.size());
+        for (User u : users) passwords.add(u.getPassword());
+        List<String> hashes;
         try {
-            String sql = "INSERT INTO users (username, password, full_name, role, roll_number, stream, division) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setString(1, user.getUsername());
-                ps.setString(2, user.getPassword());
-                ps.setString(3, user.getFullName());
-                ps.setString(4, user.getRole());
-                ps.setString(5, user.getRollNumber());
-                ps.setString(6, user.getStream());
-                ps.setString(7, user.getDivision());
-                ps.executeUpdate();
-                try (ResultSet keys = ps.getGeneratedKeys()) {
-                    if (keys.next()) return keys.getInt(1);
+            hashes = PasswordHasher.DEFAULT.hashAll(passwords);
+        } catch (RuntimeException ex) {
+            throw new SQLException("Could not hash passwords: " + ex.getMessage(), ex);
+        }
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                for (int i = 0; i < users.size(); i++) {
+                    bindInsert(ps, users.get(i), hashes.get(i));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
             }
-        } catch (SQLException ex) {
-            // fallback: try legacy student_class column insert
-            try {
-                String sql = "INSERT INTO users (username, password, full_name, role, student_class) VALUES (?, ?, ?, ?, ?)";
-                try (Connection c = DatabaseConnection.getConnection();
-                     PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    ps.setString(1, user.getUsername());
-                    ps.setString(2, user.getPassword());
-                    ps.setString(3, user.getFullName());
-                    ps.setString(4, user.getRole());
-                    ps.setString(5, user.getStudentClass());
-                    ps.executeUpdate();
-                    try (ResultSet keys = ps.getGeneratedKeys()) {
-                        if (keys.next()) return keys.getInt(1);
-                    }
-                }
-            } catch (SQLException ex2) {
-                // final fallback: minimal insert
-                String sql = "INSERT INTO users (username, password, full_name, role) VALUES (?, ?, ?, ?)";
-                try (Connection c = DatabaseConnection.getConnection();
-                     PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    ps.setString(1, user.getUsername());
-                    ps.setString(2, user.getPassword());
-                    ps.setString(3, user.getFullName());
-                    ps.setString(4, user.getRole());
-                    ps.executeUpdate();
-                    try (ResultSet keys = ps.getGeneratedKeys()) {
-                        if (keys.next()) return keys.getInt(1);
-                    }
-                }
+        }
+    }
+
+    /** The ones among the given usernames that are already taken. */
+    public Set<String> findExistingUsernames(Collection<String> usernames) throws SQLException {
+        Set<String> taken = new HashSet<>();
+        if (usernames.isEmpty()) return taken;
+        if (RemoteBackend.isEnabled()) {
+            taken.addAll(ApiCodec.toList(RemoteBackend.call("users/existing", "usernames", usernames), String::valueOf));
+            return taken;
+        }
+        StringBuilder sql = new StringBuilder("SELECT username FROM users WHERE username IN (");
+        for (int i = 0; i < usernames.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql.append(')').toString())) {
+            int p = 1;
+            for (String name : usernames) ps.setString(p++, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) taken.add(rs.getString(1));
             }
         }
-        return -1;
+        return taken;
+    }
+
+    private static void bindInsert(PreparedStatement ps, User user, String passwordHash) throws SQLException {
+        ps.setString(1, user.getUsername());
+        ps.setString(2, passwordHash);
+        ps.setString(3, user.getFullName());
+        ps.setString(4, user.getRole());
+        ps.setString(5, user.getRollNumber());
+        ps.setString(6, user.getStream());
+        ps.setString(7, user.getDivision());
     }
 
     public List<User> listUsers() throws SQLException {
         List<User> list = new ArrayList<>();
-        // try select with new student fields
-        try {
-            String sql = "SELECT id, username, full_name, role, roll_number, stream, division FROM users";
-            try (Connection c = DatabaseConnection.getConnection();
-                 Statement s = c.createStatement();
-                 ResultSet rs = s.executeQuery(sql)) {
-                while (rs.next()) {
-                    User u = new User();
-                    u.setId(rs.getInt("id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setFullName(rs.getString("full_name"));
-                    u.setRole(rs.getString("role"));
-                    u.setRollNumber(rs.getString("roll_number"));
-                    u.setStream(rs.getString("stream"));
-                    u.setDivision(rs.getString("division"));
-                    u.setStudentClass(rs.getString("division"));
-                    list.add(u);
-                }
-            }
-        } catch (SQLException ex) {
-            // fallback to legacy
-            String sql = "SELECT id, username, full_name, role, student_class FROM users";
-            try (Connection c = DatabaseConnection.getConnection();
-                 Statement s = c.createStatement();
-                 ResultSet rs = s.executeQuery(sql)) {
-                while (rs.next()) {
-                    User u = new User();
-                    u.setId(rs.getInt("id"));
-                    u.setUsername(rs.getString("username"));
-                    u.setFullName(rs.getString("full_name"));
-                    u.setRole(rs.getString("role"));
-                    u.setStudentClass(rs.getString("student_class"));
-                    list.add(u);
-                }
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(LIST);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(mapUser(rs));
             }
         }
         return list;
     }
 
     public User getById(int id) throws SQLException {
-        // try with new fields
-        try {
-            String sql = "SELECT id, username, full_name, role, roll_number, stream, division FROM users WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        User u = new User();
-                        u.setId(rs.getInt("id"));
-                        u.setUsername(rs.getString("username"));
-                        u.setFullName(rs.getString("full_name"));
-                        u.setRole(rs.getString("role"));
-                        u.setRollNumber(rs.getString("roll_number"));
-                        u.setStream(rs.getString("stream"));
-                        u.setDivision(rs.getString("division"));
-                        u.setStudentClass(rs.getString("division"));
-                        return u;
-                    }
-                }
-            }
-        } catch (SQLException ex) {
-            String sql = "SELECT id, username, full_name, role, student_class FROM users WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        User u = new User();
-                        u.setId(rs.getInt("id"));
-                        u.setUsername(rs.getString("username"));
-                        u.setFullName(rs.getString("full_name"));
-                        u.setRole(rs.getString("role"));
-                        u.setStudentClass(rs.getString("student_class"));
-                        return u;
-                    }
-                }
+        User u = USER_BY_ID.get(id, () -> loadById(id));
+        return u != null ? new User(u) : null;
+    }
+
+    private User loadById(int id) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(BY_ID)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return mapUser(rs);
             }
         }
         return null;
     }
 
+    /** Update the profile; a non-null password is hashed and replaces the stored one. */
     public boolean updateUser(User user) throws SQLException {
-        // try update with new fields
-        try {
-            String sql = "UPDATE users SET password = ?, full_name = ?, role = ?, roll_number = ?, stream = ?, division = ? WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, user.getPassword());
-                ps.setString(2, user.getFullName());
-                ps.setString(3, user.getRole());
-                ps.setString(4, user.getRollNumber());
-                ps.setString(5, user.getStream());
-                ps.setString(6, user.getDivision());
-                ps.setInt(7, user.getId());
-                return ps.executeUpdate() > 0;
-            }
-        } catch (SQLException ex) {
-            // fallback to legacy update
-            String sql = "UPDATE users SET password = ?, full_name = ?, role = ?, student_class = ? WHERE id = ?";
-            try (Connection c = DatabaseConnection.getConnection();
-                 PreparedStatement ps = c.prepareStatement(sql)) {
-                ps.setString(1, user.getPassword());
-                ps.setString(2, user.getFullName());
-                ps.setString(3, user.getRole());
-                ps.setString(4, user.getStudentClass());
-                ps.setInt(5, user.getId());
-                return ps.executeUpdate() > 0;
-            }
+        String hash = user.getPassword() != null ? PasswordHasher.DEFAULT.hash(user.getPassword()) : null;
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement(UPDATE)) {
+            ps.setString(1, hash);
+            ps.setString(2, user.getFullName());
+            ps.setString(3, user.getRole());
+            ps.setString(4, user.getRollNumber());
+            ps.setString(5, user.getStream());
+            ps.setString(6, user.getDivision());
+            ps.setInt(7, user.getId());
+            boolean updated = ps.executeUpdate() > 0;
+            USER_BY_ID.invalidate(user.getId());
+            return updated;
         }
     }
 
+    // the user's results (and a teacher's quizzes) go with it, so the score aggregates are redone in the same transaction
     public boolean deleteUser(int id) throws SQLException {
         String sql = "DELETE FROM users WHERE id = ?";
-        try (Connection c = DatabaseConnection.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+        try (Connection c = DatabaseConnection.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                StatsDAO.Affected affected = StatsDAO.affectedByUserDelete(c, id);
+                ps.setInt(1, id);
+                boolean deleted = ps.executeUpdate() > 0;
+                StatsDAO.refresh(c, affected);
+                c.commit();
+                USER_BY_ID.invalidate(id);
+                return deleted;
+            } catch (SQLException ex) {
+                c.rollback();
+                throw ex;
+            }
         }
     }
+
+    // Map a profile row (id, username, full_name, role, roll_number, stream, division)
+    private static User mapUser(ResultSet rs) throws SQLException {
+        User u = new User();
+        u.setId(rs.getInt(1));
+        u.setUsername(rs.getString(2));
+        u.setFullName(rs.getString(3));
+        u.setRole(rs.getString(4));
+        mapStudentColumns(rs, 5, u);
+        return u;
+    }
+
+    private static void mapStudentColumns(ResultSet rs, int first, User u) throws SQLException {
+        u.setRollNumber(rs.getString(first));
+        u.setStream(rs.getString(first + 1));
+        u.setDivision(rs.getString(first + 2));
+        // keep legacy field in sync
+        u.setStudentClass(rs.getString(first + 2));
+    }
 }
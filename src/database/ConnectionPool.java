@@ -0,0 +1,425 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small bounded JDBC connection pool.
+ * Connections handed out are proxies: calling close() returns the physical
+ * connection to the pool instead of closing it, so DAO code using
+ * try-with-resources keeps working unchanged.
+ */
+public class ConnectionPool {
+
+    // upper bounds (ms) of the borrow wait time histogram buckets; last bucket is "slower than that"
+    static final long[] WAIT_BUCKETS_MS = {1, 5, 10, 50, 100, 500, 1000};
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long validationIdleMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private int total = 0;
+    private int waiters = 0;
+    private boolean closed = false;
+
+    // metrics (guarded by lock)
+    private long borrowCount = 0;
+    private long timeoutCount = 0;
+    private long createdCount = 0;
+    private long evictedCount = 0;
+    private long totalWaitNanos = 0;
+    private final long[] waitHistogram = new long[WAIT_BUCKETS_MS.length + 1];
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long borrowTimeoutMs,
+                          long idleTimeoutMs, long validationIdleMs) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validationIdleMs = validationIdleMs;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        evictor.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the configured borrow timeout when the pool is exhausted.
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+        while (true) {
+            PooledConnection pc = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) throw new SQLException("Connection pool is closed.");
+                    if (!idle.isEmpty()) {
+                        // LIFO keeps the most recently used (warmest) connections busy
+                        pc = idle.pollFirst();
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount++;
+                        throw new SQLTimeoutException("Timed out after " + borrowTimeoutMs
+                                + " ms waiting for a database connection (pool size " + maxSize + ").");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", ie);
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    pc = new PooledConnection(DriverManager.getConnection(url, user, password));
+                } catch (SQLException ex) {
+                    discard(null);
+                    throw ex;
+                }
+                lock.lock();
+                try { createdCount++; } finally { lock.unlock(); }
+            } else if (!validate(pc)) {
+                discard(pc);
+                continue;
+            }
+            recordBorrow(System.nanoTime() - start);
+            return pc.checkout();
+        }
+    }
+
+    private boolean validate(PooledConnection pc) {
+        // skip the round trip for connections that were returned very recently
+        if (System.currentTimeMillis() - pc.lastUsed < validationIdleMs) return true;
+        try {
+            return !pc.physical.isClosed() && pc.physical.isValid(2);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void recordBorrow(long waitNanos) {
+        long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        int bucket = 0;
+        while (bucket < WAIT_BUCKETS_MS.length && waitMs >= WAIT_BUCKETS_MS[bucket]) bucket++;
+        lock.lock();
+        try {
+            borrowCount++;
+            totalWaitNanos += waitNanos;
+            waitHistogram[bucket]++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean healthy;
+        try {
+            if (pc.physical.isClosed()) {
+                healthy = false;
+            } else {
+                // hand the next borrower a connection in its default state
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                pc.physical.clearWarnings();
+                healthy = true;
+            }
+        } catch (SQLException ex) {
+            healthy = false;
+        }
+        if (!healthy) {
+            discard(pc);
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+                closeQuietly(pc.physical);
+                return;
+            }
+            pc.lastUsed = System.currentTimeMillis();
+            idle.addFirst(pc);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        if (pc != null) closeQuietly(pc.physical);
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Periodic task: close connections idle for longer than the idle timeout (never going below
+     * the minimum size) and top the pool back up to the minimum.
+     */
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        ArrayDeque<PooledConnection> evicted = new ArrayDeque<>();
+        int missing;
+        lock.lock();
+        try {
+            if (closed) return;
+            // oldest idle connections sit at the tail
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total > minSize) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsed < idleTimeoutMs) break;
+                it.remove();
+                total--;
+                evictedCount++;
+                evicted.add(pc);
+            }
+            missing = minSize - total;
+            total += Math.max(0, missing);
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pc : evicted) closeQuietly(pc.physical);
+        for (int i = 0; i < missing; i++) {
+            try {
+                PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, user, password));
+                lock.lock();
+                try { createdCount++; } finally { lock.unlock(); }
+                release(pc);
+            } catch (SQLException ex) {
+                discard(null);
+            }
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            long avgWait = borrowCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos / borrowCount);
+            return new Stats(total - idle.size(), idle.size(), waiters, total, maxSize,
+                    borrowCount, timeoutCount, createdCount, evictedCount, avgWait, waitHistogram.clone());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        evictor.shutdownNow();
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledConnection pc : idle) {
+                closeQuietly(pc.physical);
+                total--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+            // nothing useful to do while discarding
+        }
+    }
+
+    /** The physical connection behind a connection borrowed from a pool (for QueryStats); null for any other. */
+    static Connection physicalOf(Connection borrowed) {
+        if (!Proxy.isProxyClass(borrowed.getClass())) return null;
+        InvocationHandler h = Proxy.getInvocationHandler(borrowed);
+        return h instanceof Handle ? ((Handle) h).pc.physical : null;
+    }
+
+    /** Physical connection plus pool bookkeeping. */
+    private class PooledConnection {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection checkout() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection; becomes unusable once closed. The physical
+     * connection is never handed out, not even through unwrap(), so it cannot be closed or
+     * left in a changed state behind the pool's back.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        // read by other threads closing or checking the proxy
+        private volatile boolean returned = false;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    release(pc);
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    throw new SQLException("A pooled connection cannot be unwrapped to " + ((Class<?>) args[0]).getName() + ".");
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "toString":
+                    return "PooledConnection[" + pc.physical + (returned ? ", returned]" : "]");
+                default:
+                    if (returned) throw new SQLException("Connection has already been returned to the pool.");
+                    try {
+                        return method.invoke(pc.physical, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+            }
+        }
+    }
+
+    /** Point-in-time snapshot of pool metrics. */
+    public static class Stats {
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final int total;
+        private final int maxSize;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long evictedCount;
+        private final long avgWaitMicros;
+        private final long[] waitHistogram;
+
+        Stats(int active, int idle, int waiters, int total, int maxSize, long borrowCount, long timeoutCount,
+              long createdCount, long evictedCount, long avgWaitMicros, long[] waitHistogram) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.total = total;
+            this.maxSize = maxSize;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.evictedCount = evictedCount;
+            this.avgWaitMicros = avgWaitMicros;
+            this.waitHistogram = waitHistogram;
+        }
+
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getWaiters() { return waiters; }
+        public int getTotal() { return total; }
+        public int getMaxSize() { return maxSize; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getEvictedCount() { return evictedCount; }
+        public long getAvgWaitMicros() { return avgWaitMicros; }
+
+        /** Borrow counts per wait-time bucket; see {@link #getWaitBucketLabels()}. */
+        public long[] getWaitHistogram() { return waitHistogram.clone(); }
+
+        public static String[] getWaitBucketLabels() {
+            String[] labels = new String[WAIT_BUCKETS_MS.length + 1];
+            for (int i = 0; i < WAIT_BUCKETS_MS.length; i++) labels[i] = "<" + WAIT_BUCKETS_MS[i] + "ms";
+            labels[WAIT_BUCKETS_MS.length] = ">=" + WAIT_BUCKETS_MS[WAIT_BUCKETS_MS.length - 1] + "ms";
+            return labels;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("active=").append(active)
+              .append(" idle=").append(idle)
+              .append(" waiters=").append(waiters)
+              .append(" total=").append(total).append('/').append(maxSize)
+              .append(" borrows=").append(borrowCount)
+              .append(" timeouts=").append(timeoutCount)
+              .append(" created=").append(createdCount)
+              .append(" evicted=").append(evictedCount)
+              .append(" avgWait=").append(avgWaitMicros).append("us wait=[");
+            String[] labels = getWaitBucketLabels();
+            for (int i = 0; i < waitHistogram.length; i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(labels[i]).append(':').append(waitHistogram[i]);
+            }
+            return sb.append(']').toString();
+        }
+    }
+}
@@ -1,14 +1,29 @@
 package database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
-    // Update these to match your environment
-    private static final String URL = "jdbc:mysql://localhost:3306/quizdb?serverTimezone=UTC";
-    private static final String USER = "root";
-    private static final String PASSWORD = "2310";
+    // Update these to match your environment, or override them with -Dquiz.db.url/user/password
+    // cachePrepStmts/useServerPrepStmts keep each pooled connection's prepared statements parsed server-side;
+    // rewriteBatchedStatements turns JDBC batches into multi-row INSERTs
+    private static final String URL = System.getProperty("quiz.db.url", "jdbc:mysql://localhost:3306/quizdb?serverTimezone=UTC"
+            + "&cachePrepStmts=true&useServerPrepStmts=true&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048"
+            + "&rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("quiz.db.user", "root");
+    private static final String PASSWORD = System.getProperty("quiz.db.password", "2310");
+
+    // Clients of a quiz server (see dao.RemoteBackend) have no database access of their own
+    private static final String REMOTE_BACKEND = System.getProperty("quiz.backend", "").trim();
+
+    // Connection pool settings; a quiz server serving many clients can raise the maximum
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = Integer.getInteger("quiz.db.poolSize", 20);
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+    private static final long IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final long VALIDATION_IDLE_MS = 1_000; // connections idle longer than this are pinged on borrow
+
+    private static volatile ConnectionPool pool;
 
     static {
         try {
@@ -18,7 +33,55 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Borrow a pooled connection. Closing it returns it to the pool. With query statistics
+     * on, the borrow is attributed to the calling method (see QueryStats).
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        if (!REMOTE_BACKEND.isEmpty()) {
+            throw new SQLException("Not available through the quiz server at " + REMOTE_BACKEND + "; this needs a direct database connection.");
+        }
+        if (!QueryStats.ENABLED) return getPool().getConnection();
+        String caller = QueryStats.caller();
+        long start = System.nanoTime();
+        Connection c;
+        try {
+            c = getPool().getConnection();
+        } catch (SQLException ex) {
+            QueryStats.failedBorrow(caller);
+            throw ex;
+        }
+        return QueryStats.track(c, caller, System.nanoTime() - start);
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /** Close all idle connections; call on application exit. */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    String url = QueryStats.ENABLED
+                            ? URL + (URL.contains("?") ? "&" : "?") + "queryInterceptors=" + QueryTimingInterceptor.class.getName()
+                            : URL;
+                    p = new ConnectionPool(url, USER, PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                            BORROW_TIMEOUT_MS, IDLE_TIMEOUT_MS, VALIDATION_IDLE_MS);
+                    pool = p;
+                    QueryStats.startDumping();
+                }
+            }
+        }
+        return p;
     }
 }
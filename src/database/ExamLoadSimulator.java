@@ -0,0 +1,294 @@
+package database;
+
+import dao.AttemptDAO;
+import dao.AttemptSessionService;
+import dao.QuestionDAO;
+import dao.QuizDAO;
+import dao.SubmissionQueue;
+import dao.UserDAO;
+import models.AnswerSheet;
+import models.Attempt;
+import models.Question;
+import models.Quiz;
+import models.Result;
+import models.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How many students can sit an exam at once: simulates a class taking one quiz, each student
+ * on its own thread going through what the desktop client does, with the same DAO calls.
+ * A student logs in, lists its assigned quizzes, draws its questions, starts an attempt,
+ * answers (the journal's answer sync), and submits through the SubmissionQueue, pausing a
+ * think time between steps. Students start spread over the ramp time.
+ *
+ * A teacher, the quiz and the students (load&lt;time&gt;_s&lt;n&gt;) are created first, and deleted
+ * with their results afterwards unless --keep is given. Reports per operation the throughput
+ * over the whole run and the p50/p95/p99/max latency, then the connection pool's state.
+ *
+ * Usage: java -cp ... database.ExamLoadSimulator [students] [--think=ms] [--ramp=seconds] [--questions=n] [--keep]
+ */
+public class ExamLoadSimulator {
+
+    private static final String[] OPERATIONS = {"login", "listAssigned", "drawQuestions", "startAttempt", "saveAnswers", "submit"};
+    private static final String STREAM = StudentImport.STREAMS.get(0);
+    private static final String DIVISION = "A";
+    private static final int PAGE_SIZE = 20;
+
+    private final int students;
+    private final long thinkMs;
+    private final long rampMs;
+    private final int questions;
+    private final String prefix = "load" + System.currentTimeMillis() + "_";
+    private final Map<String, Samples> samples = new LinkedHashMap<>();
+
+    private ExamLoadSimulator(int students, long thinkMs, long rampMs, int questions) {
+        this.students = students;
+        this.thinkMs = thinkMs;
+        this.rampMs = rampMs;
+        this.questions = questions;
+        for (String op : OPERATIONS) samples.put(op, new Samples());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int students = 100;
+        long thinkMs = 2_000;
+        long rampSeconds = 10;
+        int questions = 20;
+        boolean keep = false;
+        for (String arg : args) {
+            if (arg.startsWith("--think=")) thinkMs = Long.parseLong(arg.substring("--think=".length()));
+            else if (arg.startsWith("--ramp=")) rampSeconds = Long.parseLong(arg.substring("--ramp=".length()));
+            else if (arg.startsWith("--questions=")) questions = Integer.parseInt(arg.substring("--questions=".length()));
+            else if (arg.equals("--keep")) keep = true;
+            else students = Integer.parseInt(arg);
+        }
+        ExamLoadSimulator sim = new ExamLoadSimulator(students, thinkMs, rampSeconds * 1000, questions);
+        try {
+            MigrationRunner.migrate();
+            Quiz quiz = sim.setUp();
+            try {
+                sim.run(quiz);
+            } finally {
+                if (!keep) sim.tearDown(quiz);
+            }
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    /** The exam: a teacher, a quiz for STREAM/DIVISION and the students, all named with the run's prefix. */
+    private Quiz setUp() throws Exception {
+        long start = System.nanoTime();
+        UserDAO userDAO = new UserDAO();
+        List<User> users = new ArrayList<>(students + 1);
+        User teacher = new User(0, prefix + "teacher", "pass", "Load Test Teacher", "TEACHER");
+        users.add(teacher);
+        for (int i = 0; i < students; i++) {
+            User u = new User(0, prefix + "s" + i, password(i), "Load Student " + i, "STUDENT");
+            u.setRollNumber(String.valueOf(900000 + i));
+            u.setStream(STREAM);
+            u.setDivision(DIVISION);
+            users.add(u);
+        }
+        userDAO.addUsers(users);
+        int teacherId = userDAO.login(teacher.getUsername(), "pass").getId();
+
+        Quiz quiz = new Quiz(0, prefix + "exam", "Load test exam", teacherId);
+        quiz.setCourseName("Load test");
+        quiz.setTargetStream(STREAM);
+        quiz.setTargetDivisions(DIVISION);
+        List<Question> list = new ArrayList<>(questions);
+        for (int i = 0; i < questions; i++) {
+            list.add(new Question(0, 0, "Question " + (i + 1) + "?", "one", "two", "three", "four", "ABCD".charAt(i % 4)));
+        }
+        new QuizDAO().saveQuizWithQuestions(quiz, list);
+        System.out.println(String.format(Locale.ROOT, "ExamLoadSimulator: created %d students and quiz %d (%d questions) in %d ms",
+                students, quiz.getId(), questions, (System.nanoTime() - start) / 1_000_000));
+        return quiz;
+    }
+
+    private void run(Quiz quiz) throws InterruptedException {
+        QueryStats.reset(); // leave the setup out of the per-method figures
+        System.out.println(String.format(Locale.ROOT, "ExamLoadSimulator: %d students, think %d ms, ramp %d s",
+                students, thinkMs, rampMs / 1000));
+        CountDownLatch done = new CountDownLatch(students);
+        AtomicInteger finished = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < students; i++) {
+            int n = i;
+            Thread t = new Thread(() -> {
+                try {
+                    if (student(n, quiz)) finished.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }, "student-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report(seconds, finished.get());
+    }
+
+    /** One student's exam; false if a step failed (the failure is counted and the student stops). */
+    private boolean student(int n, Quiz quiz) {
+        sleep(students > 1 ? rampMs * n / (students - 1) : 0);
+        try {
+            User user = time("login", () -> new UserDAO().login(prefix + "s" + n, password(n)));
+            think();
+            List<Quiz> assigned = time("listAssigned", () -> new QuizDAO().listAssignedQuizzes(user.getStream(), user.getDivision(), 0, PAGE_SIZE));
+            Quiz mine = null;
+            for (Quiz q : assigned) {
+                if (q.getId() == quiz.getId()) mine = q;
+            }
+            if (mine == null) throw new IllegalStateException("quiz " + quiz.getId() + " not among the assigned quizzes");
+            Quiz exam = mine;
+            think();
+            List<Question> paper = time("drawQuestions", () -> new QuestionDAO().drawQuestions(exam, user.getId()));
+            AttemptDAO attemptDAO = new AttemptDAO();
+            Attempt attempt = time("startAttempt", () -> {
+                Attempt a = attemptDAO.openAttempt(user.getId(), exam.getId());
+                attemptDAO.secondsRemaining(a.getId());
+                return a;
+            });
+
+            AnswerSheet sheet = new AnswerSheet(paper.size());
+            List<AttemptDAO.AnswerChange> changes = new ArrayList<>(paper.size());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long seq = 0;
+            for (Question q : paper) {
+                byte choice = AnswerSheet.choiceOf("ABCD".charAt(random.nextInt(4)));
+                sheet.add(q.getId(), choice);
+                changes.add(new AttemptDAO.AnswerChange(attempt.getId(), q.getId(), choice, ++seq));
+            }
+            think();
+            time("saveAnswers", () -> {
+                attemptDAO.saveAnswers(changes);
+                return null;
+            });
+            think();
+            Result r = AttemptSessionService.grade(user.getId(), exam.getId(), paper, sheet);
+            r.setAttemptNo(attempt.getAttemptNo());
+            time("submit", () -> SubmissionQueue.submit(attempt.getId(), r).join());
+            return true;
+        } catch (Exception ex) {
+            System.err.println("ExamLoadSimulator: student " + n + " failed: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private void tearDown(Quiz quiz) {
+        try {
+            new QuizDAO().deleteQuiz(quiz.getId());
+            try (Connection c = DatabaseConnection.getConnection();
+                 PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE username LIKE ?")) {
+                ps.setString(1, prefix + "%");
+                ps.executeUpdate();
+            }
+        } catch (SQLException ex) {
+            System.err.println("ExamLoadSimulator: cleanup failed, remove users " + prefix + "* by hand: " + ex.getMessage());
+        }
+    }
+
+    private void report(double seconds, int finished) {
+        System.out.println(String.format(Locale.ROOT, "ExamLoadSimulator: %d of %d students finished in %.1f s",
+                finished, students, seconds));
+        System.out.println(String.format(Locale.ROOT, "%-14s %7s %6s %9s %9s %9s %9s %9s",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Samples> e : samples.entrySet()) {
+            Samples s = e.getValue();
+            long[] sorted = s.sorted();
+            System.out.println(String.format(Locale.ROOT, "%-14s %7d %6d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                    e.getKey(), sorted.length, s.errorCount(), sorted.length / seconds,
+                    millis(percentile(sorted, 50)), millis(percentile(sorted, 95)), millis(percentile(sorted, 99)),
+                    millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+        }
+        System.out.println("ExamLoadSimulator: pool " + DatabaseConnection.getPoolStats());
+        if (QueryStats.isEnabled()) System.out.print("ExamLoadSimulator: database time per DAO method\n" + QueryStats.dump());
+    }
+
+    interface Step<T> {
+        T run() throws Exception;
+    }
+
+    private <T> T time(String op, Step<T> step) throws Exception {
+        Samples s = samples.get(op);
+        long start = System.nanoTime();
+        try {
+            T value = step.run();
+            s.add(System.nanoTime() - start);
+            return value;
+        } catch (Exception ex) {
+            s.error();
+            throw ex;
+        }
+    }
+
+    // uniform in [think/2, 3*think/2], so the students drift apart instead of moving in lockstep
+    private void think() {
+        if (thinkMs > 0) sleep(thinkMs / 2 + ThreadLocalRandom.current().nextLong(thinkMs + 1));
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String password(int n) {
+        return "pass" + n;
+    }
+
+    // nearest rank
+    static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** Latencies of one operation, in nanoseconds; every sample is kept, so percentiles are exact. */
+    private static final class Samples {
+        private long[] values = new long[256];
+        private int size;
+        private int errors;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        synchronized void error() {
+            errors++;
+        }
+
+        synchronized int errorCount() {
+            return errors;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package database;
+
+import dao.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Logins per second at each hashing cost, for a class of students logging in at once: every
+ * student's password check is submitted together and the run ends when the last one is done.
+ * The first round is the full PBKDF2 check; the second, with the same passwords, is the fast
+ * path of a repeat login. Only the password check is measured (it dominates a login); no
+ * database is needed.
+ *
+ * Usage: java -cp ... database.LoginBenchmark [students] [iterations...]
+ */
+public class LoginBenchmark {
+
+    private static final int[] COSTS = {10_000, 50_000, 100_000, PasswordHasher.DEFAULT_ITERATIONS, 600_000};
+
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int[] costs = COSTS;
+        if (args.length > 1) {
+            costs = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) costs[i - 1] = Integer.parseInt(args[i]);
+        }
+        // warm up the JIT on the cheapest cost
+        run(new PasswordHasher(10_000), Math.min(students, 50));
+        for (int cost : costs) {
+            double[] rates = run(new PasswordHasher(cost), students);
+            System.out.println(String.format(Locale.ROOT,
+                    "LoginBenchmark: %,d iterations: %.1f logins/s first login, %.0f logins/s repeat login",
+                    cost, rates[0], rates[1]));
+        }
+    }
+
+    // {first-login rate, repeat-login rate}
+    private static double[] run(PasswordHasher hasher, int students) {
+        List<String> passwords = new ArrayList<>(students);
+        List<String> stored = new ArrayList<>(students);
+        List<CompletableFuture<String>> hashing = new ArrayList<>(students);
+        for (int i = 0; i < students; i++) {
+            passwords.add("pass" + i + "-" + hasher.getIterations());
+            hashing.add(hasher.hashAsync(passwords.get(i)));
+        }
+        for (CompletableFuture<String> f : hashing) stored.add(f.join());
+        return new double[] {loginsPerSecond(hasher, passwords, stored), loginsPerSecond(hasher, passwords, stored)};
+    }
+
+    private static double loginsPerSecond(PasswordHasher hasher, List<String> passwords, List<String> stored) {
+        long start = System.nanoTime();
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>(passwords.size());
+        for (int i = 0; i < passwords.size(); i++) checks.add(hasher.verifyAsync(passwords.get(i), stored.get(i)));
+        for (CompletableFuture<Boolean> f : checks) {
+            if (!f.join()) throw new IllegalStateException("A correct password was rejected.");
+        }
+        return passwords.size() * 1e9 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,238 @@
+package database;
+
+import database.migration.AnswerMigration;
+import database.migration.QuizTargetBackfill;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the quizdb schema up to date: applies the SQL migrations in sql/migrations
+ * (V&lt;version&gt;__&lt;name&gt;.sql, in version order) that the schema_version table does not list
+ * yet, and records each one there once applied. Some versions also run a Java step after
+ * their SQL to convert existing data; those steps live in database.migration and use plain
+ * JDBC only, never the DAOs, so that a migration keeps doing what it did when it was written. The DAOs assume the latest schema, so this runs at
+ * startup before anything else touches the database.
+ *
+ * MySQL commits DDL immediately, so a migration cannot be rolled back; instead every
+ * migration can be run again on a schema that already has some of its objects. A table,
+ * column or index that already exists is skipped with a note, which also lets databases
+ * created before this runner (from create_quizdb.sql or by earlier versions of the
+ * application) be adopted. A named lock keeps two clients starting at once from migrating
+ * concurrently.
+ *
+ * Usage: java -cp ... database.MigrationRunner
+ */
+public class MigrationRunner {
+
+    /** Java code run after a migration's SQL, e.g. to convert existing rows. */
+    interface Step {
+        void apply(Connection c) throws SQLException;
+    }
+
+    private static final Path DIR = Paths.get(System.getProperty("quiz.migrations.dir", "sql/migrations"));
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String LOCK_NAME = "quizdb.migrations";
+    private static final int LOCK_TIMEOUT_SECONDS = 300;
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+            + " version INT PRIMARY KEY,"
+            + " name VARCHAR(100) NOT NULL,"
+            + " checksum BIGINT NOT NULL,"
+            + " applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+            + " execution_ms BIGINT NOT NULL)";
+    private static final String SELECT_APPLIED = "SELECT version, checksum FROM schema_version";
+    private static final String INSERT_APPLIED = "INSERT INTO schema_version (version, name, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+
+    // MySQL errors that mean the object a statement creates is already there
+    private static final int ER_TABLE_EXISTS = 1050;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    private static final Map<Integer, Step> STEPS = new HashMap<>();
+
+    static {
+        STEPS.put(3, QuizTargetBackfill::migrate);
+        STEPS.put(4, AnswerMigration::migrate);
+    }
+
+    private static volatile boolean current = false;
+
+    private MigrationRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        try {
+            migrate();
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    /** Apply every pending migration. Returns at once if this process already did. */
+    public static synchronized void migrate() throws SQLException, IOException {
+        if (current) return;
+        TreeMap<Integer, Path> files = listMigrations();
+        try (Connection c = DatabaseConnection.getConnection()) {
+            lock(c);
+            try {
+                try (Statement st = c.createStatement()) {
+                    st.executeUpdate(CREATE_VERSION_TABLE);
+                }
+                Map<Integer, Long> applied = appliedVersions(c);
+                int count = 0;
+                for (Map.Entry<Integer, Path> e : files.entrySet()) {
+                    int version = e.getKey();
+                    String sql = new String(Files.readAllBytes(e.getValue()), StandardCharsets.UTF_8);
+                    long checksum = checksum(sql);
+                    Long recorded = applied.get(version);
+                    if (recorded != null) {
+                        if (recorded != checksum) {
+                            System.err.println("MigrationRunner: " + e.getValue().getFileName() + " changed after it was applied");
+                        }
+                        continue;
+                    }
+                    apply(c, version, e.getValue(), sql, checksum);
+                    count++;
+                }
+                int latest = files.isEmpty() ? 0 : files.lastKey();
+                System.out.println("MigrationRunner: schema at version " + latest
+                        + (count > 0 ? " (" + count + " migrations applied)" : ""));
+            } finally {
+                unlock(c);
+            }
+        }
+        current = true;
+    }
+
+    private static void apply(Connection c, int version, Path file, String sql, long checksum) throws SQLException {
+        String name = file.getFileName().toString();
+        System.out.println("MigrationRunner: applying " + name);
+        long start = System.nanoTime();
+        try (Statement st = c.createStatement()) {
+            for (String statement : splitStatements(sql)) {
+                try {
+                    st.execute(statement);
+                } catch (SQLException ex) {
+                    if (!alreadyExists(ex)) {
+                        throw new SQLException("Migration " + name + " failed: " + ex.getMessage(), ex.getSQLState(), ex.getErrorCode(), ex);
+                    }
+                    System.out.println("MigrationRunner: " + name + ": " + ex.getMessage() + " (skipped)");
+                }
+            }
+        }
+        Step step = STEPS.get(version);
+        if (step != null) step.apply(c);
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        try (PreparedStatement ps = c.prepareStatement(INSERT_APPLIED)) {
+            ps.setInt(1, version);
+            ps.setString(2, name);
+            ps.setLong(3, checksum);
+            ps.setLong(4, ms);
+            ps.executeUpdate();
+        }
+        System.out.println("MigrationRunner: applied " + name + " in " + ms + " ms");
+    }
+
+    private static boolean alreadyExists(SQLException ex) {
+        int code = ex.getErrorCode();
+        return code == ER_TABLE_EXISTS || code == ER_DUP_FIELDNAME || code == ER_DUP_KEYNAME;
+    }
+
+    private static TreeMap<Integer, Path> listMigrations() throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(DIR, "V*.sql")) {
+            for (Path p : dir) {
+                Matcher m = FILE_NAME.matcher(p.getFileName().toString());
+                if (!m.matches()) {
+                    throw new IOException("Migration file name not of the form V<version>__<name>.sql: " + p);
+                }
+                Path previous = files.put(Integer.parseInt(m.group(1)), p);
+                if (previous != null) throw new IOException("Two migrations with one version: " + previous + ", " + p);
+            }
+        }
+        if (files.isEmpty()) throw new IOException("No migrations found in " + DIR.toAbsolutePath());
+        return files;
+    }
+
+    private static Map<Integer, Long> appliedVersions(Connection c) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(SELECT_APPLIED);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) applied.put(rs.getInt(1), rs.getLong(2));
+        }
+        return applied;
+    }
+
+    private static void lock(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another client to finish migrating the schema.");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection c) {
+        try (PreparedStatement ps = c.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException ex) {
+            System.err.println("MigrationRunner: could not release the migration lock: " + ex.getMessage());
+        }
+    }
+
+    // line endings normalized, so a checkout with CRLF does not look like an edited migration
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /** Split a script on semicolons outside quotes, dropping -- comments and blank statements. */
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                cur.append(ch);
+                if (ch == '\\' && i + 1 < sql.length()) cur.append(sql.charAt(++i));
+                else if (ch == quote) quote = 0;
+            } else if (ch == '\'' || ch == '"' || ch == '`') {
+                quote = ch;
+                cur.append(ch);
+            } else if (ch == '-' && sql.startsWith("-- ", i)) {
+                while (i < sql.length() && sql.charAt(i) != '\n') i++;
+                cur.append('\n');
+            } else if (ch == ';') {
+                if (!cur.toString().isBlank()) statements.add(cur.toString().trim());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        if (!cur.toString().isBlank()) statements.add(cur.toString().trim());
+        return statements;
+    }
+}
@@ -0,0 +1,422 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Where the database time goes, per DAO method. Every connection borrowed through
+ * DatabaseConnection is attributed to the method that borrowed it (found with one stack
+ * walk per borrow) and timed from the borrow to its close: one DAO call. Every statement
+ * run on it is timed by QueryTimingInterceptor, the connector's query interceptor, and
+ * counted with its rows against the same method. The call is looked up by the physical
+ * connection the statement runs on, not by thread, so a connection closed on another thread
+ * or never closed leaves no stale attribution behind. Statements slower than
+ * quiz.stats.slowQueryMs (default 250) are logged with their SQL normalized (literals and
+ * IN lists replaced by ?), and the latest are kept for snapshot().
+ *
+ * Latencies go into histograms of power-of-two microsecond buckets made of LongAdders, so
+ * recording is a few uncontended additions and percentiles are accurate to a factor of
+ * two. On by default; -Dquiz.stats.enabled=false turns it off, leaving no interceptor and
+ * no wrapping. -Dquiz.stats.dumpSeconds=N prints the table every N seconds.
+ */
+public final class QueryStats {
+
+    private static final Logger LOG = Logger.getLogger(QueryStats.class.getName());
+
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("quiz.stats.enabled", "true"));
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("quiz.stats.slowQueryMs", 250));
+    private static final long DUMP_SECONDS = Long.getLong("quiz.stats.dumpSeconds", 0);
+    private static final int SLOW_LOG_SIZE = 100;
+    private static final String UNATTRIBUTED = "(no DAO method)";
+
+    private static final Map<String, MethodStats> METHODS = new ConcurrentHashMap<>();
+    private static final ArrayDeque<SlowQuery> SLOW = new ArrayDeque<>(); // guarded by itself
+    // the call holding each borrowed physical connection
+    private static final Map<Connection, Call> CALLS = new ConcurrentHashMap<>();
+    private static final StackWalker WALKER = StackWalker.getInstance();
+    private static ScheduledExecutorService dumper;
+
+    private static final Pattern SPACE = Pattern.compile("\\s+");
+    private static final Pattern COMMA = Pattern.compile(" ?, ?");
+    private static final Pattern PAREN_SPACE = Pattern.compile("(?<=\\() | (?=\\))");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\(\\?(?:, ?\\?)*\\)");
+    private static final Pattern REPEATED_TUPLES = Pattern.compile("(\\([?, ]+\\))(?:, ?\\1)+");
+
+    private QueryStats() {}
+
+    /** Latency histogram: bucket i counts durations under 2^i microseconds; the last one is open. */
+    static final class Histogram {
+        private static final int BUCKETS = 26; // up to ~33 s
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket].increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Summary summary() {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                n += counts[i];
+            }
+            long max = maxNanos.get();
+            return new Summary(n, n == 0 ? 0 : totalNanos.sum() / 1e6 / n,
+                    percentile(counts, n, 0.50, max), percentile(counts, n, 0.95, max),
+                    percentile(counts, n, 0.99, max), max / 1e6);
+        }
+
+        // upper bound of the bucket holding the rank, capped by the maximum seen
+        private static double percentile(long[] counts, long n, double p, long maxNanos) {
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(i == 0 ? 0.001 : (1L << i) / 1000.0, maxNanos / 1e6);
+            }
+            return maxNanos / 1e6;
+        }
+    }
+
+    /** Count and latencies (ms) of one histogram at one moment. */
+    public static final class Summary {
+        private final long count;
+        private final double meanMs;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double p99Ms;
+        private final double maxMs;
+
+        Summary(long count, double meanMs, double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+            this.count = count;
+            this.meanMs = meanMs;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+        }
+
+        public long getCount() { return count; }
+        public double getMeanMs() { return meanMs; }
+        public double getP50Ms() { return p50Ms; }
+        public double getP95Ms() { return p95Ms; }
+        public double getP99Ms() { return p99Ms; }
+        public double getMaxMs() { return maxMs; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "n=%d mean=%.2fms p50<=%.2fms p95<=%.2fms p99<=%.2fms max=%.2fms",
+                    count, meanMs, p50Ms, p95Ms, p99Ms, maxMs);
+        }
+    }
+
+    private static final class MethodStats {
+        final String name;
+        final Histogram calls = new Histogram();      // borrow to close
+        final Histogram acquire = new Histogram();    // waiting for the pool
+        final Histogram statements = new Histogram(); // each statement run
+        final LongAdder rows = new LongAdder();
+        final LongAdder failedBorrows = new LongAdder();
+
+        MethodStats(String name) {
+            this.name = name;
+        }
+    }
+
+    /** One DAO method's figures at one moment. */
+    public static final class MethodSnapshot {
+        private final String method;
+        private final Summary calls;
+        private final Summary acquire;
+        private final Summary statements;
+        private final long rows;
+        private final long failedBorrows;
+
+        private MethodSnapshot(MethodStats s) {
+            this.method = s.name;
+            this.calls = s.calls.summary();
+            this.acquire = s.acquire.summary();
+            this.statements = s.statements.summary();
+            this.rows = s.rows.sum();
+            this.failedBorrows = s.failedBorrows.sum();
+        }
+
+        public String getMethod() { return method; }
+        /** Connection borrows by the method, timed from borrow to close. */
+        public Summary getCalls() { return calls; }
+        /** Time spent waiting for a pooled connection. */
+        public Summary getAcquire() { return acquire; }
+        public Summary getStatements() { return statements; }
+        /** Rows read plus rows changed by the method's statements. */
+        public long getRows() { return rows; }
+        public long getFailedBorrows() { return failedBorrows; }
+    }
+
+    /** A statement slower than the threshold. */
+    public static final class SlowQuery {
+        private final long at;
+        private final String method;
+        private final double ms;
+        private final long rows;
+        private final String sql;
+
+        private SlowQuery(long at, String method, double ms, long rows, String sql) {
+            this.at = at;
+            this.method = method;
+            this.ms = ms;
+            this.rows = rows;
+            this.sql = sql;
+        }
+
+        /** Epoch millis. */
+        public long getAt() { return at; }
+        public String getMethod() { return method; }
+        public double getMs() { return ms; }
+        public long getRows() { return rows; }
+        public String getSql() { return sql; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.1f ms, %d rows, in %s: %s", ms, rows, method, sql);
+        }
+    }
+
+    // a borrowed connection's owner
+    private static final class Call {
+        final MethodStats method;
+        final long start;
+
+        Call(MethodStats method, long start) {
+            this.method = method;
+            this.start = start;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Per DAO method figures since start (or the last reset), busiest first. */
+    public static List<MethodSnapshot> snapshot() {
+        List<MethodSnapshot> list = new ArrayList<>(METHODS.size());
+        for (MethodStats s : METHODS.values()) list.add(new MethodSnapshot(s));
+        list.sort((a, b) -> Double.compare(b.getStatements().getMeanMs() * b.getStatements().getCount(),
+                a.getStatements().getMeanMs() * a.getStatements().getCount()));
+        return list;
+    }
+
+    /** The latest slow statements, oldest first. */
+    public static List<SlowQuery> slowQueries() {
+        synchronized (SLOW) {
+            return new ArrayList<>(SLOW);
+        }
+    }
+
+    public static void reset() {
+        METHODS.clear();
+        synchronized (SLOW) {
+            SLOW.clear();
+        }
+    }
+
+    /** The snapshot as a table, one line per method. */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-44s %8s %9s %9s %9s %9s %8s %10s %9s%n",
+                "method", "calls", "call p50", "call p95", "call p99", "acquire", "stmts", "stmt total", "rows"));
+        for (MethodSnapshot m : snapshot()) {
+            Summary calls = m.getCalls();
+            Summary stmts = m.getStatements();
+            sb.append(String.format(Locale.ROOT, "%-44s %8d %7.2fms %7.2fms %7.2fms %7.2fms %8d %8.0fms %9d%n",
+                    m.getMethod(), calls.getCount(), calls.getP50Ms(), calls.getP95Ms(), calls.getP99Ms(),
+                    m.getAcquire().getMeanMs(), stmts.getCount(), stmts.getMeanMs() * stmts.getCount(), m.getRows()));
+        }
+        return sb.toString();
+    }
+
+    /** Print dump() every DUMP_SECONDS if quiz.stats.dumpSeconds is set; called when the pool starts. */
+    static synchronized void startDumping() {
+        if (!ENABLED || DUMP_SECONDS <= 0 || dumper != null) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "query-stats-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            if (!METHODS.isEmpty()) System.out.print("QueryStats:\n" + dump());
+        }, DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Attribute a just-borrowed connection to the method that asked for it. The returned
+     * connection records the call when closed.
+     */
+    static Connection track(Connection c, String method, long acquireNanos) {
+        MethodStats stats = stats(method);
+        stats.acquire.record(acquireNanos);
+        Call call = new Call(stats, System.nanoTime() - acquireNanos);
+        Connection physical = ConnectionPool.physicalOf(c);
+        if (physical != null) CALLS.put(physical, call);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Tracked(c, physical, call));
+    }
+
+    static void failedBorrow(String method) {
+        stats(method).failedBorrows.increment();
+    }
+
+    /** A statement finished on a physical connection (from QueryTimingInterceptor). rows is -1 if unknown. */
+    static void statement(Object physical, long nanos, long rows, Supplier<String> sql) {
+        Call call = CALLS.get(physical);
+        MethodStats stats = call != null ? call.method : stats(UNATTRIBUTED);
+        stats.statements.record(nanos);
+        if (rows > 0) stats.rows.add(rows);
+        if (nanos >= SLOW_NANOS) {
+            SlowQuery slow = new SlowQuery(System.currentTimeMillis(), stats.name, nanos / 1e6, rows, normalize(sql.get()));
+            synchronized (SLOW) {
+                if (SLOW.size() == SLOW_LOG_SIZE) SLOW.removeFirst();
+                SLOW.addLast(slow);
+            }
+            LOG.warning("Slow query " + slow);
+        }
+    }
+
+    /** The physical connection was closed (from QueryTimingInterceptor). */
+    static void closed(Object physical) {
+        CALLS.remove(physical);
+    }
+
+    /** Class.method of the caller of DatabaseConnection.getConnection, lambdas named after their method. */
+    static String caller() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> !f.getClassName().equals(DatabaseConnection.class.getName())
+                        && !f.getClassName().equals(QueryStats.class.getName()))
+                .findFirst()
+                .map(f -> simpleName(f.getClassName()) + "." + methodName(f.getMethodName()))
+                .orElse(UNATTRIBUTED));
+    }
+
+    /** SQL with literals and IN lists replaced by ?, repeated VALUES tuples folded and spaces collapsed. */
+    static String normalize(String sql) {
+        if (sql == null) return "";
+        StringBuilder sb = new StringBuilder(sql.length());
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char ch = sql.charAt(i);
+            if (ch == '\'' || ch == '"') {
+                // string literal, with backslash and doubled-quote escapes
+                int j = i + 1;
+                while (j < n) {
+                    char c = sql.charAt(j);
+                    if (c == '\\') j += 2;
+                    else if (c == ch && j + 1 < n && sql.charAt(j + 1) == ch) j += 2;
+                    else if (c == ch) break;
+                    else j++;
+                }
+                sb.append('?');
+                i = Math.min(j, n - 1);
+            } else if (Character.isDigit(ch) && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))) {
+                int j = i;
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '.')) j++;
+                sb.append('?');
+                i = j - 1;
+            } else {
+                sb.append(ch);
+            }
+        }
+        String s = SPACE.matcher(sb).replaceAll(" ").trim();
+        s = PAREN_SPACE.matcher(COMMA.matcher(s).replaceAll(", ")).replaceAll("");
+        s = IN_LIST.matcher(s).replaceAll("IN (?...)");
+        return REPEATED_TUPLES.matcher(s).replaceAll("$1, ...");
+    }
+
+    private static boolean isIdentifierChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '`';
+    }
+
+    private static MethodStats stats(String method) {
+        return METHODS.computeIfAbsent(method, MethodStats::new);
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    // lambda$listQuizzesByTeacher$3 -> listQuizzesByTeacher
+    private static String methodName(String name) {
+        if (!name.startsWith("lambda$")) return name;
+        int end = name.indexOf('$', "lambda$".length());
+        return end < 0 ? name : name.substring("lambda$".length(), end);
+    }
+
+    /** The borrowed connection; closing it ends the call, on whatever thread. */
+    private static final class Tracked implements InvocationHandler {
+        private final Connection target;
+        private final Connection physical;
+        private final Call call;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Tracked(Connection target, Connection physical, Call call) {
+            this.target = target;
+            this.physical = physical;
+            this.call = call;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // before the pool can hand the physical connection to the next borrower
+            if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                call.method.calls.record(System.nanoTime() - call.start);
+                if (physical != null) CALLS.remove(physical, call);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                // unwrapping to the pool's connection would let it be closed without ending the call
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    throw new SQLException("A tracked connection cannot be unwrapped to " + ((Class<?>) args[0]).getName() + ".");
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                default:
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+            }
+        }
+    }
+}
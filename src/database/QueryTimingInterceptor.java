@@ -0,0 +1,63 @@
+package database;
+
+import com.mysql.cj.MysqlConnection;
+import com.mysql.cj.Query;
+import com.mysql.cj.interceptors.QueryInterceptor;
+import com.mysql.cj.log.Log;
+import com.mysql.cj.protocol.Resultset;
+import com.mysql.cj.protocol.ServerSession;
+
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Connector/J query interceptor that times every statement and counts its rows for
+ * QueryStats. The driver creates one per physical connection (DatabaseConnection adds it
+ * to the URL) and calls it on the thread running the statement. Statements are reported
+ * with that physical connection, which QueryStats maps to the DAO call borrowing it. The SQL
+ * text is only built for slow statements.
+ */
+public class QueryTimingInterceptor implements QueryInterceptor {
+
+    private MysqlConnection connection;
+    // a connection runs one statement at a time
+    private long startedAt;
+
+    @Override
+    public QueryInterceptor init(MysqlConnection conn, Properties props, Log log) {
+        connection = conn;
+        return this;
+    }
+
+    @Override
+    public <T extends Resultset> T preProcess(Supplier<String> sql, Query interceptedQuery) {
+        startedAt = System.nanoTime();
+        return null;
+    }
+
+    @Override
+    public <T extends Resultset> T postProcess(Supplier<String> sql, Query interceptedQuery, T originalResultSet, ServerSession serverSession) {
+        if (startedAt != 0) {
+            QueryStats.statement(connection, System.nanoTime() - startedAt, rows(originalResultSet), sql);
+            startedAt = 0;
+        }
+        return null;
+    }
+
+    // the driver's own statements (session setup, metadata) are not the application's
+    @Override
+    public boolean executeTopLevelOnly() {
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        if (connection != null) QueryStats.closed(connection);
+    }
+
+    private static long rows(Resultset rs) {
+        if (rs == null) return -1;
+        if (rs.hasRows()) return rs.getRows().size(); // -1 while a streamed result is still being read
+        return rs.getUpdateCount();
+    }
+}
@@ -0,0 +1,38 @@
+package database;
+
+import dao.StatsDAO;
+
+import java.util.List;
+
+/**
+ * Recomputes the quiz_stats and student_stats aggregates from results, after migrating the
+ * schema, then checks them against results. With --verify nothing is
+ * written: differences between the stored and the computed aggregates are listed, and the
+ * exit status is 1 if there are any.
+ *
+ * Usage: java -cp ... database.StatsRebuild [--verify]
+ */
+public class StatsRebuild {
+
+    public static void main(String[] args) throws Exception {
+        boolean verifyOnly = args.length > 0 && args[0].equals("--verify");
+        int problems;
+        try {
+            MigrationRunner.migrate();
+            StatsDAO stats = new StatsDAO();
+            if (!verifyOnly) {
+                long start = System.nanoTime();
+                stats.rebuild();
+                System.out.println("StatsRebuild: rebuilt in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            List<String> diffs = stats.verify();
+            for (String d : diffs) System.out.println("StatsRebuild: mismatch " + d);
+            System.out.println("StatsRebuild: " + (diffs.isEmpty() ? "aggregates match results" : diffs.size() + " mismatches"));
+            problems = diffs.size();
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+        if (problems > 0) System.exit(1);
+    }
+
+}
@@ -0,0 +1,269 @@
+package database;
+
+import dao.UserDAO;
+import models.User;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bulk import of student accounts from a CSV file with the header
+ * username,password,full_name,roll_number,stream,division (any column order; roll_number,
+ * stream and division may be omitted). The file is streamed: rows are parsed, validated and
+ * inserted in batches of batchSize with one multi-row INSERT each, so memory stays bounded
+ * by the batch whatever the file size. Rows that fail validation or whose username is taken
+ * are skipped and listed in &lt;file&gt;.errors.csv by line number, reason and username; the
+ * row itself is never copied there, since it holds the password.
+ *
+ * Usage: java -cp ... database.StudentImport students.csv [batchSize]   (1 to MAX_BATCH_SIZE, default 1000)
+ */
+public class StudentImport {
+
+    static final List<String> STREAMS = Arrays.asList("Computer Engg", "Mech Engg", "Comp Sci Engg", "ECS");
+    private static final int PROGRESS_EVERY = 10_000;
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    /** Counters of one import run. */
+    public static class Stats {
+        long rows;
+        long imported;
+        long rejected;
+        long nanos;
+
+        public long getRows() { return rows; }
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows, " + imported + " imported, " + rejected + " rejected in " + nanos / 1_000_000 + " ms ("
+                    + String.format(Locale.ROOT, "%.0f", rowsPerSecond()) + " rows/s)";
+        }
+    }
+
+    private final UserDAO userDAO = new UserDAO();
+    private final int batchSize;
+    private final boolean dryRun;
+
+    /** dryRun parses and validates without touching the database. */
+    public StudentImport(int batchSize, boolean dryRun) {
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.dryRun = dryRun;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp ... database.StudentImport students.csv [batchSize]");
+            System.exit(2);
+        }
+        Path csv = Paths.get(args[0]);
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            System.out.println("StudentImport: batch size must be 1 to " + MAX_BATCH_SIZE + ", using " + Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE)));
+        }
+        Path errors = Paths.get(args[0] + ".errors.csv");
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+             BufferedWriter err = Files.newBufferedWriter(errors, StandardCharsets.UTF_8)) {
+            MigrationRunner.migrate();
+            Stats stats = new StudentImport(batchSize, false).run(in, err);
+            System.out.println("StudentImport: done, " + stats);
+            if (stats.rejected > 0) System.out.println("StudentImport: rejected rows listed in " + errors);
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    /** Import every row of the CSV, writing rejected rows to errors. */
+    public Stats run(Reader csv, Writer errors) throws IOException, SQLException {
+        BufferedReader in = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        Stats stats = new Stats();
+        long start = System.nanoTime();
+        errors.write("line,reason,username\n");
+        String header = in.readLine();
+        if (header == null) throw new IOException("Empty CSV file.");
+        if (header.startsWith("\uFEFF")) header = header.substring(1); // UTF-8 BOM from spreadsheet exports
+        int[] cols = columns(parseLine(header));
+        List<User> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+        Set<String> batchNames = new HashSet<>();
+        long lineNo = 1;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            stats.rows++;
+            User u;
+            List<String> fields = null;
+            try {
+                fields = parseLine(line);
+                u = toStudent(fields, cols);
+            } catch (IllegalArgumentException ex) {
+                reject(errors, stats, lineNo, ex.getMessage(), fields == null ? null : field(fields, cols[0]));
+                continue;
+            }
+            if (!batchNames.add(u.getUsername())) {
+                reject(errors, stats, lineNo, "duplicate username in file", u.getUsername());
+                continue;
+            }
+            batch.add(u);
+            batchLines.add(lineNo);
+            if (batch.size() >= batchSize) {
+                flush(batch, batchLines, errors, stats);
+                batchNames.clear();
+            }
+            if (stats.rows % PROGRESS_EVERY == 0) {
+                stats.nanos = System.nanoTime() - start;
+                System.out.println("StudentImport: " + stats);
+            }
+        }
+        flush(batch, batchLines, errors, stats);
+        stats.nanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    // usernames taken in the database are rejected up front; the rest go in as one batch
+    private void flush(List<User> batch, List<Long> lines, Writer errors, Stats stats) throws IOException, SQLException {
+        if (batch.isEmpty()) return;
+        if (dryRun) {
+            stats.imported += batch.size();
+        } else {
+            List<String> names = new ArrayList<>(batch.size());
+            for (User u : batch) names.add(u.getUsername());
+            Set<String> taken = userDAO.findExistingUsernames(names);
+            List<User> fresh = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                User u = batch.get(i);
+                if (taken.contains(u.getUsername())) reject(errors, stats, lines.get(i), "username already exists", u.getUsername());
+                else fresh.add(u);
+            }
+            try {
+                userDAO.addUsers(fresh);
+                stats.imported += fresh.size();
+            } catch (SQLException ex) {
+                // the batch was rolled back: insert its rows one by one to find the failing ones;
+                // a row that cannot be hashed or inserted is rejected on its own
+                for (int i = 0; i < batch.size(); i++) {
+                    User u = batch.get(i);
+                    if (taken.contains(u.getUsername())) continue;
+                    try {
+                        userDAO.addUser(u);
+                        stats.imported++;
+                    } catch (SQLException | RuntimeException rowEx) {
+                        reject(errors, stats, lines.get(i), rowEx.getMessage(), u.getUsername());
+                    }
+                }
+            }
+        }
+        batch.clear();
+        lines.clear();
+    }
+
+    // username is null if the row could not be parsed that far
+    private static void reject(Writer errors, Stats stats, long lineNo, String reason, String username) throws IOException {
+        stats.rejected++;
+        errors.write(lineNo + "," + quote(reason) + "," + quote(username) + "\n");
+    }
+
+    // index of each known column in the header, -1 if absent
+    private static int[] columns(List<String> header) throws IOException {
+        String[] names = {"username", "password", "full_name", "roll_number", "stream", "division"};
+        int[] cols = new int[names.length];
+        for (int i = 0; i < header.size(); i++) header.set(i, header.get(i).trim().toLowerCase(Locale.ROOT));
+        for (int i = 0; i < names.length; i++) cols[i] = header.indexOf(names[i]);
+        if (cols[0] < 0 || cols[1] < 0 || cols[2] < 0) {
+            throw new IOException("CSV header must have username, password and full_name columns.");
+        }
+        return cols;
+    }
+
+    // same rules as the registration form, plus the column sizes of the users table
+    static User toStudent(List<String> fields, int[] cols) {
+        User u = new User();
+        u.setRole("STUDENT");
+        u.setUsername(required(fields, cols[0], "username", 100));
+        u.setPassword(required(fields, cols[1], "password", 255));
+        u.setFullName(required(fields, cols[2], "full_name", 200));
+        String roll = field(fields, cols[3]);
+        if (roll != null && roll.length() > 20) throw new IllegalArgumentException("roll_number longer than 20 characters");
+        u.setRollNumber(roll);
+        String stream = field(fields, cols[4]);
+        if (stream != null && !STREAMS.contains(stream)) throw new IllegalArgumentException("unknown stream '" + stream + "'");
+        u.setStream(stream);
+        String division = field(fields, cols[5]);
+        if (division != null) {
+            division = division.toUpperCase(Locale.ROOT);
+            if (division.length() != 1 || division.charAt(0) < 'A' || division.charAt(0) > 'Z') {
+                throw new IllegalArgumentException("division must be a single letter");
+            }
+        }
+        u.setDivision(division);
+        u.setStudentClass(division); // keep legacy field in sync
+        return u;
+    }
+
+    private static String required(List<String> fields, int col, String name, int maxLength) {
+        String v = field(fields, col);
+        if (v == null) throw new IllegalArgumentException(name + " is required");
+        if (v.length() > maxLength) throw new IllegalArgumentException(name + " longer than " + maxLength + " characters");
+        return v;
+    }
+
+    private static String field(List<String> fields, int col) {
+        if (col < 0 || col >= fields.size()) return null;
+        String v = fields.get(col).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    /** Split one CSV record: comma separated, fields optionally in double quotes with "" for a quote. */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch != '"') {
+                    cur.append(ch);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quoted field");
+        fields.add(cur.toString());
+        return fields;
+    }
+
+    static String quote(String s) {
+        if (s == null) return "";
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+}
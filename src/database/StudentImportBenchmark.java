@@ -0,0 +1,92 @@
+package database;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Throughput of StudentImport in rows per second, on generated rows (every 50th one invalid).
+ * With --dry-run only parsing and validation are measured and no database is needed;
+ * otherwise the rows are imported once per batch size and deleted again afterwards.
+ *
+ * Usage: java -cp ... database.StudentImportBenchmark [rows] [--dry-run]
+ */
+public class StudentImportBenchmark {
+
+    private static final int[] BATCH_SIZES = {1, 100, 1000};
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 20_000;
+        boolean dryRun = args.length > 0 && args[args.length - 1].equals("--dry-run");
+        if (dryRun) {
+            // warm up the JIT, then measure
+            new StudentImport(1000, true).run(new GeneratedCsv("warm", rows), Writer.nullWriter());
+            StudentImport.Stats stats = new StudentImport(1000, true).run(new GeneratedCsv("dry", rows), Writer.nullWriter());
+            System.out.println("StudentImportBenchmark: parse+validate " + stats);
+            return;
+        }
+        try {
+            MigrationRunner.migrate();
+            for (int batchSize : BATCH_SIZES) {
+                String prefix = "bench" + System.currentTimeMillis() + "b" + batchSize + "_";
+                // the per-row path is slow: keep its run short
+                int n = batchSize == 1 ? Math.min(rows, 2_000) : rows;
+                try {
+                    StudentImport.Stats stats = new StudentImport(batchSize, false).run(new GeneratedCsv(prefix, n), Writer.nullWriter());
+                    System.out.println("StudentImportBenchmark: batch " + batchSize + ": " + stats);
+                } finally {
+                    deleteUsers(prefix);
+                }
+            }
+        } finally {
+            DatabaseConnection.shutdown();
+        }
+    }
+
+    private static void deleteUsers(String prefix) throws SQLException {
+        try (Connection c = DatabaseConnection.getConnection();
+             PreparedStatement ps = c.prepareStatement("DELETE FROM users WHERE username LIKE ?")) {
+            ps.setString(1, prefix + "%");
+            ps.executeUpdate();
+        }
+    }
+
+    /** A CSV of n student rows produced on the fly, so the benchmark itself holds no file in memory. */
+    private static class GeneratedCsv extends Reader {
+        private final String prefix;
+        private final int rows;
+        private int next = -1; // -1: header
+        private String line = "";
+        private int pos;
+
+        GeneratedCsv(String prefix, int rows) {
+            this.prefix = prefix;
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == line.length()) {
+                if (next >= rows) return -1;
+                line = next < 0 ? "username,password,full_name,roll_number,stream,division\n" : row(next);
+                next++;
+                pos = 0;
+            }
+            int n = Math.min(len, line.length() - pos);
+            line.getChars(pos, pos + n, buf, off);
+            pos += n;
+            return n;
+        }
+
+        private String row(int i) {
+            String stream = i % 50 == 49 ? "Unknown" : StudentImport.STREAMS.get(i % StudentImport.STREAMS.size());
+            return prefix + i + ",pass" + i + ",\"Student, No. " + i + "\"," + (100000 + i) + "," + stream + "," + (char) ('A' + i % 4) + "\n";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
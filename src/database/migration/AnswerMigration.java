@@ -0,0 +1,162 @@
+package database.migration;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Java step of schema migration V004 (see database.MigrationRunner): parses the answers text
+ * of every result not converted yet and writes the packed form and one results_answers row
+ * per question. Runs in batches, each committed on its own, so it can be interrupted and
+ * re-run. The text parser and the packed format (version 1 of models.AnswerSheet) are
+ * copied here, so later changes to the model do not change what this migration writes.
+ */
+public final class AnswerMigration {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String SELECT_PENDING = "SELECT id, answers FROM results WHERE id > ? AND answers_packed IS NULL ORDER BY id LIMIT ?";
+    private static final String UPDATE_PACKED = "UPDATE results SET answers_packed = ? WHERE id = ?";
+    private static final String INSERT_ANSWER = "INSERT IGNORE INTO results_answers (result_id, question_id, choice) VALUES (?, ?, ?)";
+
+    private static final int FORMAT_V1 = 1;
+
+    private AnswerMigration() {}
+
+    public static void migrate(Connection c) throws SQLException {
+        long start = System.nanoTime();
+        int lastId = 0;
+        long results = 0;
+        long answers = 0;
+        long malformed = 0;
+        c.setAutoCommit(false);
+        try {
+            while (true) {
+                int rows = 0;
+                try (PreparedStatement select = c.prepareStatement(SELECT_PENDING);
+                     PreparedStatement update = c.prepareStatement(UPDATE_PACKED);
+                     PreparedStatement insert = c.prepareStatement(INSERT_ANSWER)) {
+                    select.setInt(1, lastId);
+                    select.setInt(2, BATCH_SIZE);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            int id = rs.getInt(1);
+                            String text = rs.getString(2);
+                            Sheet sheet = parse(text);
+                            if (sheet.size == 0 && text != null && !text.isEmpty()) malformed++;
+                            update.setBytes(1, sheet.encode());
+                            update.setInt(2, id);
+                            update.addBatch();
+                            for (int i = 0; i < sheet.size; i++) {
+                                insert.setInt(1, id);
+                                insert.setInt(2, sheet.questionIds[i]);
+                                insert.setByte(3, sheet.choices[i]);
+                                insert.addBatch();
+                            }
+                            answers += sheet.size;
+                            lastId = id;
+                            rows++;
+                        }
+                    }
+                    if (rows == 0) break;
+                    insert.executeBatch();
+                    update.executeBatch();
+                    c.commit();
+                } catch (SQLException ex) {
+                    c.rollback();
+                    throw ex;
+                }
+                results += rows;
+                System.out.println("AnswerMigration: " + results + " results, " + answers + " answers migrated (last id " + lastId + ")");
+            }
+        } finally {
+            c.setAutoCommit(true);
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("AnswerMigration: done, " + results + " results / " + answers + " answers in " + ms + " ms"
+                + (malformed > 0 ? ", " + malformed + " results with unreadable answers" : ""));
+    }
+
+    // the legacy "Q12:A;Q13:-;" text; malformed entries are skipped
+    private static Sheet parse(String text) {
+        Sheet sheet = new Sheet(text == null ? 1 : text.length() / 6 + 1);
+        if (text == null) return sheet;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (text.charAt(i) != 'Q') {
+                i = skipEntry(text, i);
+                continue;
+            }
+            i++;
+            int id = 0;
+            int digits = 0;
+            while (i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                id = id * 10 + (text.charAt(i) - '0');
+                i++;
+                digits++;
+            }
+            if (digits == 0 || i + 1 >= n || text.charAt(i) != ':') {
+                i = skipEntry(text, i);
+                continue;
+            }
+            char c = Character.toUpperCase(text.charAt(i + 1));
+            sheet.add(id, c >= 'A' && c <= 'D' ? (byte) (c - 'A' + 1) : 0);
+            i = skipEntry(text, i + 1);
+        }
+        return sheet;
+    }
+
+    // index just past the next ';' (or the end)
+    private static int skipEntry(String text, int from) {
+        int semi = text.indexOf(';', from);
+        return semi < 0 ? text.length() : semi + 1;
+    }
+
+    /** Question ids and choices (0 = unanswered, 1-4 = A-D) of one result. */
+    private static final class Sheet {
+        int[] questionIds;
+        byte[] choices;
+        int size;
+
+        Sheet(int capacity) {
+            questionIds = new int[Math.max(capacity, 1)];
+            choices = new byte[Math.max(capacity, 1)];
+        }
+
+        void add(int questionId, byte choice) {
+            if (size == questionIds.length) {
+                questionIds = Arrays.copyOf(questionIds, size * 2);
+                choices = Arrays.copyOf(choices, size * 2);
+            }
+            questionIds[size] = questionId;
+            choices[size] = choice;
+            size++;
+        }
+
+        // format 1: version byte, count varint, zigzag varint id deltas, one choice byte each
+        byte[] encode() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(2 + size * 2);
+            out.write(FORMAT_V1);
+            writeVarint(out, size);
+            int prev = 0;
+            for (int i = 0; i < size; i++) {
+                int delta = questionIds[i] - prev;
+                writeVarint(out, (delta << 1) ^ (delta >> 31));
+                prev = questionIds[i];
+            }
+            out.write(choices, 0, size);
+            return out.toByteArray();
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, int v) {
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.write(v);
+        }
+    }
+}
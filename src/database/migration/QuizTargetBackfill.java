@@ -0,0 +1,71 @@
+package database.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Java step of schema migration V003 (see database.MigrationRunner): gives quizzes written
+ * before quiz_targets existed their rows, one per (stream, division) from their
+ * comma-separated target fields, with '*' for ALL. Self-contained, so later changes to how
+ * QuizDAO writes targets do not change what this migration does.
+ */
+public final class QuizTargetBackfill {
+
+    private static final String TARGET_ALL = "*";
+    private static final String SELECT_UNTARGETED = "SELECT q.id, q.target_stream, q.target_divisions FROM quizzes q"
+            + " WHERE NOT EXISTS (SELECT 1 FROM quiz_targets t WHERE t.quiz_id = q.id)";
+    private static final String INSERT_TARGET = "INSERT INTO quiz_targets (quiz_id, stream, division) VALUES (?, ?, ?)";
+
+    private QuizTargetBackfill() {}
+
+    public static void migrate(Connection c) throws SQLException {
+        c.setAutoCommit(false);
+        try (PreparedStatement select = c.prepareStatement(SELECT_UNTARGETED);
+             PreparedStatement insert = c.prepareStatement(INSERT_TARGET);
+             ResultSet rs = select.executeQuery()) {
+            int count = 0;
+            while (rs.next()) {
+                for (String stream : targetValues(rs.getString(2))) {
+                    for (String division : targetValues(rs.getString(3))) {
+                        insert.setInt(1, rs.getInt(1));
+                        insert.setString(2, stream);
+                        insert.setString(3, division);
+                        insert.addBatch();
+                    }
+                }
+                count++;
+            }
+            if (count > 0) {
+                insert.executeBatch();
+                System.out.println("QuizTargetBackfill: backfilled quiz_targets for " + count + " quizzes");
+            }
+            c.commit();
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    // Split a comma-separated target field; empty or containing ALL collapses to '*'
+    private static Set<String> targetValues(String csv) {
+        Set<String> values = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        if (csv != null) {
+            for (String part : csv.split(",")) {
+                String p = part.trim();
+                if (p.equalsIgnoreCase("ALL")) {
+                    values.clear();
+                    break;
+                }
+                if (!p.isEmpty()) values.add(p);
+            }
+        }
+        if (values.isEmpty()) values.add(TARGET_ALL);
+        return values;
+    }
+}
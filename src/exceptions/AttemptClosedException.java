@@ -0,0 +1,7 @@
+package exceptions;
+
+public class AttemptClosedException extends Exception {
+    public AttemptClosedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,165 @@
+package models;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The answers of one result: question ids with the chosen option per question,
+ * as parallel primitive arrays. Choices are coded 0 = unanswered, 1-4 = A-D.
+ *
+ * Two encodings are supported:
+ * - the legacy text stored in results.answers, e.g. "Q12:A;Q13:-;"
+ * - a versioned binary form for results.answers_packed: a version byte, the question
+ *   count as a varint, each question id as a zigzag varint delta from the previous one,
+ *   then one choice byte per question.
+ */
+public class AnswerSheet {
+
+    public static final byte NO_ANSWER = 0;
+    public static final int FORMAT_V1 = 1;
+
+    private int[] questionIds;
+    private byte[] choices;
+    private int size;
+
+    public AnswerSheet() {
+        this(16);
+    }
+
+    public AnswerSheet(int capacity) {
+        questionIds = new int[Math.max(capacity, 1)];
+        choices = new byte[Math.max(capacity, 1)];
+    }
+
+    public void add(int questionId, byte choice) {
+        if (size == questionIds.length) {
+            questionIds = Arrays.copyOf(questionIds, size * 2);
+            choices = Arrays.copyOf(choices, size * 2);
+        }
+        questionIds[size] = questionId;
+        choices[size] = choice;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int questionIdAt(int i) { return questionIds[i]; }
+    public byte choiceAt(int i) { return choices[i]; }
+
+    /** The choice for a question id, or NO_ANSWER if it is not on the sheet. */
+    public byte choiceFor(int questionId) {
+        for (int i = 0; i < size; i++) {
+            if (questionIds[i] == questionId) return choices[i];
+        }
+        return NO_ANSWER;
+    }
+
+    /** 'A'-'D' (either case) to 1-4; anything else is unanswered. */
+    public static byte choiceOf(char option) {
+        char c = Character.toUpperCase(option);
+        return c >= 'A' && c <= 'D' ? (byte) (c - 'A' + 1) : NO_ANSWER;
+    }
+
+    /** 1-4 to 'A'-'D', unanswered to '-'. */
+    public static char letterOf(byte choice) {
+        return choice >= 1 && choice <= 4 ? (char) ('A' + choice - 1) : '-';
+    }
+
+    /** Parse the legacy "Q12:A;Q13:-;" text. Malformed entries are skipped. */
+    public static AnswerSheet parse(String text) {
+        if (text == null || text.isEmpty()) return new AnswerSheet(1);
+        AnswerSheet sheet = new AnswerSheet(text.length() / 6 + 1);
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            // expect Q<digits>:<choice>;
+            if (text.charAt(i) != 'Q') {
+                i = skipEntry(text, i);
+                continue;
+            }
+            i++;
+            int id = 0;
+            int digits = 0;
+            while (i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                id = id * 10 + (text.charAt(i) - '0');
+                i++;
+                digits++;
+            }
+            if (digits == 0 || i + 1 >= n || text.charAt(i) != ':') {
+                i = skipEntry(text, i);
+                continue;
+            }
+            sheet.add(id, choiceOf(text.charAt(i + 1)));
+            i = skipEntry(text, i + 1);
+        }
+        return sheet;
+    }
+
+    // index just past the next ';' (or the end)
+    private static int skipEntry(String text, int from) {
+        int semi = text.indexOf(';', from);
+        return semi < 0 ? text.length() : semi + 1;
+    }
+
+    /** The legacy text form. */
+    public String toText() {
+        StringBuilder sb = new StringBuilder(size * 7);
+        for (int i = 0; i < size; i++) {
+            sb.append('Q').append(questionIds[i]).append(':').append(letterOf(choices[i])).append(';');
+        }
+        return sb.toString();
+    }
+
+    /** The binary form (current format version). */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + size * 2);
+        out.write(FORMAT_V1);
+        writeVarint(out, size);
+        int prev = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = questionIds[i] - prev;
+            writeVarint(out, (delta << 1) ^ (delta >> 31)); // zigzag: ids are not always ascending
+            prev = questionIds[i];
+        }
+        out.write(choices, 0, size);
+        return out.toByteArray();
+    }
+
+    /** Decode the binary form; throws IllegalArgumentException on an unknown version or truncated data. */
+    public static AnswerSheet decode(byte[] data) {
+        if (data == null || data.length == 0) return new AnswerSheet(1);
+        if (data[0] != FORMAT_V1) throw new IllegalArgumentException("Unknown answer format version " + data[0]);
+        int[] pos = {1};
+        int count = readVarint(data, pos);
+        if (count < 0 || count > data.length) throw new IllegalArgumentException("Bad answer count " + count);
+        AnswerSheet sheet = new AnswerSheet(count);
+        int prev = 0;
+        for (int i = 0; i < count; i++) {
+            int zz = readVarint(data, pos);
+            prev += (zz >>> 1) ^ -(zz & 1);
+            sheet.questionIds[i] = prev;
+        }
+        if (pos[0] + count > data.length) throw new IllegalArgumentException("Truncated answer data");
+        System.arraycopy(data, pos[0], sheet.choices, 0, count);
+        sheet.size = count;
+        return sheet;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= data.length) throw new IllegalArgumentException("Truncated answer data");
+            byte b = data[pos[0]++];
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalArgumentException("Malformed varint in answer data");
+    }
+}
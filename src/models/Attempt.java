@@ -0,0 +1,39 @@
+package models;
+
+import java.time.LocalDateTime;
+
+/** One student's attempt at a quiz: opened when the quiz is started, finalized on submit. */
+public class Attempt {
+    private int id;
+    private int studentId;
+    private int quizId;
+    private int attemptNo;
+    private LocalDateTime startedAt;
+    private LocalDateTime submittedAt;
+    private int resultId;
+
+    public Attempt() {}
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public int getStudentId() { return studentId; }
+    public void setStudentId(int studentId) { this.studentId = studentId; }
+
+    public int getQuizId() { return quizId; }
+    public void setQuizId(int quizId) { this.quizId = quizId; }
+
+    public int getAttemptNo() { return attemptNo; }
+    public void setAttemptNo(int attemptNo) { this.attemptNo = attemptNo; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+
+    public int getResultId() { return resultId; }
+    public void setResultId(int resultId) { this.resultId = resultId; }
+
+    public boolean isSubmitted() { return submittedAt != null; }
+}
@@ -9,6 +9,9 @@ public class Question {
     private String optionC;
     private String optionD;
     private char correctOption; // 'A','B','C','D'
+    private String tag; // question bank pool, optional
+    // the options as shown, e.g. "CADB" shows option C first; not stored, set per student by QuestionDraw
+    private String optionOrder = "ABCD";
 
     public Question() {}
 
@@ -24,6 +27,13 @@ public class Question {
         this.correctOption = correctOption;
     }
 
+    public Question(Question other) {
+        this(other.id, other.quizId, other.questionText, other.optionA, other.optionB,
+                other.optionC, other.optionD, other.correctOption);
+        this.tag = other.tag;
+        this.optionOrder = other.optionOrder;
+    }
+
     // getters/setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
@@ -48,4 +58,24 @@ public class Question {
 
     public char getCorrectOption() { return correctOption; }
     public void setCorrectOption(char correctOption) { this.correctOption = correctOption; }
+
+    public String getTag() { return tag; }
+    public void setTag(String tag) { this.tag = tag; }
+
+    public String getOptionOrder() { return optionOrder; }
+    public void setOptionOrder(String optionOrder) { this.optionOrder = optionOrder; }
+
+    /** Text of option 'A'-'D' (the stored letter, not the shown position). */
+    public String getOption(char option) {
+        switch (option) {
+            case 'A': return optionA;
+            case 'B': return optionB;
+            case 'C': return optionC;
+            case 'D': return optionD;
+            default: throw new IllegalArgumentException("No option " + option);
+        }
+    }
+
+    /** The stored option shown at position 0-3. */
+    public char optionAt(int position) { return optionOrder.charAt(position); }
 }
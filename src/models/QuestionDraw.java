@@ -0,0 +1,73 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A student's questions for a quiz: drawCount questions picked from the quiz's pool
+ * (its questions tagged poolTag, or all of them), in a shuffled order, each with its
+ * options in a shuffled order. The shuffles are seeded by student and quiz id only, so the
+ * same student gets the same paper every time (resuming after a crash included) without
+ * anything being stored, and different students get different ones.
+ *
+ * The draw works on an in-memory pool sorted by question id: a partial Fisher-Yates shuffle
+ * of the pool's indexes, O(pool) per student, copying only the drawn questions. Options keep
+ * their stored letters (optionAt maps a shown position back), so answers, grading and
+ * analytics all use the stored A-D.
+ */
+public final class QuestionDraw {
+
+    private static final String OPTIONS = "ABCD";
+
+    private QuestionDraw() {}
+
+    /** Draw from pool, which must be sorted by id; the pool's questions are not modified. */
+    public static List<Question> draw(List<Question> pool, Quiz quiz, int studentId) {
+        String tag = quiz.getPoolTag();
+        List<Question> eligible = pool;
+        if (tag != null && !tag.isEmpty()) {
+            eligible = new ArrayList<>();
+            for (Question q : pool) {
+                if (tag.equalsIgnoreCase(q.getTag())) eligible.add(q);
+            }
+        }
+        int n = eligible.size();
+        Integer drawCount = quiz.getDrawCount();
+        int count = drawCount != null && drawCount > 0 ? Math.min(drawCount, n) : n;
+
+        Random random = new Random(seed(quiz.getId(), studentId));
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        List<Question> drawn = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+            Question q = new Question(eligible.get(order[i]));
+            q.setOptionOrder(shuffledOptions(random));
+            drawn.add(q);
+        }
+        return drawn;
+    }
+
+    private static String shuffledOptions(Random random) {
+        char[] options = OPTIONS.toCharArray();
+        for (int i = options.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char t = options[i];
+            options[i] = options[j];
+            options[j] = t;
+        }
+        return new String(options);
+    }
+
+    // SplitMix64 finalizer: neighbouring ids give unrelated seeds
+    static long seed(int quizId, int studentId) {
+        long z = ((long) quizId << 32 | (studentId & 0xffffffffL)) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,40 @@
+package models;
+
+/**
+ * How the students answered one question: a count per choice
+ * (index 0 = unanswered, 1-4 = A-D, as in {@link AnswerSheet}).
+ */
+public class QuestionStats {
+    private final int questionId;
+    private final char correctOption;
+    private final int[] choiceCounts = new int[5];
+
+    public QuestionStats(int questionId, char correctOption) {
+        this.questionId = questionId;
+        this.correctOption = correctOption;
+    }
+
+    public int getQuestionId() { return questionId; }
+    public char getCorrectOption() { return correctOption; }
+
+    public int getChoiceCount(int choice) { return choiceCounts[choice]; }
+    public void addChoiceCount(int choice, int count) { choiceCounts[choice] += count; }
+
+    /** Number of results that include this question, answered or not. */
+    public int getResponses() {
+        int n = 0;
+        for (int c : choiceCounts) n += c;
+        return n;
+    }
+
+    public int getCorrectCount() {
+        byte correct = AnswerSheet.choiceOf(correctOption);
+        return correct == AnswerSheet.NO_ANSWER ? 0 : choiceCounts[correct];
+    }
+
+    /** Share of responses that picked the correct option (0 when there are none). */
+    public double getCorrectRate() {
+        int responses = getResponses();
+        return responses == 0 ? 0.0 : (double) getCorrectCount() / responses;
+    }
+}
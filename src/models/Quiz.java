@@ -17,6 +17,8 @@ public class Quiz {
     private Integer timeLimit; // minutes
     private String targetStream; // comma-separated or 'ALL'
     private String targetDivisions; // comma-separated or 'ALL'
+    private Integer drawCount; // questions drawn per student; null = whole pool
+    private String poolTag; // draw only questions with this tag; null = all
 
     private LocalDateTime createdAt;
 
@@ -29,6 +31,22 @@ public class Quiz {
         this.teacherId = teacherId;
     }
 
+    /** Copy constructor (used to hand out cached quizzes safely). */
+    public Quiz(Quiz other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.teacherId = other.teacherId;
+        this.courseName = other.courseName;
+        this.deadline = other.deadline;
+        this.timeLimit = other.timeLimit;
+        this.targetStream = other.targetStream;
+        this.targetDivisions = other.targetDivisions;
+        this.drawCount = other.drawCount;
+        this.poolTag = other.poolTag;
+        this.createdAt = other.createdAt;
+    }
+
     // getters/setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
@@ -57,6 +75,30 @@ public class Quiz {
     public String getTargetDivisions() { return targetDivisions; }
     public void setTargetDivisions(String targetDivisions) { this.targetDivisions = targetDivisions; }
 
+    public Integer getDrawCount() { return drawCount; }
+    public void setDrawCount(Integer drawCount) { this.drawCount = drawCount; }
+
+    public String getPoolTag() { return poolTag; }
+    public void setPoolTag(String poolTag) { this.poolTag = poolTag; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    /**
+     * Whether a student of the given stream/division is targeted by this quiz.
+     * Empty targets mean ALL; matching is case-insensitive.
+     */
+    public boolean isTargetedTo(String stream, String division) {
+        return matchesTarget(targetStream, stream) && matchesTarget(targetDivisions, division);
+    }
+
+    private static boolean matchesTarget(String targets, String value) {
+        if (targets == null || targets.trim().isEmpty()) return true;
+        String v = value == null ? "" : value.trim();
+        for (String part : targets.split(",")) {
+            String p = part.trim();
+            if (p.equalsIgnoreCase("ALL") || p.equalsIgnoreCase(v)) return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,180 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * Item analysis of one quiz, accumulated one result at a time in primitive arrays:
+ * a histogram of whole-percent scores (which also gives the median), running sums for
+ * mean and standard deviation, and per question the count of each choice and the summed
+ * scores of the students who answered it and of those who got it right. Every statistic is derived from these counts,
+ * so adding a result is O(answers) and reading is O(questions + 101).
+ *
+ * Difficulty is the share of responses that are correct (higher = easier). Discrimination
+ * is the point-biserial correlation between answering the question correctly and the
+ * total score. Choice rates are the share of responses picking each option.
+ */
+public class QuizAnalytics {
+
+    public static final int CHOICES = 5; // unanswered, A-D
+
+    private final int quizId;
+    private final int[] questionIds; // sorted, for binary search
+    private final byte[] correctChoices;
+
+    private int count;
+    private double sum;
+    private double sumSq;
+    private final int[] scoreHistogram = new int[101];
+
+    private final int[] choiceCounts; // [question * CHOICES + choice]
+    private final int[] correctCounts;
+    private final double[] correctScoreSums;
+    private final double[] responseScoreSums;
+    // highest result id included, so results already counted are not added twice
+    private int maxResultId;
+
+    public QuizAnalytics(int quizId, int[] questionIds, char[] correctOptions) {
+        this.quizId = quizId;
+        int n = questionIds.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(questionIds[a], questionIds[b]));
+        this.questionIds = new int[n];
+        this.correctChoices = new byte[n];
+        for (int i = 0; i < n; i++) {
+            this.questionIds[i] = questionIds[order[i]];
+            this.correctChoices[i] = AnswerSheet.choiceOf(correctOptions[order[i]]);
+        }
+        this.choiceCounts = new int[n * CHOICES];
+        this.correctCounts = new int[n];
+        this.correctScoreSums = new double[n];
+        this.responseScoreSums = new double[n];
+    }
+
+    private QuizAnalytics(QuizAnalytics o) {
+        this.quizId = o.quizId;
+        this.questionIds = o.questionIds;
+        this.correctChoices = o.correctChoices;
+        this.count = o.count;
+        this.sum = o.sum;
+        this.sumSq = o.sumSq;
+        System.arraycopy(o.scoreHistogram, 0, this.scoreHistogram, 0, scoreHistogram.length);
+        this.choiceCounts = o.choiceCounts.clone();
+        this.correctCounts = o.correctCounts.clone();
+        this.correctScoreSums = o.correctScoreSums.clone();
+        this.responseScoreSums = o.responseScoreSums.clone();
+        this.maxResultId = o.maxResultId;
+    }
+
+    /** A consistent point-in-time copy, safe to read while this one keeps accumulating. */
+    public synchronized QuizAnalytics snapshot() {
+        return new QuizAnalytics(this);
+    }
+
+    /**
+     * Add one result (score in percent). Results with an id at or below the highest one
+     * already added are ignored; pass 0 to always add. Answers to questions that are no
+     * longer part of the quiz are skipped.
+     */
+    public synchronized void add(int resultId, double score, AnswerSheet answers) {
+        if (resultId > 0) {
+            if (resultId <= maxResultId) return;
+            maxResultId = resultId;
+        }
+        count++;
+        sum += score;
+        sumSq += score * score;
+        scoreHistogram[(int) Math.max(0, Math.min(100, Math.round(score)))]++;
+        for (int i = 0; i < answers.size(); i++) {
+            int q = Arrays.binarySearch(questionIds, answers.questionIdAt(i));
+            if (q < 0) continue;
+            byte choice = answers.choiceAt(i);
+            if (choice < 0 || choice >= CHOICES) choice = AnswerSheet.NO_ANSWER;
+            choiceCounts[q * CHOICES + choice]++;
+            responseScoreSums[q] += score;
+            if (choice != AnswerSheet.NO_ANSWER && choice == correctChoices[q]) {
+                correctCounts[q]++;
+                correctScoreSums[q] += score;
+            }
+        }
+    }
+
+    public int getQuizId() { return quizId; }
+    public synchronized int getCount() { return count; }
+    public synchronized int getMaxResultId() { return maxResultId; }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /** Population standard deviation of the scores. */
+    public synchronized double getStdDev() {
+        if (count == 0) return 0.0;
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0.0, sumSq / count - mean * mean));
+    }
+
+    /** Median score, at whole-percent resolution. */
+    public synchronized double getMedian() {
+        if (count == 0) return 0.0;
+        int lower = valueAtRank((count - 1) / 2);
+        int upper = valueAtRank(count / 2);
+        return (lower + upper) / 2.0;
+    }
+
+    // score of the rank-th smallest result (0-based)
+    private int valueAtRank(int rank) {
+        int seen = 0;
+        for (int s = 0; s < scoreHistogram.length; s++) {
+            seen += scoreHistogram[s];
+            if (seen > rank) return s;
+        }
+        return 100;
+    }
+
+    /** Result counts per score bucket of the given width, e.g. 10 gives 0-9, 10-19, ..., 90-100. */
+    public synchronized int[] getHistogram(int bucketWidth) {
+        int buckets = 100 / bucketWidth;
+        int[] h = new int[buckets];
+        for (int s = 0; s < scoreHistogram.length; s++) {
+            h[Math.min(s / bucketWidth, buckets - 1)] += scoreHistogram[s];
+        }
+        return h;
+    }
+
+    public int getQuestionCount() { return questionIds.length; }
+    public int getQuestionId(int q) { return questionIds[q]; }
+    public char getCorrectOption(int q) { return AnswerSheet.letterOf(correctChoices[q]); }
+
+    /** Results that include the question, answered or not. */
+    public synchronized int getResponses(int q) {
+        int n = 0;
+        for (int c = 0; c < CHOICES; c++) n += choiceCounts[q * CHOICES + c];
+        return n;
+    }
+
+    /** Difficulty index: share of responses that are correct. */
+    public synchronized double getDifficulty(int q) {
+        int responses = getResponses(q);
+        return responses == 0 ? 0.0 : (double) correctCounts[q] / responses;
+    }
+
+    /** Point-biserial discrimination in [-1, 1]; 0 when it cannot be computed. */
+    public synchronized double getDiscrimination(int q) {
+        int n = getResponses(q);
+        int right = correctCounts[q];
+        int wrong = n - right;
+        double sd = getStdDev();
+        if (right == 0 || wrong == 0 || sd == 0.0) return 0.0;
+        double meanRight = correctScoreSums[q] / right;
+        double meanWrong = (responseScoreSums[q] - correctScoreSums[q]) / wrong;
+        double p = (double) right / n;
+        return (meanRight - meanWrong) / sd * Math.sqrt(p * (1 - p));
+    }
+
+    /** Share of the question's responses that picked the choice (0 = unanswered, 1-4 = A-D). */
+    public synchronized double getChoiceRate(int q, int choice) {
+        int responses = getResponses(q);
+        return responses == 0 ? 0.0 : (double) choiceCounts[q * CHOICES + choice] / responses;
+    }
+}
@@ -9,7 +9,9 @@ public class Result {
     private double score;
     private int totalQuestions;
     private String answers; // simple representation
+    private AnswerSheet answerSheet; // structured form of answers, parsed on demand
     private LocalDateTime takenAt;
+    private int attemptNo; // the student's attempt number at the quiz, 0 if not tracked
 
     public Result() {}
 
@@ -39,8 +41,20 @@ public class Result {
     public void setTotalQuestions(int totalQuestions) { this.totalQuestions = totalQuestions; }
 
     public String getAnswers() { return answers; }
-    public void setAnswers(String answers) { this.answers = answers; }
+    public void setAnswers(String answers) {
+        this.answers = answers;
+        this.answerSheet = null;
+    }
+
+    public AnswerSheet getAnswerSheet() {
+        if (answerSheet == null) answerSheet = AnswerSheet.parse(answers);
+        return answerSheet;
+    }
+    public void setAnswerSheet(AnswerSheet answerSheet) { this.answerSheet = answerSheet; }
 
     public LocalDateTime getTakenAt() { return takenAt; }
     public void setTakenAt(LocalDateTime takenAt) { this.takenAt = takenAt; }
+
+    public int getAttemptNo() { return attemptNo; }
+    public void setAttemptNo(int attemptNo) { this.attemptNo = attemptNo; }
 }
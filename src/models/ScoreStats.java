@@ -0,0 +1,73 @@
+package models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running aggregate of a set of scores (a quiz's results, or a student's): count, sum, sum
+ * of squares, minimum, maximum and when the latest was taken. Mean and standard deviation
+ * are derived from the sums, so two aggregates combine by adding them.
+ */
+public class ScoreStats {
+    private long count;
+    private double sum;
+    private double sumSq;
+    private double min;
+    private double max;
+    private LocalDateTime lastTakenAt;
+
+    public ScoreStats() {}
+
+    public ScoreStats(long count, double sum, double sumSq, double min, double max, LocalDateTime lastTakenAt) {
+        this.count = count;
+        this.sum = sum;
+        this.sumSq = sumSq;
+        this.min = min;
+        this.max = max;
+        this.lastTakenAt = lastTakenAt;
+    }
+
+    public void add(double score) {
+        min = count == 0 ? score : Math.min(min, score);
+        max = count == 0 ? score : Math.max(max, score);
+        count++;
+        sum += score;
+        sumSq += score * score;
+    }
+
+    public long getCount() { return count; }
+    public double getSum() { return sum; }
+    public double getSumOfSquares() { return sumSq; }
+    /** Lowest score (0 when there are none). */
+    public double getMin() { return min; }
+    /** Highest score (0 when there are none). */
+    public double getMax() { return max; }
+    public LocalDateTime getLastTakenAt() { return lastTakenAt; }
+
+    public double getAverage() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /** Population standard deviation. */
+    public double getStdDev() {
+        if (count == 0) return 0.0;
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0.0, sumSq / count - mean * mean));
+    }
+
+    /** Whether another aggregate has the same values, allowing for rounding in the sums. */
+    public boolean matches(ScoreStats o) {
+        return count == o.count && close(sum, o.sum) && close(sumSq, o.sumSq)
+                && close(min, o.min) && close(max, o.max)
+                && (lastTakenAt == null ? o.lastTakenAt == null : lastTakenAt.equals(o.lastTakenAt));
+    }
+
+    private static boolean close(double a, double b) {
+        return Math.abs(a - b) <= 1e-6 * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d avg=%.2f sd=%.2f min=%.2f max=%.2f last=%s",
+                count, getAverage(), getStdDev(), min, max, lastTakenAt);
+    }
+}
@@ -0,0 +1,31 @@
+package models;
+
+/**
+ * Result row joined with the profile of the student who took the quiz,
+ * so result tables can render without a user lookup per row.
+ */
+public class StudentResult extends Result {
+    private String studentName;
+    private String rollNumber;
+    private String stream;
+    private String division;
+    private String studentClass;
+
+    public StudentResult() {}
+
+    public String getStudentName() { return studentName; }
+    public void setStudentName(String studentName) { this.studentName = studentName; }
+
+    public String getRollNumber() { return rollNumber; }
+    public void setRollNumber(String rollNumber) { this.rollNumber = rollNumber; }
+
+    public String getStream() { return stream; }
+    public void setStream(String stream) { this.stream = stream; }
+
+    public String getDivision() { return division; }
+    public void setDivision(String division) { this.division = division; }
+
+    // Legacy compatibility (mirrors division on newer schemas)
+    public String getStudentClass() { return studentClass; }
+    public void setStudentClass(String studentClass) { this.studentClass = studentClass; }
+}
@@ -33,6 +33,15 @@ public class User {
         this.role = role;
     }
 
+    public User(User other) {
+        this(other.id, other.username, other.password, other.fullName, other.role);
+        this.rollNumber = other.rollNumber;
+        this.stream = other.stream;
+        this.division = other.division;
+        this.studentClass = other.studentClass;
+        this.createdAt = other.createdAt;
+    }
+
     // getters and setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
@@ -0,0 +1,571 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import dao.ApiCodec;
+import dao.AttemptDAO;
+import dao.DaoCache;
+import dao.Json;
+import dao.QuestionDAO;
+import dao.QuizDAO;
+import dao.RemoteBackend;
+import dao.ResultDAO;
+import dao.StatsDAO;
+import dao.UserDAO;
+import database.DatabaseConnection;
+import database.MigrationRunner;
+import database.QueryStats;
+import exceptions.InvalidLoginException;
+import exceptions.QuizNotFoundException;
+import models.AnswerSheet;
+import models.Attempt;
+import models.Question;
+import models.Quiz;
+import models.Result;
+import models.User;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless quiz service: the DAO operations the desktop screens use, as a JSON API over
+ * HTTP (the JDK's HttpServer), for clients started with -Dquiz.backend=http://host:port
+ * (see dao.RemoteBackend). Only this process talks to MySQL, so every client shares its
+ * connection pool and its DAO caches, and a write by one client invalidates the cached
+ * entries all the others read.
+ *
+ * Every operation is POST /api/&lt;operation&gt; with a JSON object of named arguments; the
+ * reply is the result as JSON (200), or {"error": message} with 400 for a malformed
+ * request, 401 for a failed login, 404 for an unknown operation or quiz, 503 when no
+ * database connection could be had in time, and 500 with the SQLState for other database
+ * errors. GET /health reports the connection pool, the caches and the database time per
+ * DAO method with the latest slow queries (see database.QueryStats), to teachers only.
+ *
+ * users/login replies with the user and a session token, which every other request sends as
+ * "Authorization: Bearer &lt;token&gt;"; a session ends after quiz.server.sessionHours
+ * (default 12) without a request. Without a valid token the reply is 401 (SQLState 28000),
+ * for something the user may not do 403 (SQLState 42000). Only registering a student and
+ * checking one username need no token. Teachers work on their own quizzes and their
+ * results; students see the quizzes assigned to their class, their questions without the
+ * correct options, their own results and attempts.
+ *
+ * Each request runs on its own virtual thread where the JVM has them (Java 21+); a request
+ * blocked on the database then costs no platform thread, and the connection pool's borrow
+ * timeout is what limits concurrency. Older JVMs use a fixed pool of quiz.server.threads
+ * threads.
+ *
+ * Logins carry passwords and every call a session token, so they must not cross the network
+ * in clear. With quiz.server.keystore (a PKCS12 keystore holding the server's key and
+ * certificate, password quiz.server.keystorePassword) the server speaks HTTPS and listens on
+ * all interfaces. Without one it speaks plain HTTP and listens on 127.0.0.1 only, for a
+ * TLS-terminating reverse proxy on the same machine. quiz.server.bind overrides the address.
+ *
+ * Usage: java -cp ... Main --server [port]   (or server.QuizServer [port]; default 8080)
+ */
+public class QuizServer {
+
+    private static final Logger LOG = Logger.getLogger(QuizServer.class.getName());
+
+    /** One API operation: the signed-in caller (null for a public one) and named arguments in, a JSON-encodable result out. */
+    interface Operation {
+        Object run(User caller, Map<String, Object> args) throws Exception;
+    }
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+    private static final int FALLBACK_THREADS = Integer.getInteger("quiz.server.threads", 64);
+    private static final String KEYSTORE = System.getProperty("quiz.server.keystore");
+    private static final String KEYSTORE_PASSWORD = System.getProperty("quiz.server.keystorePassword", "");
+    private static final String BIND = System.getProperty("quiz.server.bind");
+    private static final long SESSION_IDLE_MS = TimeUnit.HOURS.toMillis(Long.getLong("quiz.server.sessionHours", 12));
+    private static final String UNAUTHENTICATED = "28000";
+    private static final String FORBIDDEN = "42000";
+
+    private static final UserDAO USER_DAO = new UserDAO();
+    private static final QuizDAO QUIZ_DAO = new QuizDAO();
+    private static final QuestionDAO QUESTION_DAO = new QuestionDAO();
+    private static final ResultDAO RESULT_DAO = new ResultDAO();
+    private static final StatsDAO STATS_DAO = new StatsDAO();
+    private static final AttemptDAO ATTEMPT_DAO = new AttemptDAO();
+
+    private static final Map<String, Operation> OPERATIONS = new HashMap<>();
+    // the operations that need no token: logging in and registering a student
+    private static final Set<String> PUBLIC = Set.of("users/login", "users/add", "users/existing");
+    private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    static {
+        // users
+        OPERATIONS.put("users/login", (caller, a) -> login(str(a, "username"), str(a, "password")));
+        OPERATIONS.put("users/add", (caller, a) -> {
+            User user = ApiCodec.toUser(a.get("user"));
+            if (!"STUDENT".equals(user.getRole())) requireTeacher(caller);
+            return USER_DAO.addUser(user);
+        });
+        OPERATIONS.put("users/existing", (caller, a) -> {
+            List<String> usernames = ApiCodec.toList(a.get("usernames"), String::valueOf);
+            // one name at a time for registration, so the user list cannot be harvested
+            if (usernames.size() > 1) requireTeacher(caller);
+            return USER_DAO.findExistingUsernames(usernames);
+        });
+
+        // quizzes and questions
+        OPERATIONS.put("quizzes/get", (caller, a) -> ApiCodec.quiz(visibleQuiz(caller, ApiCodec.intOf(a, "id"))));
+        OPERATIONS.put("quizzes/byTeacher", (caller, a) -> {
+            requireSelf(requireTeacher(caller), ApiCodec.intOf(a, "teacherId"));
+            return ApiCodec.list(QUIZ_DAO.listQuizzesByTeacher(caller.getId()), ApiCodec::quiz);
+        });
+        OPERATIONS.put("quizzes/assigned", (caller, a) -> {
+            requireOwnClass(caller, str(a, "stream"), str(a, "division"));
+            return ApiCodec.list(QUIZ_DAO.listAssignedQuizzes(str(a, "stream"), str(a, "division"),
+                    ApiCodec.intOf(a, "offset"), ApiCodec.intOf(a, "limit")), ApiCodec::quiz);
+        });
+        OPERATIONS.put("quizzes/searchTeacher", (caller, a) -> {
+            requireSelf(requireTeacher(caller), ApiCodec.intOf(a, "teacherId"));
+            return ApiCodec.list(QUIZ_DAO.searchTeacherQuizzes(caller.getId(), str(a, "query"), ApiCodec.intOf(a, "limit")), ApiCodec::quiz);
+        });
+        OPERATIONS.put("quizzes/searchAssigned", (caller, a) -> {
+            requireOwnClass(caller, str(a, "stream"), str(a, "division"));
+            return ApiCodec.list(QUIZ_DAO.searchAssignedQuizzes(str(a, "stream"), str(a, "division"),
+                    str(a, "query"), ApiCodec.intOf(a, "limit")), ApiCodec::quiz);
+        });
+        OPERATIONS.put("quizzes/save", QuizServer::saveQuiz);
+        OPERATIONS.put("quizzes/delete", (caller, a) -> {
+            ownQuiz(caller, ApiCodec.intOf(a, "id"));
+            return QUIZ_DAO.deleteQuiz(ApiCodec.intOf(a, "id"));
+        });
+        OPERATIONS.put("questions/byQuiz", (caller, a) -> {
+            ownQuiz(caller, ApiCodec.intOf(a, "quizId"));
+            return ApiCodec.list(QUESTION_DAO.listQuestionsByQuiz(ApiCodec.intOf(a, "quizId")), ApiCodec::question);
+        });
+        OPERATIONS.put("questions/draw", (caller, a) -> {
+            int studentId = ApiCodec.intOf(a, "studentId");
+            if (isTeacher(caller)) {
+                // a teacher previewing a student's paper of their own quiz sees the answers
+                Quiz quiz = ownQuiz(caller, ApiCodec.intOf(a, "quizId"));
+                return ApiCodec.list(QUESTION_DAO.drawQuestions(quiz, studentId), ApiCodec::question);
+            }
+            requireSelf(caller, studentId);
+            Quiz quiz = visibleQuiz(caller, ApiCodec.intOf(a, "quizId"));
+            return ApiCodec.list(QUESTION_DAO.drawQuestions(quiz, studentId), ApiCodec::questionForStudent);
+        });
+
+        // results and statistics
+        OPERATIONS.put("results/count", (caller, a) -> RESULT_DAO.countResults(visibleResults(caller, a.get("query"))));
+        OPERATIONS.put("results/page", (caller, a) -> {
+            ResultDAO.ResultQuery query = visibleResults(caller, a.get("query"));
+            Result after = a.get("after") == null ? null : ApiCodec.toResult(a.get("after"));
+            return ApiCodec.list(RESULT_DAO.pageResults(query, after, ApiCodec.intOf(a, "limit")), ApiCodec::result);
+        });
+        OPERATIONS.put("results/pageAt", (caller, a) -> ApiCodec.list(RESULT_DAO.pageResultsAt(visibleResults(caller, a.get("query")),
+                ApiCodec.intOf(a, "offset"), ApiCodec.intOf(a, "limit")), ApiCodec::result));
+        OPERATIONS.put("stats/quizzes", (caller, a) -> {
+            requireTeacher(caller);
+            return ApiCodec.statsById(STATS_DAO.getQuizStats(ApiCodec.toList(a.get("quizIds"), ApiCodec::toInt)));
+        });
+        OPERATIONS.put("stats/student", (caller, a) -> {
+            requireSelfOrTeacher(caller, ApiCodec.intOf(a, "studentId"));
+            return ApiCodec.stats(STATS_DAO.getStudentStats(ApiCodec.intOf(a, "studentId")));
+        });
+
+        // attempts: a student's own only
+        OPERATIONS.put("attempts/open", (caller, a) -> {
+            requireSelf(caller, ApiCodec.intOf(a, "studentId"));
+            if (isTeacher(caller)) throw forbidden("Only students attempt quizzes.");
+            Quiz quiz = visibleQuiz(caller, ApiCodec.intOf(a, "quizId"));
+            return ApiCodec.attempt(ATTEMPT_DAO.openAttempt(caller.getId(), quiz.getId()));
+        });
+        OPERATIONS.put("attempts/remaining", (caller, a) -> {
+            requireOwnAttempts(caller, Collections.singleton(ApiCodec.intOf(a, "attemptId")));
+            return ATTEMPT_DAO.secondsRemaining(ApiCodec.intOf(a, "attemptId"));
+        });
+        OPERATIONS.put("attempts/saveAnswers", (caller, a) -> {
+            List<AttemptDAO.AnswerChange> changes = ApiCodec.toList(a.get("changes"), ApiCodec::toAnswerChange);
+            Set<Integer> attemptIds = new HashSet<>();
+            for (AttemptDAO.AnswerChange c : changes) attemptIds.add(c.getAttemptId());
+            requireOwnAttempts(caller, attemptIds);
+            ATTEMPT_DAO.saveAnswers(changes);
+            return null;
+        });
+        OPERATIONS.put("attempts/finalize", QuizServer::finalizeAttempts);
+    }
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+
+    private QuizServer(HttpServer http, ExecutorService executor) {
+        this.http = http;
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        start(port);
+    }
+
+    /** Migrate the schema and start serving on the port; returns once the server is listening. */
+    public static QuizServer start(int port) throws SQLException, IOException {
+        if (RemoteBackend.isEnabled()) {
+            throw new IllegalStateException("quiz.backend is set: the quiz server must use the database itself, not another server");
+        }
+        MigrationRunner.migrate();
+        boolean tls = KEYSTORE != null && !KEYSTORE.isEmpty();
+        InetSocketAddress address = BIND != null ? new InetSocketAddress(BIND, port)
+                : tls ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        HttpServer http = tls ? httpsServer(address) : HttpServer.create(address, 0);
+        ExecutorService executor = requestExecutor();
+        http.setExecutor(executor);
+        http.createContext("/api/", QuizServer::handleApi);
+        http.createContext("/health", QuizServer::handleHealth);
+        QuizServer server = new QuizServer(http, executor);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "quiz-server-shutdown"));
+        http.start();
+        System.out.println("QuizServer: listening on " + (tls ? "https://" : "http://") + address.getHostString() + ":" + port
+                + " (" + OPERATIONS.size() + " operations)");
+        if (!tls && !address.getAddress().isLoopbackAddress()) {
+            System.out.println("QuizServer: WARNING plain HTTP on a network address: passwords and session tokens travel in clear;"
+                    + " set quiz.server.keystore or put a TLS proxy in front");
+        }
+        return server;
+    }
+
+    private static HttpsServer httpsServer(InetSocketAddress address) throws IOException {
+        char[] password = KEYSTORE_PASSWORD.toCharArray();
+        try (InputStream in = Files.newInputStream(Paths.get(KEYSTORE))) {
+            KeyStore keys = KeyStore.getInstance("PKCS12");
+            keys.load(in, password);
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keys, password);
+            SSLContext ssl = SSLContext.getInstance("TLS");
+            ssl.init(kmf.getKeyManagers(), null, null);
+            HttpsServer https = HttpsServer.create(address, 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(ssl));
+            return https;
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot use keystore " + KEYSTORE + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /** Finish the requests in progress (up to 5 seconds), then release the database connections. */
+    public void stop() {
+        http.stop(5);
+        executor.shutdown();
+        DatabaseConnection.shutdown();
+        System.out.println("QuizServer: stopped");
+    }
+
+    // a virtual thread per request on Java 21+, looked up reflectively so the code still builds for Java 17
+    private static ExecutorService requestExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) m.invoke(null);
+            System.out.println("QuizServer: a virtual thread per request");
+            return executor;
+        } catch (ReflectiveOperationException ex) {
+            System.out.println("QuizServer: no virtual threads on this JVM, using " + FALLBACK_THREADS + " request threads");
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, r -> {
+                Thread t = new Thread(r, "quiz-server-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private static void handleApi(HttpExchange ex) throws IOException {
+        try {
+            String operation = ex.getRequestURI().getPath().substring("/api/".length());
+            Operation op = OPERATIONS.get(operation);
+            if (op == null) {
+                reply(ex, 404, error("Unknown operation " + operation, null));
+                return;
+            }
+            if (!"POST".equals(ex.getRequestMethod())) {
+                ex.getResponseHeaders().set("Allow", "POST");
+                reply(ex, 405, error("Use POST", null));
+                return;
+            }
+            // a token that is sent must be valid, also for a public operation (a teacher adding a teacher)
+            User caller = caller(ex);
+            if (caller == null && !PUBLIC.contains(operation)) throw unauthenticated("Log in first.");
+            Map<String, Object> args;
+            try {
+                Object body = Json.parse(readBody(ex));
+                args = body == null ? new HashMap<>() : ApiCodec.map(body);
+            } catch (IllegalArgumentException bad) {
+                reply(ex, 400, error(bad.getMessage(), null));
+                return;
+            }
+            reply(ex, 200, op.run(caller, args));
+        } catch (AccessDenied e) {
+            replyDenied(ex, e);
+        } catch (InvalidLoginException e) {
+            reply(ex, 401, error(e.getMessage(), null));
+        } catch (QuizNotFoundException e) {
+            reply(ex, 404, error(e.getMessage(), null));
+        } catch (IllegalArgumentException e) {
+            reply(ex, 400, error(e.getMessage(), null));
+        } catch (SQLTransientException e) {
+            reply(ex, 503, error(e.getMessage(), e.getSQLState()));
+        } catch (SQLException e) {
+            reply(ex, 500, error(e.getMessage(), e.getSQLState()));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, ex.getRequestURI().getPath() + " failed", e);
+            reply(ex, 500, error("Internal server error", null));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void handleHealth(HttpExchange ex) throws IOException {
+        try {
+            try {
+                requireTeacher(caller(ex));
+            } catch (AccessDenied e) {
+                replyDenied(ex, e);
+                return;
+            }
+            Map<String, Object> health = new LinkedHashMap<>();
+            health.put("pool", DatabaseConnection.getPoolStats().toString());
+            List<Object> caches = new ArrayList<>();
+            for (DaoCache.Stats s : DaoCache.allStats()) caches.add(s.toString());
+            health.put("caches", caches);
+            List<Object> queries = new ArrayList<>();
+            for (QueryStats.MethodSnapshot m : QueryStats.snapshot()) {
+                Map<String, Object> q = new LinkedHashMap<>();
+                q.put("method", m.getMethod());
+                q.put("calls", m.getCalls().toString());
+                q.put("acquire", m.getAcquire().toString());
+                q.put("statements", m.getStatements().toString());
+                q.put("rows", m.getRows());
+                queries.add(q);
+            }
+            health.put("queries", queries);
+            List<Object> slow = new ArrayList<>();
+            for (QueryStats.SlowQuery sq : QueryStats.slowQueries()) slow.add(sq.toString());
+            health.put("slowQueries", slow);
+            reply(ex, 200, health);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static Object login(String username, String password) throws InvalidLoginException {
+        User user = USER_DAO.login(username, password);
+        byte[] bytes = new byte[32];
+        TOKENS.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.currentTimeMillis();
+        SESSIONS.values().removeIf(s -> s.expired(now));
+        SESSIONS.put(token, new Session(user, now));
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("user", ApiCodec.user(user, false));
+        reply.put("token", token);
+        return reply;
+    }
+
+    // the user whose session token the request carries; null if it carries none
+    private static User caller(HttpExchange ex) throws AccessDenied {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if (header == null) return null;
+        if (!header.startsWith("Bearer ")) throw unauthenticated("Expected a bearer token.");
+        String token = header.substring("Bearer ".length()).trim();
+        Session s = SESSIONS.get(token);
+        long now = System.currentTimeMillis();
+        if (s == null || s.expired(now)) {
+            if (s != null) SESSIONS.remove(token, s);
+            throw unauthenticated("Session expired, log in again.");
+        }
+        s.lastUsed = now;
+        return s.user;
+    }
+
+    private static boolean isTeacher(User caller) {
+        return caller != null && "TEACHER".equals(caller.getRole());
+    }
+
+    private static User requireTeacher(User caller) throws AccessDenied {
+        if (caller == null) throw unauthenticated("Log in first.");
+        if (!isTeacher(caller)) throw forbidden("Only teachers may do this.");
+        return caller;
+    }
+
+    private static void requireSelf(User caller, int userId) throws AccessDenied {
+        if (caller.getId() != userId) throw forbidden("Not allowed for another user.");
+    }
+
+    private static void requireSelfOrTeacher(User caller, int userId) throws AccessDenied {
+        if (!isTeacher(caller)) requireSelf(caller, userId);
+    }
+
+    // a student lists only the quizzes of their own class
+    private static void requireOwnClass(User caller, String stream, String division) throws AccessDenied {
+        if (isTeacher(caller)) return;
+        if (!Objects.equals(caller.getStream(), stream) || !Objects.equals(caller.getDivision(), division)) {
+            throw forbidden("Not allowed for another class.");
+        }
+    }
+
+    // a teacher may look at any quiz, a student only at one assigned to their stream and division
+    private static Quiz visibleQuiz(User caller, int quizId) throws SQLException, QuizNotFoundException, AccessDenied {
+        Quiz quiz = QUIZ_DAO.getQuizById(quizId);
+        if (!isTeacher(caller) && !quiz.isTargetedTo(caller.getStream(), caller.getDivision())) {
+            throw forbidden("Quiz " + quizId + " is not assigned to you.");
+        }
+        return quiz;
+    }
+
+    private static Quiz ownQuiz(User caller, int quizId) throws SQLException, QuizNotFoundException, AccessDenied {
+        requireTeacher(caller);
+        Quiz quiz = QUIZ_DAO.getQuizById(quizId);
+        if (quiz.getTeacherId() != caller.getId()) throw forbidden("Quiz " + quizId + " belongs to another teacher.");
+        return quiz;
+    }
+
+    // one quiz's results for the teacher who owns it; one student's for that student or any teacher
+    private static ResultDAO.ResultQuery visibleResults(User caller, Object query) throws SQLException, QuizNotFoundException, AccessDenied {
+        ResultDAO.ResultQuery q = ApiCodec.toQuery(query);
+        if (q.isByQuiz()) ownQuiz(caller, q.getParam());
+        else requireSelfOrTeacher(caller, q.getParam());
+        return q;
+    }
+
+    private static void requireOwnAttempts(User caller, Collection<Integer> attemptIds) throws SQLException, AccessDenied {
+        for (int id : attemptIds) {
+            Attempt attempt = ATTEMPT_DAO.getById(id);
+            if (attempt == null || attempt.getStudentId() != caller.getId()) throw forbidden("Attempt " + id + " is not yours.");
+        }
+    }
+
+    private static Object saveQuiz(User caller, Map<String, Object> a) throws SQLException, QuizNotFoundException, AccessDenied {
+        Quiz quiz = ApiCodec.toQuiz(a.get("quiz"));
+        if (quiz.getId() > 0) ownQuiz(caller, quiz.getId());
+        else requireTeacher(caller);
+        quiz.setTeacherId(caller.getId());
+        List<Question> questions = ApiCodec.toList(a.get("questions"), ApiCodec::toQuestion);
+        for (Question q : questions) {
+            if (AnswerSheet.choiceOf(q.getCorrectOption()) == AnswerSheet.NO_ANSWER) {
+                throw new IllegalArgumentException("Question without a correct option A-D: " + q.getQuestionText());
+            }
+        }
+        int quizId = QUIZ_DAO.saveQuizWithQuestions(quiz, questions);
+        List<Integer> ids = new ArrayList<>(questions.size());
+        for (Question q : questions) ids.add(q.getId());
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("quizId", quizId);
+        reply.put("questionIds", ids);
+        return reply;
+    }
+
+    private static Object finalizeAttempts(User caller, Map<String, Object> a) throws SQLException, AccessDenied {
+        List<Integer> attemptIds = ApiCodec.toList(a.get("attemptIds"), ApiCodec::toInt);
+        List<Result> results = ApiCodec.toList(a.get("results"), ApiCodec::toResult);
+        if (attemptIds.size() != results.size()) throw new IllegalArgumentException("One result per attempt expected");
+        requireOwnAttempts(caller, new HashSet<>(attemptIds));
+        ATTEMPT_DAO.finalizeAttempts(attemptIds, results);
+        return ApiCodec.list(results, ApiCodec::result);
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) throw new IllegalArgumentException("Request larger than " + MAX_BODY_BYTES + " bytes");
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void reply(HttpExchange ex, int status, Object value) throws IOException {
+        byte[] body = Json.write(value).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void replyDenied(HttpExchange ex, AccessDenied e) throws IOException {
+        if (e.status == 401) ex.getResponseHeaders().set("WWW-Authenticate", "Bearer realm=\"quiz\"");
+        reply(ex, e.status, error(e.getMessage(), e.status == 401 ? UNAUTHENTICATED : FORBIDDEN));
+    }
+
+    private static Map<String, Object> error(String message, String sqlState) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("error", message);
+        if (sqlState != null) m.put("sqlState", sqlState);
+        return m;
+    }
+
+    private static String str(Map<String, Object> args, String key) {
+        return ApiCodec.str(args, key);
+    }
+
+    private static AccessDenied unauthenticated(String message) {
+        return new AccessDenied(401, message);
+    }
+
+    private static AccessDenied forbidden(String message) {
+        return new AccessDenied(403, message);
+    }
+
+    /** A request without a valid token (401), or for something its user may not do (403). */
+    static final class AccessDenied extends Exception {
+        final int status;
+
+        AccessDenied(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** A logged-in user, kept while the token is used at least every quiz.server.sessionHours. */
+    private static final class Session {
+        final User user;
+        volatile long lastUsed;
+
+        Session(User user, long now) {
+            this.user = user;
+            this.lastUsed = now;
+        }
+
+        boolean expired(long now) {
+            return now - lastUsed > SESSION_IDLE_MS;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ui;
+
+import dao.AnalyticsDAO;
+import dao.AsyncDao;
+import dao.QuestionDAO;
+import models.Question;
+import models.QuizAnalytics;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+// Item analysis of one quiz; table rows are question indexes into the QuizAnalytics snapshot
+public class AnalyticsController {
+
+    private static final int BUCKET_WIDTH = 10;
+
+    @FXML private Label summaryLabel;
+    @FXML private BarChart<String, Number> histogramChart;
+    @FXML private TableView<Integer> questionsTable;
+    @FXML private TableColumn<Integer, String> colQuestion;
+    @FXML private TableColumn<Integer, String> colCorrect;
+    @FXML private TableColumn<Integer, String> colResponses;
+    @FXML private TableColumn<Integer, String> colDifficulty;
+    @FXML private TableColumn<Integer, String> colDiscrimination;
+    @FXML private TableColumn<Integer, String> colA;
+    @FXML private TableColumn<Integer, String> colB;
+    @FXML private TableColumn<Integer, String> colC;
+    @FXML private TableColumn<Integer, String> colD;
+    @FXML private TableColumn<Integer, String> colBlank;
+
+    private AnalyticsDAO analyticsDAO = new AnalyticsDAO();
+    private QuestionDAO questionDAO = new QuestionDAO();
+    private QuizAnalytics analytics;
+    private Map<Integer, String> questionTexts = new HashMap<>();
+
+    @FXML
+    public void initialize() {
+        questionsTable.setPlaceholder(new Label("Loading analytics..."));
+        bind(colQuestion, q -> {
+            int id = analytics.getQuestionId(q);
+            return "Q" + id + ": " + questionTexts.getOrDefault(id, "");
+        });
+        bind(colCorrect, q -> String.valueOf(analytics.getCorrectOption(q)));
+        bind(colResponses, q -> String.valueOf(analytics.getResponses(q)));
+        bind(colDifficulty, q -> percent(analytics.getDifficulty(q)));
+        bind(colDiscrimination, q -> String.format("%.2f", analytics.getDiscrimination(q)));
+        bind(colA, q -> percent(analytics.getChoiceRate(q, 1)));
+        bind(colB, q -> percent(analytics.getChoiceRate(q, 2)));
+        bind(colC, q -> percent(analytics.getChoiceRate(q, 3)));
+        bind(colD, q -> percent(analytics.getChoiceRate(q, 4)));
+        bind(colBlank, q -> percent(analytics.getChoiceRate(q, 0)));
+    }
+
+    public void loadQuiz(int quizId) {
+        CompletableFuture<QuizAnalytics> stats = AsyncDao.supply(() -> analyticsDAO.getQuizAnalytics(quizId));
+        CompletableFuture<List<Question>> questions = AsyncDao.supply(() -> questionDAO.listQuestionsByQuiz(quizId));
+        CompletableFuture.allOf(stats, questions).whenCompleteAsync((done, error) -> {
+            if (error != null) {
+                summaryLabel.setText("Analytics unavailable.");
+                questionsTable.setPlaceholder(new Label(""));
+                showAlert(Alert.AlertType.ERROR, "Error", UIUtils.errorMessage(error));
+                return;
+            }
+            show(stats.join(), questions.join());
+        }, UIUtils.FX);
+    }
+
+    private void show(QuizAnalytics a, List<Question> questions) {
+        analytics = a;
+        questionTexts.clear();
+        for (Question q : questions) questionTexts.put(q.getId(), q.getQuestionText());
+        summaryLabel.setText(String.format("Attempts: %d    Mean: %.1f%%    Median: %.1f%%    Std dev: %.1f",
+                a.getCount(), a.getMean(), a.getMedian(), a.getStdDev()));
+
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        int[] histogram = a.getHistogram(BUCKET_WIDTH);
+        for (int b = 0; b < histogram.length; b++) {
+            int from = b * BUCKET_WIDTH;
+            int to = b == histogram.length - 1 ? 100 : from + BUCKET_WIDTH - 1;
+            series.getData().add(new XYChart.Data<>(from + "-" + to, histogram[b]));
+        }
+        histogramChart.getData().clear();
+        histogramChart.getData().add(series);
+
+        ObservableList<Integer> rows = FXCollections.observableArrayList();
+        for (int q = 0; q < a.getQuestionCount(); q++) rows.add(q);
+        questionsTable.setPlaceholder(new Label("This quiz has no questions."));
+        questionsTable.setItems(rows);
+    }
+
+    private static void bind(TableColumn<Integer, String> col, IntFunction<String> value) {
+        col.setCellValueFactory(data -> new SimpleStringProperty(value.apply(data.getValue())));
+    }
+
+    private static String percent(double rate) {
+        return String.format("%.0f%%", rate * 100);
+    }
+
+    private void showAlert(Alert.AlertType t, String title, String msg) {
+        Alert a = new Alert(t);
+        a.setTitle(title);
+        a.setHeaderText(null);
+        a.setContentText(msg);
+        a.showAndWait();
+    }
+}
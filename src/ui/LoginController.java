@@ -1,5 +1,6 @@
 package ui;
 
+import dao.AsyncDao;
 import dao.UserDAO;
 import models.User;
 import exceptions.InvalidLoginException;
@@ -7,11 +8,8 @@ import exceptions.InvalidLoginException;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
 import javafx.scene.Scene;
 
-import java.io.File;
 
 public class LoginController {
 
@@ -38,8 +36,27 @@ public class LoginController {
             showAlert(Alert.AlertType.ERROR, "Validation", "Username and password required.");
             return;
         }
+        loginButton.setDisable(true);
+        loginButton.setText("Logging in...");
+        AsyncDao.supply(() -> userDAO.login(username, password))
+                .whenCompleteAsync((user, error) -> {
+                    loginButton.setDisable(false);
+                    loginButton.setText("Login");
+                    if (error != null) {
+                        Throwable cause = UIUtils.rootCause(error);
+                        if (cause instanceof InvalidLoginException) {
+                            showAlert(Alert.AlertType.ERROR, "Login Failed", cause.getMessage());
+                        } else {
+                            showAlert(Alert.AlertType.ERROR, "Error", UIUtils.errorMessage(error));
+                        }
+                        return;
+                    }
+                    onLoggedIn(user, role);
+                }, UIUtils.FX);
+    }
+
+    private void onLoggedIn(User user, String role) {
         try {
-            User user = userDAO.login(username, password);
             if (!user.getRole().equals(role)) {
                 showAlert(Alert.AlertType.ERROR, "Invalid Role", "Logged in user role doesn't match selected role.");
                 return;
@@ -47,27 +64,23 @@ public class LoginController {
             // Navigate based on role
             if ("TEACHER".equals(role)) {
                 openTeacherDashboard(user);
+                ViewRegistry.warmUp(ViewRegistry.View.QUIZ_CREATION, ViewRegistry.View.RESULTS,
+                        ViewRegistry.View.ANALYTICS, ViewRegistry.View.LOGIN);
             } else {
                 openStudentDashboard(user);
+                ViewRegistry.warmUp(ViewRegistry.View.QUIZ_ATTEMPT, ViewRegistry.View.RESULTS, ViewRegistry.View.LOGIN);
             }
             // keep the same stage (dashboard replaces login scene)
             // (handled in openTeacherDashboard/openStudentDashboard)
-        } catch (InvalidLoginException ex) {
-            showAlert(Alert.AlertType.ERROR, "Login Failed", ex.getMessage());
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
         }
     }
 
     private void openTeacherDashboard(User teacher) throws Exception {
-        File fxml = new File("resources/TeacherDashboard.fxml");
-        FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-        Parent root = loader.load();
-        TeacherDashboardController ctrl = loader.getController();
-        ctrl.setTeacher(teacher);
-        Scene scene = new Scene(root);
-        File css = new File("resources/catppuccin-mocha.css");
-        if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
+        ViewRegistry.Loaded<TeacherDashboardController> view = ViewRegistry.load(ViewRegistry.View.TEACHER_DASHBOARD);
+        view.getController().setTeacher(teacher);
+        Scene scene = view.scene();
         // reuse the same stage (replace login scene) if possible
         Stage stage = UIUtils.getStage(loginButton);
         if (stage != null) {
@@ -83,14 +96,9 @@ public class LoginController {
     }
 
     private void openStudentDashboard(User student) throws Exception {
-        File fxml = new File("resources/StudentDashboard.fxml");
-        FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-        Parent root = loader.load();
-        StudentDashboardController ctrl = loader.getController();
-        ctrl.setStudent(student);
-        Scene scene = new Scene(root);
-        File css = new File("resources/catppuccin-mocha.css");
-        if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
+        ViewRegistry.Loaded<StudentDashboardController> view = ViewRegistry.load(ViewRegistry.View.STUDENT_DASHBOARD);
+        view.getController().setStudent(student);
+        Scene scene = view.scene();
         // reuse the same stage (replace login scene) if possible
         Stage stage = UIUtils.getStage(loginButton);
         if (stage != null) {
@@ -118,15 +126,10 @@ public class LoginController {
     @FXML
     private void handleOpenRegister() {
         try {
-            File fxml = new File("resources/Register.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            // apply stylesheet
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) root.getStylesheets().add(css.toURI().toURL().toExternalForm());
+            ViewRegistry.Loaded<RegisterController> view = ViewRegistry.load(ViewRegistry.View.REGISTER);
             Stage stage = new Stage();
             stage.setTitle("Register");
-            stage.setScene(new Scene(root));
+            stage.setScene(view.scene());
             stage.showAndWait();
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
@@ -0,0 +1,114 @@
+package ui;
+
+import dao.AsyncDao;
+import dao.ResultDAO;
+import models.Result;
+import models.StudentResult;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Read-only table model over a paged results query that keeps at most MAX_CACHED_PAGES
+ * pages in memory. size() is the query's row count; get() of a row whose page is not cached
+ * returns LOADING and fetches the page in the background, replacing the placeholders when it
+ * arrives. A TableView only asks for the rows it shows, so scrolling drives the fetching.
+ *
+ * Pages are fetched by keyset from the last row of the page before; the bounds of every
+ * fetched page are kept (one small row per page) so evicted pages can be fetched the same
+ * way again. Only a page jumped to with no known predecessor is fetched by offset.
+ * FX thread only.
+ */
+class PagedResultList extends ObservableListBase<StudentResult> {
+
+    static final int PAGE_SIZE = 100;
+    static final int MAX_CACHED_PAGES = 8;
+    /** Placeholder row of a page that is still loading. */
+    static final StudentResult LOADING = new StudentResult();
+
+    private final ResultDAO resultDAO;
+    private final ResultDAO.ResultQuery query;
+    private final int size;
+    private final Consumer<Throwable> onError;
+    // access order: the least recently shown page is evicted first
+    private final Map<Integer, List<StudentResult>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<StudentResult>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Map<Integer, Result> lastRowOfPage = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private boolean stopped;
+
+    PagedResultList(ResultDAO resultDAO, ResultDAO.ResultQuery query, int size, Consumer<Throwable> onError) {
+        this.resultDAO = resultDAO;
+        this.query = query;
+        this.size = size;
+        this.onError = onError;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public StudentResult get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int page = index / PAGE_SIZE;
+        List<StudentResult> rows = pages.get(page);
+        if (rows == null) {
+            fetch(page);
+            return LOADING;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : LOADING;
+    }
+
+    /** Stop applying fetched pages (the table moved on to another query). */
+    void dispose() {
+        stopped = true;
+    }
+
+    private void fetch(int page) {
+        if (stopped || !loading.add(page)) return;
+        Result after = page == 0 ? null : lastRowOfPage.get(page - 1);
+        AsyncDao.Call<List<StudentResult>> call = page == 0 || after != null
+                ? () -> resultDAO.pageResults(query, after, PAGE_SIZE)
+                : () -> resultDAO.pageResultsAt(query, page * PAGE_SIZE, PAGE_SIZE);
+        AsyncDao.supply(call).whenCompleteAsync((rows, error) -> {
+            loading.remove(page);
+            if (stopped) return;
+            if (error != null) {
+                stopped = true; // report once instead of refetching on every repaint
+                onError.accept(error);
+                return;
+            }
+            pages.put(page, rows);
+            if (!rows.isEmpty()) lastRowOfPage.put(page, keyOf(rows.get(rows.size() - 1)));
+            int from = page * PAGE_SIZE;
+            int to = Math.min(size, from + rows.size());
+            if (from >= to) return;
+            beginChange();
+            for (int i = from; i < to; i++) nextSet(i, LOADING);
+            endChange();
+        }, UIUtils.FX);
+    }
+
+    // only the sort keys of a row are needed to continue after it
+    private static Result keyOf(StudentResult r) {
+        Result key = new Result();
+        key.setId(r.getId());
+        key.setScore(r.getScore());
+        key.setTakenAt(r.getTakenAt());
+        return key;
+    }
+}
@@ -1,242 +1,262 @@
 package ui;
 
+import dao.AsyncDao;
+import dao.AttemptJournal;
+import dao.AttemptSessionService;
 import dao.QuestionDAO;
-import dao.ResultDAO;
+import exceptions.AttemptClosedException;
+import models.AnswerSheet;
 import models.Question;
 import models.Result;
 import models.Quiz;
 import models.User;
 
-import java.util.*;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
 import javafx.scene.control.Alert;
-import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
-public class QuizAttemptController {
+public class QuizAttemptController implements AttemptSessionService.Listener {
 
     @FXML private Label quizTitleLabel;
-    @FXML private VBox questionsContainer;
+    @FXML private ListView<Question> questionsList;
     @FXML private Button submitBtn;
     @FXML private Label timerLabel;
 
     private User student;
     private Quiz quiz;
     private QuestionDAO questionDAO = new QuestionDAO();
-    private ResultDAO resultDAO = new ResultDAO();
 
     private List<Question> questions = new ArrayList<>();
-    private Map<Integer, ToggleGroup> tgMap = new HashMap<>();
-    private LocalDateTime quizStartTime = null;
-    private Timeline timerTimeline = null;
+    // the answer to each question, by position in questions: 0 = unanswered, 1-4 = stored option A-D
+    private byte[] choices = new byte[0];
+    // timing, deadline enforcement and auto-submit of this attempt
+    private AttemptSessionService.Session session = null;
+    // local autosave of this attempt; null if the journal could not be opened
+    private AttemptJournal journal = null;
+    // the student is told once that autosave failed, not for every answer
+    private boolean autosaveWarned = false;
+    // the window was closed; the session, once it is there, keeps going without it
+    private boolean closed = false;
 
+    /** Start the attempt; call once the view's scene is on its stage. */
     public void setStudentAndQuiz(User s, Quiz q) {
         this.student = s;
         this.quiz = q;
         // enforce that student belongs to quiz target stream/division
         try {
-            String ts = q.getTargetStream();
-            String td = q.getTargetDivisions();
-            if (ts == null || ts.trim().isEmpty()) ts = "ALL";
-            if (td == null || td.trim().isEmpty()) td = "ALL";
-            String studentStream = s.getStream() == null ? "" : s.getStream();
-            String studentDiv = s.getDivision() == null ? "" : s.getDivision();
-            studentStream = studentStream.trim();
-            studentDiv = studentDiv.trim();
-            quizStartTime = LocalDateTime.now(); // Set start time immediately
-            boolean streamAllowed = false;
-            for (String part : ts.split(",")) {
-                String p = part.trim();
-                if (p.equalsIgnoreCase("ALL") || p.equalsIgnoreCase(studentStream)) { streamAllowed = true; break; }
-            }
-            boolean divisionAllowed = false;
-            for (String part : td.split(",")) {
-                String p = part.trim();
-                if (p.equalsIgnoreCase("ALL") || p.equalsIgnoreCase(studentDiv)) { divisionAllowed = true; break; }
-            }
-            if (!streamAllowed || !divisionAllowed) {
+            if (!q.isTargetedTo(s.getStream(), s.getDivision())) {
                 showAlert(Alert.AlertType.ERROR, "Not Allowed", "You are not eligible to attempt this quiz.");
                 if (submitBtn != null) submitBtn.setDisable(true);
                 return;
             }
-        } catch (Exception ex) {
-            // ignore and continue to deadline check
-        }
-        // enforce deadline
-        try {
-            if (quiz.getDeadline() != null) {
-                if (LocalDateTime.now().isAfter(quiz.getDeadline())) {
-                    showAlert(Alert.AlertType.ERROR, "Unavailable", "This quiz has passed its deadline and cannot be attempted.");
-                    if (submitBtn != null) submitBtn.setDisable(true);
-                    return;
-                }
-            }
         } catch (Exception ex) {
             // ignore and attempt to load
         }
-        loadQuestions();
-        // start timer UI if applicable
-        startTimerIfNeeded();
+        // deadline and time limit are enforced by the attempt session
+        startAttempt();
     }
 
-    private void loadQuestions() {
-        try {
-            quizTitleLabel.setText(quiz.getTitle());
-            questions = questionDAO.listQuestionsByQuiz(quiz.getId());
-            questionsContainer.getChildren().clear();
-            // record start time for time-limit enforcement
-            quizStartTime = LocalDateTime.now();
-            for (Question qt : questions) {
-                VBox box = new VBox(4);
-                Label qLabel = new Label(qt.getQuestionText());
-                RadioButton ra = new RadioButton("A. " + qt.getOptionA());
-                RadioButton rb = new RadioButton("B. " + qt.getOptionB());
-                RadioButton rc = new RadioButton("C. " + qt.getOptionC());
-                RadioButton rd = new RadioButton("D. " + qt.getOptionD());
-                ToggleGroup tg = new ToggleGroup();
-                ra.setToggleGroup(tg);
-                rb.setToggleGroup(tg);
-                rc.setToggleGroup(tg);
-                rd.setToggleGroup(tg);
-                tgMap.put(qt.getId(), tg);
-                box.getChildren().addAll(qLabel, ra, rb, rc, rd);
-                // use .card style class for consistent theming
-                box.getStyleClass().add("card");
-                questionsContainer.getChildren().add(box);
-            }
-            // update the timer label immediately
-            updateTimerLabel();
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error loading questions", ex.getMessage());
+    // the session resumes a journalled attempt (crash, closed window) before the questions are shown
+    private void startAttempt() {
+        quizTitleLabel.setText(quiz.getTitle());
+        questionsList.setPlaceholder(new Label("Loading questions..."));
+        submitBtn.setDisable(true);
+        // the session keeps timing (and auto-submits) if the window is closed, also while it is starting
+        Stage stage = UIUtils.getStage(submitBtn);
+        if (stage != null) {
+            stage.setOnHidden(e -> {
+                closed = true;
+                if (session != null) session.detach();
+            });
+        }
+        int studentId = student.getId();
+        Quiz q = quiz;
+        AsyncDao.supply(() -> AttemptSessionService.start(studentId, q, questionDAO.drawQuestions(q, studentId), this, UIUtils.FX))
+                .whenCompleteAsync((started, error) -> {
+                    if (closed) {
+                        if (started != null) started.detach();
+                        return;
+                    }
+                    if (error != null) {
+                        questionsList.setPlaceholder(new Label(""));
+                        if (UIUtils.rootCause(error) instanceof AttemptClosedException) {
+                            showAlert(Alert.AlertType.ERROR, "Unavailable", UIUtils.errorMessage(error));
+                        } else {
+                            showAlert(Alert.AlertType.ERROR, "Error loading questions", UIUtils.errorMessage(error));
+                        }
+                        return;
+                    }
+                    session = started;
+                    journal = started.getJournal();
+                    showQuestions(started.getQuestions());
+                    if (journal == null) {
+                        autosaveWarned = true;
+                        showAlert(Alert.AlertType.WARNING, "Autosave unavailable",
+                                "Your answers cannot be saved on this computer. They are kept in this window only, so submit before closing it.");
+                    }
+                }, UIUtils.FX);
+    }
+
+    @FXML
+    public void initialize() {
+        // cells exist only for the visible questions and are reused while scrolling
+        questionsList.setCellFactory(list -> new QuestionCell());
+        questionsList.setFocusTraversable(false);
+    }
+
+    private void showQuestions(List<Question> loaded) {
+        questions = loaded;
+        choices = new byte[questions.size()];
+        if (journal != null) {
+            for (int i = 0; i < choices.length; i++) choices[i] = journal.choiceFor(questions.get(i).getId());
         }
+        questionsList.setPlaceholder(new Label("This quiz has no questions."));
+        questionsList.setItems(FXCollections.observableList(questions));
+        submitBtn.setDisable(false);
+        // update the timer label immediately
+        onTick(session.remainingSeconds());
+    }
+
+    private void recordAnswer(int index, byte choice) {
+        if (choices[index] == choice) return;
+        choices[index] = choice;
+        if (journal == null) return;
+        journal.recordAnswer(questions.get(index).getId(), choice).whenCompleteAsync((v, error) -> {
+            if (error == null || autosaveWarned) return;
+            autosaveWarned = true;
+            showAlert(Alert.AlertType.WARNING, "Autosave failed", UIUtils.errorMessage(error)
+                    + "\nYour answers are still in this window; submit before closing it.");
+        }, UIUtils.FX);
     }
 
     @FXML
     private void handleSubmit() {
-        try {
-            // enforce time limit if set
-            if (quiz.getTimeLimit() != null && quizStartTime != null) {
-                long elapsedMinutes = java.time.Duration.between(quizStartTime, LocalDateTime.now()).toMinutes();
-                if (elapsedMinutes > quiz.getTimeLimit()) {
-                    showAlert(Alert.AlertType.ERROR, "Time Exceeded", "Time limit for this quiz has been exceeded. Submission blocked.");
-                    return;
-                }
+        if (session == null || questions.isEmpty()) {
+            showAlert(Alert.AlertType.WARNING, "No Questions", "No questions to submit.");
+            return;
+        }
+        AnswerSheet answers = new AnswerSheet(questions.size());
+        for (int i = 0; i < choices.length; i++) answers.add(questions.get(i).getId(), choices[i]);
+        submitBtn.setDisable(true);
+        showSubmission(session.submit(answers));
+    }
+
+    /**
+     * One question: its text and four options in the student's order, labelled A-D by
+     * position. Each button carries the stored option it shows, which is what gets recorded.
+     * A cell is rebound to another question as the list scrolls, so the selection is set
+     * from the answer model on every update and never kept in the buttons.
+     */
+    private class QuestionCell extends ListCell<Question> {
+        private final VBox box = new VBox(4);
+        private final Label text = new Label();
+        private final RadioButton[] options = new RadioButton[4];
+        private final ToggleGroup group = new ToggleGroup();
+        private boolean binding = false;
+
+        QuestionCell() {
+            text.setWrapText(true);
+            box.getChildren().add(text);
+            for (int pos = 0; pos < options.length; pos++) {
+                options[pos] = new RadioButton();
+                options[pos].setWrapText(true);
+                options[pos].setToggleGroup(group);
+                box.getChildren().add(options[pos]);
             }
-            if (questions.isEmpty()) {
-                showAlert(Alert.AlertType.WARNING, "No Questions", "No questions to submit.");
+            // use .card style class for consistent theming
+            box.getStyleClass().add("card");
+            // wrap to the list's width instead of widening the cell
+            box.maxWidthProperty().bind(questionsList.widthProperty().subtract(30));
+            group.selectedToggleProperty().addListener((obs, old, sel) -> {
+                if (binding || isEmpty() || getIndex() < 0 || getIndex() >= choices.length) return;
+                recordAnswer(getIndex(), sel == null ? AnswerSheet.NO_ANSWER : (Byte) sel.getUserData());
+            });
+        }
+
+        @Override
+        protected void updateItem(Question q, boolean empty) {
+            super.updateItem(q, empty);
+            if (empty || q == null) {
+                setGraphic(null);
                 return;
             }
-            int total = questions.size();
-            int correct = 0;
-            StringBuilder answers = new StringBuilder();
-            for (Question q : questions) {
-                ToggleGroup tg = tgMap.get(q.getId());
-                String selected = null;
-                if (tg != null && tg.getSelectedToggle() != null) {
-                    RadioButton sel = (RadioButton) tg.getSelectedToggle();
-                    String txt = sel.getText();
-                    selected = txt.substring(0,1);
-                } else {
-                    selected = "-";
-                }
-                answers.append("Q").append(q.getId()).append(":").append(selected).append(";");
-                if (selected != null && selected.length() > 0 && selected.charAt(0) == q.getCorrectOption()) {
-                    correct++;
+            binding = true;
+            try {
+                int index = getIndex();
+                text.setText((index + 1) + ". " + q.getQuestionText());
+                byte chosen = index < choices.length ? choices[index] : AnswerSheet.NO_ANSWER;
+                group.selectToggle(null);
+                for (int pos = 0; pos < options.length; pos++) {
+                    char option = q.optionAt(pos);
+                    byte choice = AnswerSheet.choiceOf(option);
+                    options[pos].setText((char) ('A' + pos) + ". " + q.getOption(option));
+                    options[pos].setUserData(choice);
+                    if (choice == chosen) group.selectToggle(options[pos]);
                 }
+            } finally {
+                binding = false;
             }
-            double score = ((double) correct / total) * 100.0;
-            Result r = new Result();
-            r.setStudentId(student.getId());
-            r.setQuizId(quiz.getId());
-            r.setScore(score);
-            r.setTotalQuestions(total);
-            r.setAnswers(answers.toString());
-            resultDAO.addResult(r);
-
-            showAlert(Alert.AlertType.INFORMATION, "Submitted", "Score: " + String.format("%.2f", score) + "% (" + correct + "/" + total + ")");
-            Stage stage = UIUtils.getStage(submitBtn);
-            if (stage != null) stage.close();
-            // stop timer when leaving
-            stopTimer();
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error submitting", ex.getMessage());
-        }
-    }
-
-    private void startTimerIfNeeded() {
-        stopTimer(); // Stop any existing timer
-        
-        if (quiz == null || quiz.getTimeLimit() == null) {
-            if (timerLabel != null) timerLabel.setText("");
-            return;
+            setGraphic(box);
         }
-        
-        // Initialize timer label immediately
-        updateTimerLabel();
-        
-        // Schedule a Timeline to update every second
-        timerTimeline = new Timeline(new KeyFrame(Duration.seconds(1), ev -> {
-            updateTimerLabel();
-        }));
-        timerTimeline.setCycleCount(Timeline.INDEFINITE);
-        timerTimeline.play();
     }
 
-    private void stopTimer() {
-        if (timerTimeline != null) {
-            timerTimeline.stop();
-            timerTimeline = null;
-        }
+    // with a journal the submission counts once it is on local disk; it is uploaded in the background
+    private void showSubmission(CompletableFuture<Result> submitted) {
+        submitted.whenCompleteAsync((r, error) -> {
+            if (error != null) {
+                boolean closed = UIUtils.rootCause(error) instanceof AttemptClosedException;
+                submitBtn.setDisable(closed);
+                showAlert(Alert.AlertType.ERROR, closed ? "Time Exceeded" : "Error submitting", UIUtils.errorMessage(error));
+                return;
+            }
+            if (session.hasAnswerKey() || r.getId() > 0) {
+                int correct = (int) Math.round(r.getScore() * r.getTotalQuestions() / 100.0);
+                showAlert(Alert.AlertType.INFORMATION, "Submitted", "Score: " + String.format("%.2f", r.getScore()) + "% (" + correct + "/" + r.getTotalQuestions() + ")");
+            } else {
+                // graded by the quiz server once uploaded
+                showAlert(Alert.AlertType.INFORMATION, "Submitted", "Your answers have been submitted. Your score will appear in your results.");
+            }
+            Stage stage = UIUtils.getStage(submitBtn);
+            if (stage != null) stage.close();
+        }, UIUtils.FX);
     }
 
-    private void updateTimerLabel() {
-        if (timerLabel == null) return;
-        if (quiz == null || quiz.getTimeLimit() == null || quizStartTime == null) {
+    @Override
+    public void onTick(long remaining) {
+        if (timerLabel == null || closed) return;
+        if (remaining == Long.MAX_VALUE) {
             timerLabel.setText("");
             return;
         }
-            Platform.runLater(() -> {
-                long elapsedSeconds = java.time.Duration.between(quizStartTime, LocalDateTime.now()).getSeconds();
-                long totalSeconds = quiz.getTimeLimit() * 60L;
-                long remaining = totalSeconds - elapsedSeconds;
-            
-                if (remaining <= 0) {
-                    timerLabel.setText("Time's Up!");
-                    timerLabel.setStyle("-fx-text-fill: red;");
-                    // Auto-submit when time is up
-                    if (submitBtn != null && !submitBtn.isDisabled()) {
-                        submitBtn.setDisable(true);
-                        handleSubmit();
-                    }
-                    stopTimer();
-                    showAlert(Alert.AlertType.WARNING, "Time's Up!", "Your time has expired. The quiz will be submitted automatically.");
-                    return;
-                }
-            
-                long mins = remaining / 60;
-                long secs = remaining % 60;
-                timerLabel.setText(String.format("Time remaining: %02d:%02d", mins, secs));
-            
-                // Make timer red when less than 5 minutes remain
-                if (remaining <= 300) {
-                    timerLabel.setStyle("-fx-text-fill: red;");
-                } else {
-                    timerLabel.setStyle("");
-                }
-            });
+        long mins = remaining / 60;
+        long secs = remaining % 60;
+        timerLabel.setText(String.format("Time remaining: %02d:%02d", mins, secs));
+        // Make timer red when less than 5 minutes remain
+        timerLabel.setStyle(remaining <= 300 ? "-fx-text-fill: red;" : "");
+    }
+
+    @Override
+    public void onExpired(CompletableFuture<Result> submitted) {
+        if (closed) return; // a tick queued before the session was detached
+        timerLabel.setText("Time's Up!");
+        timerLabel.setStyle("-fx-text-fill: red;");
+        // submit before the alert: the grace period keeps running while it is open
+        if (submitted != null) showSubmission(submitted);
+        else handleSubmit();
+        submitBtn.setDisable(true);
+        showAlert(Alert.AlertType.WARNING, "Time's Up!", "Your time has expired. The quiz will be submitted automatically.");
     }
 
     private void showAlert(Alert.AlertType t, String title, String msg) {
@@ -23,9 +23,12 @@ public class QuizCreationController {
     @FXML private TextField timeLimitField;
     @FXML private ChoiceBox<String> targetStreamChoice;
     @FXML private TextField targetDivisionsField;
+    @FXML private TextField drawCountField;
+    @FXML private TextField poolTagField;
     @FXML private TextField qText;
     @FXML private TextField optA, optB, optC, optD;
     @FXML private ChoiceBox<String> correctChoice;
+    @FXML private TextField qTag;
     @FXML private Button addQuestionBtn;
     @FXML private ListView<Question> questionsListView;
     @FXML private Button saveQuizBtn;
@@ -47,7 +50,8 @@ public class QuizCreationController {
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    setText(item.getQuestionText() + " (Correct: " + item.getCorrectOption() + ")");
+                    String tag = item.getTag() != null ? " [" + item.getTag() + "]" : "";
+                    setText(item.getQuestionText() + " (Correct: " + item.getCorrectOption() + ")" + tag);
                     // style the cell for dark background
                     setStyle("-fx-background-color: #0f0e16; -fx-text-fill: #c6c7d0;");
                 }
@@ -65,9 +69,10 @@ public class QuizCreationController {
         delete.setOnAction(e -> {
             Question sel = questionsListView.getSelectionModel().getSelectedItem();
             if (sel != null) {
-                // if it already exists in DB (has id > 0) delete it there too
-                if (sel.getId() > 0) {
-                    try {
+                // removal from the DB is applied as part of the diff on save
+                questions.remove(sel);
+            }
+        });
         // Initialize target stream choices if not already done
         if (targetStreamChoice != null && targetStreamChoice.getItems().isEmpty()) {
             targetStreamChoice.setItems(FXCollections.observableArrayList("ALL", "CSE", "IT", "MECH", "CIVIL", "ELEC"));
@@ -83,17 +88,17 @@ public class QuizCreationController {
             timeLimitField.setPromptText("Enter time limit in minutes");
         }
         
+        if (drawCountField != null) {
+            drawCountField.textProperty().addListener((obs, oldVal, newVal) -> {
+                if (!newVal.matches("\\d*")) {
+                    drawCountField.setText(newVal.replaceAll("[^\\d]", ""));
+                }
+            });
+        }
+
         if (deadlineField != null) {
             deadlineField.setPromptText("YYYY-MM-DDTHH:MM (e.g. 2025-12-31T23:59)");
         }
-                        questionDAO.deleteQuestion(sel.getId());
-                    } catch (Exception ex) {
-                        showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
-                    }
-                }
-                questions.remove(sel);
-            }
-        });
         cm.getItems().add(delete);
         questionsListView.setContextMenu(cm);
         questionsListView.setOnKeyPressed(ev -> {
@@ -101,13 +106,6 @@ public class QuizCreationController {
                 case DELETE -> {
                     Question sel = questionsListView.getSelectionModel().getSelectedItem();
                     if (sel != null) {
-                        if (sel.getId() > 0) {
-                            try {
-                                questionDAO.deleteQuestion(sel.getId());
-                            } catch (Exception ex) {
-                                showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
-                            }
-                        }
                         questions.remove(sel);
                     }
                 }
@@ -123,6 +121,8 @@ public class QuizCreationController {
             this.editingQuiz = q;
             titleField.setText(q.getTitle());
             descriptionArea.setText(q.getDescription());
+            if (drawCountField != null && q.getDrawCount() != null) drawCountField.setText(String.valueOf(q.getDrawCount()));
+            if (poolTagField != null && q.getPoolTag() != null) poolTagField.setText(q.getPoolTag());
             List<Question> qlist = questionDAO.listQuestionsByQuiz(q.getId());
             questions.setAll(qlist);
         } catch (Exception ex) {
@@ -149,7 +149,9 @@ public class QuizCreationController {
         q.setOptionC(c);
         q.setOptionD(d);
         q.setCorrectOption(corr.charAt(0));
+        if (qTag != null && !qTag.getText().trim().isEmpty()) q.setTag(qTag.getText().trim());
         questions.add(q);
+        // the tag is kept for the next question: a pool is usually entered in one go
         qText.clear(); optA.clear(); optB.clear(); optC.clear(); optD.clear();
     }
 
@@ -160,8 +162,25 @@ public class QuizCreationController {
             showAlert(Alert.AlertType.ERROR, "Validation", "Quiz title is required.");
             return;
         }
+        Integer drawCount = null;
+        String poolTag = null;
+        if (drawCountField != null && !drawCountField.getText().trim().isEmpty()) {
+            drawCount = Integer.parseInt(drawCountField.getText().trim());
+        }
+        if (poolTagField != null && !poolTagField.getText().trim().isEmpty()) {
+            poolTag = poolTagField.getText().trim();
+        }
+        int poolSize = 0;
+        for (Question q : questions) {
+            if (poolTag == null || poolTag.equalsIgnoreCase(q.getTag())) poolSize++;
+        }
+        if (drawCount != null && (drawCount < 1 || drawCount > poolSize)) {
+            showAlert(Alert.AlertType.ERROR, "Validation", "Questions per student must be between 1 and " + poolSize
+                    + (poolTag != null ? ", the number of questions tagged " + poolTag + "." : ", the number of questions."));
+            return;
+        }
         try {
-            int quizId;
+            Quiz target;
             if (editingQuiz == null) {
                 Quiz q = new Quiz();
                 q.setTitle(title);
@@ -187,7 +206,9 @@ public class QuizCreationController {
                 }
                 if (targetStreamChoice != null) q.setTargetStream(targetStreamChoice.getValue());
                 if (targetDivisionsField != null) q.setTargetDivisions(targetDivisionsField.getText().trim());
-                quizId = quizDAO.addQuiz(q);
+                q.setDrawCount(drawCount);
+                q.setPoolTag(poolTag);
+                target = q;
             } else {
                 editingQuiz.setTitle(title);
                 editingQuiz.setDescription(descriptionArea.getText());
@@ -211,14 +232,13 @@ public class QuizCreationController {
                 }
                 if (targetStreamChoice != null) editingQuiz.setTargetStream(targetStreamChoice.getValue());
                 if (targetDivisionsField != null) editingQuiz.setTargetDivisions(targetDivisionsField.getText().trim());
-                quizDAO.updateQuiz(editingQuiz);
-                quizId = editingQuiz.getId();
+                editingQuiz.setDrawCount(drawCount);
+                editingQuiz.setPoolTag(poolTag);
+                target = editingQuiz;
             }
 
-            for (Question question : questions) {
-                question.setQuizId(quizId);
-                questionDAO.addQuestion(question);
-            }
+            // quiz row plus question inserts/updates/deletes in one batched transaction
+            quizDAO.saveQuizWithQuestions(target, questions);
 
             showAlert(Alert.AlertType.INFORMATION, "Saved", "Quiz saved successfully.");
             Stage stage = UIUtils.getStage(saveQuizBtn);
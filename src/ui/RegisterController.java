@@ -4,13 +4,10 @@ import dao.UserDAO;
 import models.User;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 
-import java.io.File;
 
 public class RegisterController {
 
@@ -46,13 +43,10 @@ public class RegisterController {
             return;
         }
         try {
-            // check username uniqueness
-            java.util.List<models.User> existing = userDAO.listUsers();
-            for (models.User exu : existing) {
-                if (exu.getUsername().equalsIgnoreCase(u)) {
-                    showAlert(Alert.AlertType.ERROR, "Validation", "Username already exists. Choose another.");
-                    return;
-                }
+            // check username uniqueness (the column's collation ignores case)
+            if (!userDAO.findExistingUsernames(java.util.List.of(u)).isEmpty()) {
+                showAlert(Alert.AlertType.ERROR, "Validation", "Username already exists. Choose another.");
+                return;
             }
         } catch (Exception ioe) {
             // non-fatal, proceed to attempt insert and handle DB errors
@@ -73,18 +67,10 @@ public class RegisterController {
             int newId = userDAO.addUser(user);
             user.setId(newId);
 
-            // prepare CSS URL if present
-            File css = new File("resources/catppuccin-mocha.css");
-            String cssUrl = null;
-            if (css.exists()) cssUrl = css.toURI().toURL().toExternalForm();
             if ("TEACHER".equals(role)) {
-                File fxml = new File("resources/TeacherDashboard.fxml");
-                FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-                Parent root = loader.load();
-                TeacherDashboardController ctrl = loader.getController();
-                ctrl.setTeacher(user);
-                Scene scene = new Scene(root);
-                if (cssUrl != null) scene.getStylesheets().add(cssUrl);
+                ViewRegistry.Loaded<TeacherDashboardController> view = ViewRegistry.load(ViewRegistry.View.TEACHER_DASHBOARD);
+                view.getController().setTeacher(user);
+                Scene scene = view.scene();
                 // reuse the register stage as the app window
                 Stage st = UIUtils.getStage(username);
                 if (st != null) {
@@ -98,13 +84,9 @@ public class RegisterController {
                     tmp.show();
                 }
             } else {
-                File fxml = new File("resources/StudentDashboard.fxml");
-                FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-                Parent root = loader.load();
-                StudentDashboardController ctrl = loader.getController();
-                ctrl.setStudent(user);
-                Scene scene = new Scene(root);
-                if (cssUrl != null) scene.getStylesheets().add(cssUrl);
+                ViewRegistry.Loaded<StudentDashboardController> view = ViewRegistry.load(ViewRegistry.View.STUDENT_DASHBOARD);
+                view.getController().setStudent(user);
+                Scene scene = view.scene();
                 Stage st = UIUtils.getStage(username);
                 if (st != null) {
                     st.setTitle("Student Dashboard - " + user.getFullName());
@@ -1,82 +1,92 @@
 package ui;
 
+import dao.AsyncDao;
 import dao.ResultDAO;
-import dao.UserDAO;
 import dao.QuizDAO;
-import models.Result;
+import models.StudentResult;
 import models.User;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.animation.PauseTransition;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.util.Callback;
+import javafx.util.Duration;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class ResultsController {
 
-    @FXML private TableView<Result> resultsTable;
-    @FXML private TableColumn<Result, Integer> colId;
-    @FXML private TableColumn<Result, Integer> colQuizId;
-    @FXML private TableColumn<Result, Double> colScore;
-    @FXML private TableColumn<Result, Integer> colTotal;
-    @FXML private TableColumn<Result, String> colAnswers;
-    @FXML private TableColumn<Result, String> colStudent;
-    @FXML private TableColumn<Result, String> colStudentClass;
+    @FXML private TextField filterField;
+    @FXML private TableView<StudentResult> resultsTable;
+    @FXML private TableColumn<StudentResult, Integer> colId;
+    @FXML private TableColumn<StudentResult, Integer> colQuizId;
+    @FXML private TableColumn<StudentResult, Double> colScore;
+    @FXML private TableColumn<StudentResult, Integer> colTotal;
+    @FXML private TableColumn<StudentResult, String> colAnswers;
+    @FXML private TableColumn<StudentResult, String> colStudent;
+    @FXML private TableColumn<StudentResult, String> colStudentClass;
 
     private User student;
     private ResultDAO resultDAO = new ResultDAO();
-    private UserDAO userDAO = new UserDAO();
     private QuizDAO quizDAO = new QuizDAO();
-    private ObservableList<Result> results = FXCollections.observableArrayList();
+    // sorted and filtered in the database; the table holds only a few pages of it
+    private ResultDAO.ResultQuery query;
+    private PagedResultList results;
+    private final AsyncDao.Latest<Integer> loadRequest = new AsyncDao.Latest<>();
+    private final PauseTransition filterDelay = new PauseTransition(Duration.millis(300));
 
     public void setStudent(User s) {
         this.student = s;
-        loadResults();
+        load(ResultDAO.ResultQuery.byStudent(s.getId()));
     }
 
     // allow programmatic loading of results for a specific quiz (teacher view)
     public void loadResultsByQuiz(int quizId) {
-        try {
-            List<Result> list = resultDAO.listResultsByQuiz(quizId);
-            results.setAll(list);
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
-        }
+        load(ResultDAO.ResultQuery.byQuiz(quizId));
     }
 
     @FXML
     public void initialize() {
-        colId.setCellValueFactory(data -> new javafx.beans.property.SimpleObjectProperty<>(data.getValue().getId()));
-        colQuizId.setCellValueFactory(data -> new javafx.beans.property.SimpleObjectProperty<>(data.getValue().getQuizId()));
-        colScore.setCellValueFactory(data -> new javafx.beans.property.SimpleObjectProperty<>(data.getValue().getScore()));
-        colTotal.setCellValueFactory(data -> new javafx.beans.property.SimpleObjectProperty<>(data.getValue().getTotalQuestions()));
-        colAnswers.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getAnswers()));
-        // Show student info in format RollNo_Name_Stream_Class with abbreviations for teacher view
-        colStudent.setCellValueFactory(data -> {
-            try {
-                User u = userDAO.getById(data.getValue().getStudentId());
-                if (u == null) return new javafx.beans.property.SimpleStringProperty("");
-                String roll = u.getRollNumber() != null ? u.getRollNumber() : "";
-                String name = u.getFullName() != null ? u.getFullName() : "";
-                String stream = u.getStream() != null ? u.getStream() : "";
-                String div = u.getDivision() != null ? u.getDivision() : "";
-                String abbr = ResultsController.streamAbbr(stream);
-                String info = String.format("%s_%s_%s_%s", roll, name, abbr, div);
-                return new javafx.beans.property.SimpleStringProperty(info);
-            } catch (Exception ex) {
-                return new javafx.beans.property.SimpleStringProperty("");
+        colId.setCellValueFactory(cell(StudentResult::getId));
+        colQuizId.setCellValueFactory(cell(StudentResult::getQuizId));
+        colScore.setCellValueFactory(cell(StudentResult::getScore));
+        colTotal.setCellValueFactory(cell(StudentResult::getTotalQuestions));
+        colAnswers.setCellValueFactory(cell(StudentResult::getAnswers));
+        // Show student info in format RollNo_Name_Stream_Class with abbreviations for teacher view.
+        // Student columns come from the joined results query, so no per-row user lookups here.
+        colStudent.setCellValueFactory(cell(r -> {
+            String roll = r.getRollNumber() != null ? r.getRollNumber() : "";
+            String name = r.getStudentName() != null ? r.getStudentName() : "";
+            String stream = r.getStream() != null ? r.getStream() : "";
+            String div = r.getDivision() != null ? r.getDivision() : "";
+            String abbr = ResultsController.streamAbbr(stream);
+            return String.format("%s_%s_%s_%s", roll, name, abbr, div);
+        }));
+        colStudentClass.setCellValueFactory(cell(r -> r.getStudentClass() != null ? r.getStudentClass() : ""));
+
+        // sorting happens in the database: only the score column sorts, anything else is newest first
+        for (TableColumn<StudentResult, ?> col : resultsTable.getColumns()) col.setSortable(col == colScore);
+        resultsTable.setSortPolicy(table -> {
+            ResultDAO.ResultSort sort = ResultDAO.ResultSort.NEWEST;
+            if (!table.getSortOrder().isEmpty()) {
+                sort = colScore.getSortType() == TableColumn.SortType.DESCENDING
+                        ? ResultDAO.ResultSort.HIGHEST_SCORE : ResultDAO.ResultSort.LOWEST_SCORE;
             }
+            if (query != null && query.getSort() != sort) load(query.sortedBy(sort));
+            return true;
         });
-        colStudentClass.setCellValueFactory(data -> {
-            try {
-                User u = userDAO.getById(data.getValue().getStudentId());
-                return new javafx.beans.property.SimpleStringProperty(u != null ? (u.getStudentClass()!=null ? u.getStudentClass() : "") : "");
-            } catch (Exception ex) {
-                return new javafx.beans.property.SimpleStringProperty("");
-            }
+        filterDelay.setOnFinished(e -> {
+            if (query != null) load(query.withFilter(filterField.getText()));
         });
-        resultsTable.setItems(results);
+        filterField.textProperty().addListener((obs, oldText, newText) -> filterDelay.playFromStart());
+    }
+
+    // cell value of a loaded row; placeholder rows of pages still loading stay blank
+    private static <T> Callback<TableColumn.CellDataFeatures<StudentResult, T>, ObservableValue<T>> cell(Function<StudentResult, T> value) {
+        return data -> new SimpleObjectProperty<>(data.getValue() == PagedResultList.LOADING ? null : value.apply(data.getValue()));
     }
 
     // Helper for stream abbreviation
@@ -91,13 +101,24 @@ public class ResultsController {
     }
     
 
-    private void loadResults() {
-        try {
-            List<Result> list = resultDAO.listResultsByStudent(student.getId());
-            results.setAll(list);
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
-        }
+    // count first so the table can size its scroll bar; rows are fetched page by page as they are shown
+    private void load(ResultDAO.ResultQuery q) {
+        query = q;
+        if (results != null) results.dispose();
+        resultsTable.setPlaceholder(new Label("Loading results..."));
+        CompletableFuture<Integer> request = loadRequest.submit(() -> resultDAO.countResults(q));
+        request.whenCompleteAsync((count, error) -> {
+            if (!loadRequest.isCurrent(request)) return;
+            resultsTable.setPlaceholder(new Label("No results yet."));
+            if (error != null) {
+                if (!UIUtils.isCancelled(error)) showAlert(Alert.AlertType.ERROR, "Error", UIUtils.errorMessage(error));
+                return;
+            }
+            results = new PagedResultList(resultDAO, q, count,
+                    e -> showAlert(Alert.AlertType.ERROR, "Error", UIUtils.errorMessage(e)));
+            resultsTable.setItems(results);
+            resultsTable.scrollTo(0);
+        }, UIUtils.FX);
     }
 
     private void showAlert(Alert.AlertType t, String title, String msg) {
@@ -1,23 +1,28 @@
 package ui;
 
+import dao.AsyncDao;
 import dao.QuizDAO;
+import dao.StatsDAO;
 import models.Quiz;
 import models.User;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 
-import java.io.File;
+import javafx.util.Duration;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
 
 public class StudentDashboardController {
 
+    private static final Logger LOG = Logger.getLogger(StudentDashboardController.class.getName());
+
     @FXML private TableView<Quiz> quizzesTable;
     @FXML private TableColumn<Quiz, Integer> colId;
     @FXML private TableColumn<Quiz, String> colTitle;
@@ -28,16 +33,43 @@ public class StudentDashboardController {
     @FXML private Button takeQuizButton;
     @FXML private Button viewResultsButton;
     @FXML private Label studentLabel;
+    @FXML private Label progressLabel;
     @FXML private Button signOutButton;
 
+    private static final int PAGE_SIZE = 100;
+
     private User student;
     private QuizDAO quizDAO = new QuizDAO();
+    private StatsDAO statsDAO = new StatsDAO();
     private ObservableList<Quiz> quizList = FXCollections.observableArrayList();
+    private boolean morePages = true;
+    // the page fetch in flight; a reload supersedes (cancels) it
+    private final AsyncDao.Latest<List<Quiz>> pageRequest = new AsyncDao.Latest<>();
+    private boolean loadingPage = false;
+
+    private static final int SEARCH_LIMIT = 200;
+    // searches run once typing pauses; a newer query cancels the one in flight
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(200));
+    private final AsyncDao.Latest<List<Quiz>> searchRequest = new AsyncDao.Latest<>();
 
     public void setStudent(User s) {
         this.student = s;
         studentLabel.setText("Logged in as: " + student.getFullName());
         loadQuizzes();
+        loadProgress();
+    }
+
+    // a single row of the student's score aggregate
+    private void loadProgress() {
+        int studentId = student.getId();
+        AsyncDao.supply(() -> statsDAO.getStudentStats(studentId)).whenCompleteAsync((stats, error) -> {
+            if (error != null) {
+                LOG.warning("Could not load progress: " + UIUtils.errorMessage(error));
+                return;
+            }
+            progressLabel.setText(stats.getCount() == 0 ? "No quizzes taken yet"
+                    : String.format("%d quizzes taken, average %.1f%%, best %.1f%%", stats.getCount(), stats.getAverage(), stats.getMax()));
+        }, UIUtils.FX);
     }
 
     @FXML
@@ -66,47 +98,52 @@ public class StudentDashboardController {
         if (signOutButton != null) {
             signOutButton.setOnAction(e -> handleSignOut());
         }
+        // search as the user types, once typing pauses
+        searchDelay.setOnFinished(e -> handleSearch());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+        // fetch further pages as the student scrolls down
+        UIUtils.onScrolledToBottom(quizzesTable, this::loadNextPage);
     }
 
     private void loadQuizzes() {
-        try {
-            List<Quiz> list = quizDAO.listQuizzes();
-            // filter quizzes: only those targeted to this student's stream/division or ALL
-            java.util.List<Quiz> filtered = new java.util.ArrayList<>();
-            for (Quiz q : list) {
-                if (isAssignedToStudent(q)) filtered.add(q);
+        pageRequest.cancel();
+        loadingPage = false;
+        quizList.clear();
+        morePages = true;
+        searchRequest.cancel();
+        searchField.clear();
+        quizzesTable.setItems(quizList);
+        loadNextPage();
+    }
+
+    // the DAO returns only quizzes assigned to this student and still open, one page at a time
+    private void loadNextPage() {
+        // paging applies to the full list, not to search results
+        if (student == null || !morePages || loadingPage || quizzesTable.getItems() != quizList) return;
+        loadingPage = true;
+        quizzesTable.setPlaceholder(new Label("Loading quizzes..."));
+        String stream = student.getStream();
+        String division = student.getDivision();
+        int offset = quizList.size();
+        CompletableFuture<List<Quiz>> request = pageRequest.submit(
+                () -> quizDAO.listAssignedQuizzes(stream, division, offset, PAGE_SIZE));
+        request.whenCompleteAsync((page, error) -> {
+            if (!pageRequest.isCurrent(request)) return; // superseded by a reload
+            loadingPage = false;
+            quizzesTable.setPlaceholder(new Label("No quizzes assigned to you."));
+            if (error != null) {
+                morePages = false;
+                if (!UIUtils.isCancelled(error)) showAlert(Alert.AlertType.ERROR, "Error loading", UIUtils.errorMessage(error));
+                return;
             }
-            quizList.setAll(filtered);
-            quizzesTable.setItems(quizList);
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error loading", ex.getMessage());
-        }
+            quizList.addAll(page);
+            morePages = page.size() == PAGE_SIZE;
+        }, UIUtils.FX);
     }
 
     private boolean isAssignedToStudent(Quiz q) {
         if (student == null) return false;
-        // target_stream: comma-separated or 'ALL'
-        String ts = q.getTargetStream();
-        String td = q.getTargetDivisions();
-        if (ts == null || ts.trim().isEmpty()) ts = "ALL";
-        if (td == null || td.trim().isEmpty()) td = "ALL";
-        String studentStream = student.getStream();
-        String studentDivision = student.getDivision();
-    if (studentStream == null) studentStream = "";
-    if (studentDivision == null) studentDivision = "";
-    studentStream = studentStream.trim();
-    studentDivision = studentDivision.trim();
-        boolean streamAllowed = false;
-        for (String part : ts.split(",")) {
-            String p = part.trim();
-            if (p.equalsIgnoreCase("ALL") || p.equalsIgnoreCase(studentStream)) { streamAllowed = true; break; }
-        }
-        boolean divisionAllowed = false;
-        for (String part : td.split(",")) {
-            String p = part.trim();
-            if (p.equalsIgnoreCase("ALL") || p.equalsIgnoreCase(studentDivision)) { divisionAllowed = true; break; }
-        }
-        return streamAllowed && divisionAllowed;
+        return q.isTargetedTo(student.getStream(), student.getDivision());
     }
 
     @FXML
@@ -126,17 +163,12 @@ public class StudentDashboardController {
             return;
         }
         try {
-            File fxml = new File("resources/QuizAttempt.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            QuizAttemptController ctrl = loader.getController();
-            ctrl.setStudentAndQuiz(student, sel);
+            ViewRegistry.Loaded<QuizAttemptController> view = ViewRegistry.load(ViewRegistry.View.QUIZ_ATTEMPT);
             Stage stage = new Stage();
             stage.setTitle("Take Quiz - " + sel.getTitle());
-            Scene s = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) s.getStylesheets().add(css.toURI().toURL().toExternalForm());
-            stage.setScene(s);
+            stage.setScene(view.scene());
+            // on its stage first, so the attempt can follow the window being closed while it loads
+            view.getController().setStudentAndQuiz(student, sel);
             stage.showAndWait();
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error opening quiz", ex.getMessage());
@@ -146,37 +178,37 @@ public class StudentDashboardController {
     @FXML
     private void handleViewResults() {
         try {
-            File fxml = new File("resources/Results.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            ResultsController ctrl = loader.getController();
-            ctrl.setStudent(student);
+            ViewRegistry.Loaded<ResultsController> view = ViewRegistry.load(ViewRegistry.View.RESULTS);
+            view.getController().setStudent(student);
             Stage stage = new Stage();
             stage.setTitle("Your Results");
-            Scene s = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) s.getStylesheets().add(css.toURI().toURL().toExternalForm());
-            stage.setScene(s);
+            stage.setScene(view.scene());
             stage.showAndWait();
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
         }
     }
 
-    @FXML
+    // Search the whole catalog (not only the loaded rows) through the DAO's search index
     private void handleSearch() {
-        String q = searchField.getText().trim().toLowerCase();
-        if (q.isEmpty()) {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            searchRequest.cancel();
             quizzesTable.setItems(quizList);
             return;
         }
-        ObservableList<Quiz> filtered = FXCollections.observableArrayList();
-        for (Quiz quiz : quizList) {
-            if (quiz.getTitle().toLowerCase().contains(q) || (quiz.getDescription()!=null && quiz.getDescription().toLowerCase().contains(q))) {
-                filtered.add(quiz);
+        if (student == null) return;
+        String stream = student.getStream();
+        String division = student.getDivision();
+        CompletableFuture<List<Quiz>> request = searchRequest.submit(() -> quizDAO.searchAssignedQuizzes(stream, division, query, SEARCH_LIMIT));
+        request.whenCompleteAsync((found, error) -> {
+            if (!searchRequest.isCurrent(request)) return; // a newer query is running
+            if (error != null) {
+                if (!UIUtils.isCancelled(error)) showAlert(Alert.AlertType.ERROR, "Search failed", UIUtils.errorMessage(error));
+                return;
             }
-        }
-        quizzesTable.setItems(filtered);
+            quizzesTable.setItems(FXCollections.observableArrayList(found));
+        }, UIUtils.FX);
     }
 
     private void showAlert(Alert.AlertType t, String title, String msg) {
@@ -193,14 +225,9 @@ public class StudentDashboardController {
             // replace current scene on same stage with login scene (safe)
             Stage st = ui.UIUtils.getStage(studentLabel);
             if (st == null) return;
-            File fxml = new File("resources/Login.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            Scene scene = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
+            ViewRegistry.Loaded<LoginController> view = ViewRegistry.load(ViewRegistry.View.LOGIN);
             st.setTitle("Online Quiz Management System - Login");
-            st.setScene(scene);
+            st.setScene(view.scene());
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
         }
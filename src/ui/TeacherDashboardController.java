@@ -1,37 +1,72 @@
 package ui;
 
+import dao.AsyncDao;
 import dao.QuizDAO;
+import dao.ResultExporter;
+import dao.StatsDAO;
 import models.Quiz;
+import models.ScoreStats;
 import models.User;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import javafx.util.Duration;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
 
 public class TeacherDashboardController {
 
+    private static final Logger LOG = Logger.getLogger(TeacherDashboardController.class.getName());
+
     @FXML private TableView<Quiz> quizzesTable;
     @FXML private TableColumn<Quiz, Integer> colId;
     @FXML private TableColumn<Quiz, String> colTitle;
     @FXML private TableColumn<Quiz, String> colDesc;
+    @FXML private TableColumn<Quiz, String> colResults;
+    @FXML private TableColumn<Quiz, String> colAverage;
     @FXML private TextField searchField;
     @FXML private Button createQuizButton;
     @FXML private Button editQuizButton;
     @FXML private Button deleteQuizButton;
     @FXML private Button viewResultsButton;
+    @FXML private Button analyticsButton;
+    @FXML private Button exportButton;
+    @FXML private HBox exportBar;
+    @FXML private ProgressBar exportProgress;
+    @FXML private Label exportStatus;
     @FXML private Label teacherLabel;
 
     private User teacher;
     private QuizDAO quizDAO = new QuizDAO();
+    private ResultExporter resultExporter = new ResultExporter();
+    private StatsDAO statsDAO = new StatsDAO();
+    // result count and average per quiz id, filled in after the quizzes load
+    private Map<Integer, ScoreStats> quizStats = new HashMap<>();
+    private final AsyncDao.Latest<Map<Integer, ScoreStats>> statsRequest = new AsyncDao.Latest<>();
+    // exports stream any number of rows, so they get far longer than the default DAO timeout
+    private static final long EXPORT_TIMEOUT_MS = 30 * 60 * 1000L;
     private ObservableList<Quiz> quizList = FXCollections.observableArrayList();
+    // a reload (e.g. after closing the editor) supersedes the one still in flight
+    private final AsyncDao.Latest<List<Quiz>> loadRequest = new AsyncDao.Latest<>();
+
+    private static final int SEARCH_LIMIT = 200;
+    // searches run once typing pauses; a newer query cancels the one in flight
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(200));
+    private final AsyncDao.Latest<List<Quiz>> searchRequest = new AsyncDao.Latest<>();
 
     public void setTeacher(User t) {
         this.teacher = t;
@@ -48,43 +83,79 @@ public class TeacherDashboardController {
         colId.setCellValueFactory(data -> new javafx.beans.property.SimpleObjectProperty<>(data.getValue().getId()));
         colTitle.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getTitle()));
         colDesc.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getDescription()));
+        colResults.setCellValueFactory(data -> {
+            ScoreStats s = quizStats.get(data.getValue().getId());
+            return new javafx.beans.property.SimpleStringProperty(s != null ? String.valueOf(s.getCount()) : "");
+        });
+        colAverage.setCellValueFactory(data -> {
+            ScoreStats s = quizStats.get(data.getValue().getId());
+            return new javafx.beans.property.SimpleStringProperty(s != null ? String.format("%.1f", s.getAverage()) : "");
+        });
         // make description column take remaining width so no blank trailing column appears
         if (quizzesTable != null && colDesc != null && colId != null && colTitle != null) {
-            colDesc.prefWidthProperty().bind(quizzesTable.widthProperty().subtract(colId.widthProperty()).subtract(colTitle.widthProperty()).subtract(4));
+            colDesc.prefWidthProperty().bind(quizzesTable.widthProperty().subtract(colId.widthProperty()).subtract(colTitle.widthProperty())
+                    .subtract(colResults.widthProperty()).subtract(colAverage.widthProperty()).subtract(4));
         }
         // wire sign out button action (FXML no longer references handler directly)
         if (signOutButton != null) {
             signOutButton.setOnAction(e -> handleSignOut());
         }
+        // search as the user types, once typing pauses
+        searchDelay.setOnFinished(e -> handleSearch());
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
         if (viewResultsButton != null) {
             viewResultsButton.setOnAction(e -> handleViewResults());
         }
+        if (analyticsButton != null) {
+            analyticsButton.setOnAction(e -> handleAnalytics());
+        }
+        if (exportButton != null) {
+            exportButton.setOnAction(e -> handleExport());
+        }
     }
 
     private void loadQuizzes() {
-        try {
-            List<Quiz> list = quizDAO.listQuizzesByTeacher(teacher.getId());
+        quizzesTable.setPlaceholder(new Label("Loading quizzes..."));
+        int teacherId = teacher.getId();
+        CompletableFuture<List<Quiz>> request = loadRequest.submit(() -> quizDAO.listQuizzesByTeacher(teacherId));
+        request.whenCompleteAsync((list, error) -> {
+            if (!loadRequest.isCurrent(request)) return;
+            quizzesTable.setPlaceholder(new Label("No quizzes yet."));
+            if (error != null) {
+                if (!UIUtils.isCancelled(error)) showAlert(Alert.AlertType.ERROR, "Error loading quizzes", UIUtils.errorMessage(error));
+                return;
+            }
             quizList.setAll(list);
-            quizzesTable.setItems(quizList);
-        } catch (Exception ex) {
-            showAlert(Alert.AlertType.ERROR, "Error loading quizzes", ex.getMessage());
-        }
+            if (searchField.getText().trim().isEmpty()) quizzesTable.setItems(quizList);
+            else handleSearch(); // refresh the active search
+            loadQuizStats(list);
+        }, UIUtils.FX);
+    }
+
+    // one primary-key lookup per quiz in the aggregate table; the columns stay blank if it fails
+    private void loadQuizStats(List<Quiz> quizzes) {
+        List<Integer> ids = new ArrayList<>(quizzes.size());
+        for (Quiz q : quizzes) ids.add(q.getId());
+        CompletableFuture<Map<Integer, ScoreStats>> request = statsRequest.submit(() -> statsDAO.getQuizStats(ids));
+        request.whenCompleteAsync((stats, error) -> {
+            if (!statsRequest.isCurrent(request)) return;
+            if (error != null) {
+                if (!UIUtils.isCancelled(error)) LOG.warning("Could not load quiz statistics: " + UIUtils.errorMessage(error));
+                return;
+            }
+            quizStats = stats;
+            quizzesTable.refresh();
+        }, UIUtils.FX);
     }
 
     @FXML
     private void handleCreateQuiz() {
         try {
-            File fxml = new File("resources/QuizCreation.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            QuizCreationController ctrl = loader.getController();
-            ctrl.setTeacher(teacher);
+            ViewRegistry.Loaded<QuizCreationController> view = ViewRegistry.load(ViewRegistry.View.QUIZ_CREATION);
+            view.getController().setTeacher(teacher);
             Stage stage = new Stage();
             stage.setTitle("Create Quiz");
-            Scene scene = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
-            stage.setScene(scene);
+            stage.setScene(view.scene());
             stage.showAndWait();
             loadQuizzes();
         } catch (Exception ex) {
@@ -100,18 +171,13 @@ public class TeacherDashboardController {
             return;
         }
         try {
-            File fxml = new File("resources/QuizCreation.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            QuizCreationController ctrl = loader.getController();
+            ViewRegistry.Loaded<QuizCreationController> view = ViewRegistry.load(ViewRegistry.View.QUIZ_CREATION);
+            QuizCreationController ctrl = view.getController();
             ctrl.setTeacher(teacher);
             ctrl.loadQuizForEdit(sel);
             Stage stage = new Stage();
             stage.setTitle("Edit Quiz");
-            Scene scene = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
-            stage.setScene(scene);
+            stage.setScene(view.scene());
             stage.showAndWait();
             loadQuizzes();
         } catch (Exception ex) {
@@ -130,15 +196,18 @@ public class TeacherDashboardController {
         conf.setHeaderText(null);
         conf.showAndWait();
         if (conf.getResult() == ButtonType.YES) {
-            try {
-                boolean ok = quizDAO.deleteQuiz(sel.getId());
-                if (ok) {
-                    showAlert(Alert.AlertType.INFORMATION, "Deleted", "Quiz deleted.");
-                    loadQuizzes();
-                }
-            } catch (Exception ex) {
-                showAlert(Alert.AlertType.ERROR, "Error deleting", ex.getMessage());
-            }
+            deleteQuizButton.setDisable(true);
+            int quizId = sel.getId();
+            AsyncDao.supply(() -> quizDAO.deleteQuiz(quizId))
+                    .whenCompleteAsync((ok, error) -> {
+                        deleteQuizButton.setDisable(false);
+                        if (error != null) {
+                            showAlert(Alert.AlertType.ERROR, "Error deleting", UIUtils.errorMessage(error));
+                        } else if (ok) {
+                            showAlert(Alert.AlertType.INFORMATION, "Deleted", "Quiz deleted.");
+                            loadQuizzes();
+                        }
+                    }, UIUtils.FX);
         }
     }
 
@@ -150,39 +219,97 @@ public class TeacherDashboardController {
             return;
         }
         try {
-            File fxml = new File("resources/Results.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            // ResultsController currently expects a student; we'll provide a filtered view by quiz
-            ResultsController ctrl = loader.getController();
-            // Use a small hack: setStudent(null) and then call a new method to load results by quiz. We'll add that method next.
-            ctrl.loadResultsByQuiz(sel.getId());
+            ViewRegistry.Loaded<ResultsController> view = ViewRegistry.load(ViewRegistry.View.RESULTS);
+            // the results view pages by quiz here, by student on the student dashboard
+            view.getController().loadResultsByQuiz(sel.getId());
             Stage stage = new Stage();
             stage.setTitle("Results for: " + sel.getTitle());
-            Scene scene = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
-            stage.setScene(scene);
+            stage.setScene(view.scene());
             stage.showAndWait();
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
         }
     }
 
+    // streams the quiz's results to a CSV/XLSX file in the background; progress shows in the bottom bar
+    private void handleExport() {
+        Quiz sel = quizzesTable.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            showAlert(Alert.AlertType.WARNING, "Choose Quiz", "Please select a quiz to export.");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Results");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Excel workbook (*.xlsx)", "*.xlsx"),
+                new FileChooser.ExtensionFilter("CSV file (*.csv)", "*.csv"));
+        chooser.setInitialFileName(sel.getTitle().replaceAll("[^\\w\\- ]", "_") + " results.xlsx");
+        File file = chooser.showSaveDialog(UIUtils.getStage(quizzesTable));
+        if (file == null) return;
+        ResultExporter.Format format = file.getName().toLowerCase().endsWith(".csv")
+                ? ResultExporter.Format.CSV : ResultExporter.Format.XLSX;
+        int quizId = sel.getId();
+        exportButton.setDisable(true);
+        exportBar.setVisible(true);
+        exportBar.setManaged(true);
+        exportProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        exportStatus.setText("Exporting " + sel.getTitle() + "...");
+        AsyncDao.supply(() -> resultExporter.exportQuiz(quizId, format, file.toPath(),
+                        (done, total) -> Platform.runLater(() -> {
+                            exportProgress.setProgress(total > 0 ? (double) done / total : ProgressBar.INDETERMINATE_PROGRESS);
+                            exportStatus.setText("Exported " + done + " of " + total + " results...");
+                        })), EXPORT_TIMEOUT_MS)
+                .whenCompleteAsync((rows, error) -> {
+                    exportButton.setDisable(false);
+                    if (error != null) {
+                        exportBar.setVisible(false);
+                        exportBar.setManaged(false);
+                        showAlert(Alert.AlertType.ERROR, "Export failed", UIUtils.errorMessage(error));
+                        return;
+                    }
+                    exportProgress.setProgress(1);
+                    exportStatus.setText("Exported " + rows + " results to " + file.getName());
+                }, UIUtils.FX);
+    }
+
     @FXML
+    private void handleAnalytics() {
+        Quiz sel = quizzesTable.getSelectionModel().getSelectedItem();
+        if (sel == null) {
+            showAlert(Alert.AlertType.WARNING, "Choose Quiz", "Please select a quiz to analyse.");
+            return;
+        }
+        try {
+            ViewRegistry.Loaded<AnalyticsController> view = ViewRegistry.load(ViewRegistry.View.ANALYTICS);
+            view.getController().loadQuiz(sel.getId());
+            Stage stage = new Stage();
+            stage.setTitle("Analytics for: " + sel.getTitle());
+            stage.setScene(view.scene());
+            stage.show();
+        } catch (Exception ex) {
+            showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
+        }
+    }
+
+    // Search the whole catalog (not only the loaded rows) through the DAO's search index
     private void handleSearch() {
-        String q = searchField.getText().trim().toLowerCase();
-        if (q.isEmpty()) {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            searchRequest.cancel();
             quizzesTable.setItems(quizList);
             return;
         }
-        ObservableList<Quiz> filtered = FXCollections.observableArrayList();
-        for (Quiz quiz : quizList) {
-            if (quiz.getTitle().toLowerCase().contains(q) || (quiz.getDescription()!=null && quiz.getDescription().toLowerCase().contains(q))) {
-                filtered.add(quiz);
+        if (teacher == null) return;
+        int teacherId = teacher.getId();
+        CompletableFuture<List<Quiz>> request = searchRequest.submit(() -> quizDAO.searchTeacherQuizzes(teacherId, query, SEARCH_LIMIT));
+        request.whenCompleteAsync((found, error) -> {
+            if (!searchRequest.isCurrent(request)) return; // a newer query is running
+            if (error != null) {
+                if (!UIUtils.isCancelled(error)) showAlert(Alert.AlertType.ERROR, "Search failed", UIUtils.errorMessage(error));
+                return;
             }
-        }
-        quizzesTable.setItems(filtered);
+            quizzesTable.setItems(FXCollections.observableArrayList(found));
+        }, UIUtils.FX);
     }
 
     private void showAlert(Alert.AlertType t, String title, String msg) {
@@ -202,14 +329,9 @@ public class TeacherDashboardController {
             // replace current scene on the same stage with the login scene (use safe getter)
             Stage st = ui.UIUtils.getStage(teacherLabel);
             if (st == null) return;
-            File fxml = new File("resources/Login.fxml");
-            FXMLLoader loader = new FXMLLoader(fxml.toURI().toURL());
-            Parent root = loader.load();
-            Scene scene = new Scene(root);
-            File css = new File("resources/catppuccin-mocha.css");
-            if (css.exists()) scene.getStylesheets().add(css.toURI().toURL().toExternalForm());
+            ViewRegistry.Loaded<LoginController> view = ViewRegistry.load(ViewRegistry.View.LOGIN);
             st.setTitle("Online Quiz Management System - Login");
-            st.setScene(scene);
+            st.setScene(view.scene());
         } catch (Exception ex) {
             showAlert(Alert.AlertType.ERROR, "Error", ex.getMessage());
         }
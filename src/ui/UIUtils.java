@@ -1,11 +1,25 @@
 package ui;
 
+import javafx.application.Platform;
+import javafx.geometry.Orientation;
 import javafx.scene.Node;
+import javafx.scene.control.Control;
+import javafx.scene.control.ScrollBar;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
 import javafx.stage.Window;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
 public class UIUtils {
+
+    /** Executor that runs callbacks on the JavaFX application thread (for CompletableFuture *Async methods). */
+    public static final Executor FX = Platform::runLater;
+
     public static Stage getStage(Node node) {
         if (node == null) return null;
         Scene s = node.getScene();
@@ -14,4 +28,41 @@ public class UIUtils {
         if (w instanceof Stage) return (Stage) w;
         return null;
     }
+
+    /**
+     * Run the action whenever the control's vertical scroll bar reaches the bottom
+     * (used to fetch the next page of a paged table).
+     */
+    public static void onScrolledToBottom(Control control, Runnable action) {
+        control.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            for (Node n : control.lookupAll(".scroll-bar")) {
+                if (n instanceof ScrollBar && ((ScrollBar) n).getOrientation() == Orientation.VERTICAL) {
+                    ScrollBar bar = (ScrollBar) n;
+                    bar.valueProperty().addListener((o, oldVal, newVal) -> {
+                        if (newVal.doubleValue() >= bar.getMax()) action.run();
+                    });
+                }
+            }
+        });
+    }
+
+    /** Unwrap the CompletionException/ExecutionException layers of an async failure. */
+    public static Throwable rootCause(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /** Whether an async failure only means the request was cancelled (e.g. superseded by a newer one). */
+    public static boolean isCancelled(Throwable t) {
+        return rootCause(t) instanceof CancellationException;
+    }
+
+    /** A message fit for an alert, describing why an async DAO call failed. */
+    public static String errorMessage(Throwable t) {
+        Throwable cause = rootCause(t);
+        if (cause instanceof TimeoutException) return "The database did not respond in time. Please try again.";
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
 }
@@ -0,0 +1,239 @@
+package ui;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Loads the application's FXML views. The FXML and the stylesheet are looked up on the
+ * classpath (the resources folder when it is not on the classpath) and read once; JavaFX
+ * parses a stylesheet once per URL, so every scene shares the parsed theme.
+ *
+ * FXMLLoader cannot clone a loaded view, and a controller carries the state of the window
+ * it was shown in, so a view instance is never shown twice. Instead each view keeps one
+ * spare instance, loaded ahead of time on a background thread (on the FX thread when idle
+ * for views whose initialize() creates popup windows, which must be built there): warmUp
+ * loads the views a screen is likely to open next, and every load() takes the spare and
+ * loads its replacement. The time from load() to the first rendered frame is logged per
+ * view.
+ */
+public final class ViewRegistry {
+
+    private static final Logger LOG = Logger.getLogger(ViewRegistry.class.getName());
+
+    public enum View {
+        LOGIN("Login.fxml", true),
+        REGISTER("Register.fxml", true),
+        TEACHER_DASHBOARD("TeacherDashboard.fxml", true),
+        STUDENT_DASHBOARD("StudentDashboard.fxml", true),
+        QUIZ_CREATION("QuizCreation.fxml", false), // initialize() builds a ContextMenu
+        QUIZ_ATTEMPT("QuizAttempt.fxml", true),
+        RESULTS("Results.fxml", true),
+        ANALYTICS("Analytics.fxml", true);
+
+        private final String file;
+        private final boolean offThread;
+
+        View(String file, boolean offThread) {
+            this.file = file;
+            this.offThread = offThread;
+        }
+    }
+
+    /** A loaded view, not shown yet: its root node and controller. */
+    public static final class Loaded<C> {
+        private final View view;
+        private final Parent root;
+        private final C controller;
+        private final long loadMs;
+        private long openedAt;
+        private boolean preloaded;
+
+        private Loaded(View view, Parent root, C controller, long loadMs) {
+            this.view = view;
+            this.root = root;
+            this.controller = controller;
+            this.loadMs = loadMs;
+        }
+
+        public C getController() { return controller; }
+        public Parent getRoot() { return root; }
+
+        /** A scene for the view, themed, whose first frame is timed. */
+        public Scene scene() {
+            return timed(new Scene(root));
+        }
+
+        public Scene scene(double width, double height) {
+            return timed(new Scene(root, width, height));
+        }
+
+        private Scene timed(Scene scene) {
+            String css = stylesheet();
+            if (css != null) scene.getStylesheets().add(css);
+            Runnable[] listener = new Runnable[1];
+            listener[0] = () -> {
+                if (scene.getWindow() == null || !scene.getWindow().isShowing()) return;
+                scene.removePostLayoutPulseListener(listener[0]);
+                record(this, (System.nanoTime() - openedAt) / 1_000_000);
+            };
+            scene.addPostLayoutPulseListener(listener[0]);
+            return scene;
+        }
+    }
+
+    /** Open-to-render times of one view. */
+    public static final class Timing {
+        private int count;
+        private int preloaded;
+        private long totalMs;
+        private long maxMs;
+
+        public synchronized int getCount() { return count; }
+        public synchronized int getPreloaded() { return preloaded; }
+        public synchronized long getMaxMs() { return maxMs; }
+        public synchronized double getAverageMs() { return count == 0 ? 0 : (double) totalMs / count; }
+
+        private synchronized void add(long ms, boolean fromSpare) {
+            count++;
+            if (fromSpare) preloaded++;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d opened (%d preloaded), avg %.1f ms, max %d ms", count, preloaded, getAverageMs(), maxMs);
+        }
+    }
+
+    private static final String STYLESHEET_FILE = "catppuccin-mocha.css";
+    private static final Path RESOURCES_DIR = Paths.get("resources");
+
+    private static final Map<View, byte[]> TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<View, Loaded<?>> SPARES = new ConcurrentHashMap<>();
+    private static final Set<View> PRELOADING = ConcurrentHashMap.newKeySet();
+    private static final Map<View, Timing> TIMINGS = Collections.synchronizedMap(new EnumMap<>(View.class));
+
+    private static final ExecutorService PRELOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "view-preload");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private static volatile String stylesheet;
+    private static volatile boolean stylesheetResolved = false;
+
+    private ViewRegistry() {}
+
+    /**
+     * The view ready to show: the spare instance if one is loaded, otherwise a new one.
+     * Call on the FX thread.
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> Loaded<C> load(View view) throws IOException {
+        long start = System.nanoTime();
+        Loaded<?> loaded = SPARES.remove(view);
+        if (loaded != null) {
+            loaded.preloaded = true;
+        } else {
+            loaded = loadNow(view);
+        }
+        loaded.openedAt = start;
+        preload(view);
+        return (Loaded<C>) loaded;
+    }
+
+    /** Load spares of the given views in the background, for views about to be opened. */
+    public static void warmUp(View... views) {
+        for (View v : views) preload(v);
+    }
+
+    /** Open-to-render times per view since start. */
+    public static Map<View, Timing> timings() {
+        synchronized (TIMINGS) {
+            return new EnumMap<>(TIMINGS);
+        }
+    }
+
+    /** URL of the theme stylesheet, or null if it is missing. */
+    public static String stylesheet() {
+        if (!stylesheetResolved) {
+            try {
+                URL url = locate(STYLESHEET_FILE);
+                stylesheet = url != null ? url.toExternalForm() : null;
+            } catch (IOException ex) {
+                LOG.warning("Stylesheet unavailable: " + ex.getMessage());
+            }
+            stylesheetResolved = true;
+        }
+        return stylesheet;
+    }
+
+    private static void preload(View view) {
+        if (SPARES.containsKey(view) || !PRELOADING.add(view)) return;
+        Runnable task = () -> {
+            try {
+                SPARES.put(view, loadNow(view));
+            } catch (IOException | RuntimeException ex) {
+                LOG.warning("Could not preload " + view + ": " + ex.getMessage());
+            } finally {
+                PRELOADING.remove(view);
+            }
+        };
+        if (view.offThread) PRELOADER.execute(task);
+        else Platform.runLater(task);
+    }
+
+    private static Loaded<?> loadNow(View view) throws IOException {
+        long start = System.nanoTime();
+        URL url = locate(view.file);
+        if (url == null) throw new IOException("View " + view.file + " not found on the classpath or in " + RESOURCES_DIR.toAbsolutePath());
+        byte[] template = TEMPLATES.get(view);
+        if (template == null) {
+            try (InputStream in = url.openStream()) {
+                template = in.readAllBytes();
+            }
+            TEMPLATES.put(view, template);
+        }
+        FXMLLoader loader = new FXMLLoader(url);
+        Parent root = loader.load(new ByteArrayInputStream(template));
+        return new Loaded<>(view, root, loader.getController(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // classpath first; the resources folder when the application runs from the project directory without it
+    private static URL locate(String file) throws IOException {
+        URL url = ViewRegistry.class.getResource("/" + file);
+        if (url != null) return url;
+        Path p = RESOURCES_DIR.resolve(file);
+        return Files.exists(p) ? p.toUri().toURL() : null;
+    }
+
+    private static void record(Loaded<?> loaded, long ms) {
+        Timing t;
+        synchronized (TIMINGS) {
+            t = TIMINGS.computeIfAbsent(loaded.view, v -> new Timing());
+        }
+        t.add(ms, loaded.preloaded);
+        System.out.println("ViewRegistry: " + loaded.view + " open-to-render " + ms + " ms"
+                + (loaded.preloaded ? " (preloaded)" : " (loaded in " + loaded.loadMs + " ms)"));
+    }
+}